@@ -0,0 +1,53 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import view.GameHUD;
+import view.Sprite;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Drawing the in game HUD into an offscreen image the same size as the game panel
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HudBenchmark {
+
+    private static final int SCREEN_WIDTH = 1856;
+    private static final int SCREEN_HEIGHT = 960;
+    private static final int SCALE = 2;
+    private static final String COLLECTIBLE_SPRITE_PATH = "/sprites/tiles/collectible/1.png";
+    private static final String JAVA_LOGO_PATH = "/sprites/java_logo.png";
+
+    private GameHUD gameHUD;
+    private BufferedImage frame;
+    private Graphics2D g2d;
+    private int collectibleCount = 0;
+    private double levelTime = 0.0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        gameHUD = new GameHUD(new Sprite(COLLECTIBLE_SPRITE_PATH), new Sprite(JAVA_LOGO_PATH));
+        frame = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g2d = frame.createGraphics();
+        g2d.scale(SCALE, SCALE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    // The counters change every call so text shapes cannot be reused between frames
+    @Benchmark
+    public BufferedImage drawGameHUD() {
+        collectibleCount = (collectibleCount + 1) % 100;
+        levelTime += 1000.0 / 60.0;
+        gameHUD.drawGameHUD(g2d, collectibleCount, levelTime);
+        return frame;
+    }
+}
@@ -0,0 +1,33 @@
+package benchmark;
+
+import io.MapLoader;
+import model.TileMap;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Loading a level: parsing the JSON alone, and the whole TileMap construction (parse, tiles, ground collision index)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelLoadBenchmark {
+
+    private static final int TILE_SIZE = 32;
+
+    @Param({"0", "1", "2", "3", "4"})
+    public String level;
+
+    @Benchmark
+    public JSONObject loadMapJSON() {
+        return MapLoader.loadMapJSON(level);
+    }
+
+    @Benchmark
+    public TileMap constructTileMap() {
+        return new TileMap(level, TILE_SIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import model.NavigationGraph;
+import model.NavigationQuery;
+import model.TileChanges;
+import model.TileMap;
+import model.TileType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Building a levels navigation graph, and an A* search from the spawn to the goal on it
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationGraphBenchmark {
+
+    private static final int TILE_SIZE = 32;
+
+    @Param({"0", "1", "2", "3", "4"})
+    public String level;
+
+    private TileMap tileMap;
+    private NavigationQuery query;
+    private int startRow;
+    private int goalColumn;
+    private int goalRow;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tileMap = new TileMap(level, TILE_SIZE);
+        NavigationGraph graph = NavigationGraph.build(tileMap);
+        query = new NavigationQuery(graph);
+        startRow = graph.getNodeRow(graph.findNodeBelow(0, 0));  // Where the player lands after spawning
+        TileChanges tiles = tileMap.exportTiles();
+        for (int i = 0; i < tiles.size(); i++) {
+            if (tiles.getType(i) != TileType.GOAL) continue;
+            int goal = graph.findNodeBelow(tiles.getColumn(i), tiles.getRow(i));
+            goalColumn = graph.getNodeStartColumn(goal);
+            goalRow = graph.getNodeRow(goal);
+        }
+    }
+
+    @Benchmark
+    public NavigationGraph build() {
+        return NavigationGraph.build(tileMap);
+    }
+
+    @Benchmark
+    public boolean findPathToGoal() {
+        return query.findPath(0, startRow, goalColumn, goalRow);
+    }
+}
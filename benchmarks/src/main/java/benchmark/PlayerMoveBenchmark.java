@@ -0,0 +1,67 @@
+package benchmark;
+
+import control.InputSource;
+import control.ScriptedInput;
+import model.EventBatch;
+import model.EventBus;
+import model.EventListener;
+import model.Player;
+import model.TileMap;
+import org.openjdk.jmh.annotations.*;
+import util.Vector2D;
+
+import java.util.concurrent.TimeUnit;
+
+// One physics step of the player on each shipped level, driven by the same scripted input as the headless runner
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerMoveBenchmark implements EventListener {
+
+    private static final int TILE_SIZE = 32;
+    private static final Vector2D SPAWN_POSITION = new Vector2D();
+
+    @Param({"0", "1", "2", "3", "4"})
+    public String level;
+
+    private final EventBus eventBus = new EventBus();
+    private TileMap tileMap;
+    private Player player;
+    private final InputSource input = new ScriptedInput();
+    private int tick = 0;
+    private boolean resetRequested = false;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tileMap = new TileMap(level, TILE_SIZE);
+        eventBus.addListener(this);
+        player = new Player(eventBus, new Vector2D());
+    }
+
+    // Mirrors what the GameManager does, the level starts over once the player dies or reaches the goal
+    @Override
+    public void processEvents(EventBatch events) {
+        for (int i = 0; i < events.size(); i++) {
+            switch (events.getEvent(i)) {
+                case DAMAGE, GOAL_REACHED -> resetRequested = true;
+                case null, default -> {}
+            }
+        }
+    }
+
+    @Benchmark
+    public Vector2D move() {
+        input.routeTickInput(tick++, player);
+        player.move(tileMap);
+        eventBus.drain();
+        if (resetRequested) {
+            resetRequested = false;
+            player.resetPlayer(SPAWN_POSITION);
+            tileMap.resetTileMap();
+        }
+        return player.getWorldPosition();
+    }
+}
@@ -0,0 +1,53 @@
+package benchmark;
+
+import model.RectangleBox;
+import model.TileMap;
+import model.TileType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.Vector2D;
+
+import java.util.concurrent.TimeUnit;
+
+// Tile queries made every frame: the collision neighborhood lookup (game thread) and the visible tile lookup (renderer)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileMapBenchmark {
+
+    private static final int TILE_SIZE = 32;
+
+    // Same area the GamePanel renders, centered on the players spawn
+    private static final Vector2D RENDER_SIZE = new Vector2D(1856 / 2.0, 960 / 2.0);
+    private static final Vector2D CAMERA_POSITION = new Vector2D(-RENDER_SIZE.x / 2, -RENDER_SIZE.y / 2);
+    private static final Vector2D PLAYER_CENTER = new Vector2D(14, 18);
+
+    @Param({"0", "1", "2", "3", "4"})
+    public String level;
+
+    private TileMap tileMap;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tileMap = new TileMap(level, TILE_SIZE);
+    }
+
+    @Benchmark
+    public void surroundingGroundHitBoxes(Blackhole blackhole) {
+        RectangleBox[] hitBoxes = tileMap.getSurroundingTileHitBoxes(PLAYER_CENTER, TileType.GROUND);
+        blackhole.consume(hitBoxes);
+    }
+
+    @Benchmark
+    public void surroundingTriggerTiles(Blackhole blackhole) {
+        blackhole.consume(tileMap.getSurroundingTriggerTiles(PLAYER_CENTER));
+    }
+
+    @Benchmark
+    public TileMap.Tile[] visibleTiles() {
+        return tileMap.getVisibleTiles(CAMERA_POSITION, RENDER_SIZE);
+    }
+}
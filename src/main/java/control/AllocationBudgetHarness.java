@@ -0,0 +1,88 @@
+package control;
+
+import model.GameManager;
+import model.GameState;
+import util.InputListener;
+
+import java.lang.management.ManagementFactory;
+
+// Headless harness that checks that GameManager.update() does not allocate while the player is in a level.
+// Every level is played with a scripted input pattern, the bytes allocated by this thread are measured around each
+// tick and the program exits with code 1 if the average goes over the budget.
+// Run with: java control.AllocationBudgetHarness [measured ticks per level]
+public class AllocationBudgetHarness {
+
+    private static final int LEVEL_AMOUNT = 5;
+    private static final int WARMUP_TICKS = 20000;  // Lets the JIT compile the tick before anything is measured
+    private static final int DEFAULT_MEASURED_TICKS = 10000;
+    // In bytes. The tick itself allocates nothing, the small allowance covers one off JIT deoptimizations which can
+    // re-create objects that were optimized away, anything per tick (like a println on death) still goes over it
+    private static final double ALLOCATION_BUDGET_PER_TICK = 0.1;
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final InputSource scriptedInput = new ScriptedInput();
+
+    // Plays the level for the given amount of ticks, returns the bytes allocated by ticks spent entirely in IN_LEVEL
+    private long playLevel(GameManager gameManager, int level, int ticks, boolean measure) {
+        gameManager.startLevel(level);
+        InputListener player = gameManager.getPlayer();
+        long allocatedBytes = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            scriptedInput.routeTickInput(tick, player);
+            long before = threadBean.getCurrentThreadAllocatedBytes();
+            gameManager.update();
+            long after = threadBean.getCurrentThreadAllocatedBytes();
+
+            // Goal reached, the save and the state change are not part of the in level budget
+            if (gameManager.getGameState() != GameState.IN_LEVEL) {
+                gameManager.startLevel(level);
+                continue;
+            }
+            if (measure) allocatedBytes += after - before;
+        }
+        return allocatedBytes;
+    }
+
+    // Bytes reported between two back to back reads, subtracted from every measured tick
+    private long measurementOverhead() {
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        long after = threadBean.getCurrentThreadAllocatedBytes();
+        return after - before;
+    }
+
+    private boolean run(int measuredTicks) {
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            System.err.println("Thread allocation measurement is not supported by this JVM");
+            return false;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        GameManager gameManager = new GameManager(false);
+        for (int level = 1; level <= LEVEL_AMOUNT; level++) {
+            playLevel(gameManager, level, WARMUP_TICKS / LEVEL_AMOUNT, false);
+        }
+
+        long overhead = measurementOverhead();
+        boolean withinBudget = true;
+        for (int level = 1; level <= LEVEL_AMOUNT; level++) {
+            long allocatedBytes = playLevel(gameManager, level, measuredTicks, true) - overhead * measuredTicks;
+            double bytesPerTick = Math.max(0, allocatedBytes) / (double) measuredTicks;
+            boolean levelWithinBudget = bytesPerTick <= ALLOCATION_BUDGET_PER_TICK;
+            System.out.printf("Level %d: %d ticks, %d bytes allocated, %.2f bytes/tick %s%n",
+                    level, measuredTicks, allocatedBytes, bytesPerTick, levelWithinBudget ? "OK" : "OVER BUDGET");
+            withinBudget &= levelWithinBudget;
+        }
+        return withinBudget;
+    }
+
+    public static void main(String[] args) {
+        int measuredTicks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MEASURED_TICKS;
+        boolean withinBudget = new AllocationBudgetHarness().run(measuredTicks);
+        if (!withinBudget) {
+            System.err.println("Allocation budget of " + ALLOCATION_BUDGET_PER_TICK + " bytes/tick exceeded");
+            System.exit(1);
+        }
+    }
+}
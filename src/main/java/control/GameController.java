@@ -1,25 +1,64 @@
 package control;
 
+import io.GhostFile;
+import io.GhostStream;
+import io.MetricsServer;
+import io.ReplayFile;
+import io.SaveStore;
 import model.GameManager;
+import model.GameState;
+import model.TileChanges;
+import util.GameMetrics;
+import util.InputBits;
+import util.PerformanceMonitor;
 import view.GamePanel;
 import view.GameWindow;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
 // Class that runs the main game loop thread, updates physics and view
 public class GameController implements Runnable {
 
     private final GameManager gameManager = new GameManager();
     private final InputHandler input = new InputHandler();
+    private final Path profileDirectory = SaveStore.profileDirectory(SaveStore.selectedProfile());
+    // Hands input to the player once per tick
+    private final InputRecorder inputRecorder = new InputRecorder(profileDirectory);
+    private final GhostRecorder ghostRecorder = new GhostRecorder(profileDirectory);
     private final GameWindow gameWindow = new GameWindow();
+    private final PerformanceMonitor performanceMonitor = new PerformanceMonitor();
+    private final GameMetrics metrics = new GameMetrics();
 
     private Thread gameThread;
+    private LevelWatcher levelWatcher;  // Only in dev mode
+    private LevelEditor levelEditor;  // Only in dev mode
+    private GhostStream[] ghosts = new GhostStream[0];  // Personal bests of the current level, raced while playing it
 
     private static final double FPS = 60.0;
+    private static final String METRICS_PORT_PROPERTY = "platformer.metrics.port";  // Serves metrics when set
+    private static final String DEV_LEVELS_PROPERTY = "platformer.dev.levels";  // Hot reloads levels from this directory
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    // System.nanoTime() the JVM started at, so the reported startup time includes starting the JVM itself
+    private static final long JVM_START_TIME =
+            System.nanoTime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000L;
+    private boolean startupReported = false;
 
     private void startGame() {
         GamePanel gamePanel = gameWindow.getGamePanel();
         gamePanel.addKeyListener(input);
         gamePanel.setGameManager(gameManager);
-        input.addListener(gameManager.getPlayer());
+        gamePanel.setPerformanceMonitor(performanceMonitor);
+        gamePanel.setMetrics(metrics);
+        gameManager.setMetrics(metrics);
+        startMetricsServer();
+        startLevelWatcher();
+        startLevelEditor();
+        input.setPerformanceMonitor(performanceMonitor);
         input.addListener(gameManager.getMenuInputListener());
         gameThread = new Thread(this);
         gameThread.start();
@@ -46,7 +85,20 @@ public class GameController implements Runnable {
 
             if (deltaTime >= 1) {
                 // 1st Update: update info such as character positions
+                GameState previousState = gameManager.getGameState();
+                if (levelWatcher != null) applyLevelChanges();
+                if (levelEditor != null) levelEditor.applyCommands(gameManager);
+                int inputBits = input.pollTick(currentTime);
+                updateRewind(inputBits);
+                inputRecorder.captureTick(inputBits, gameManager.getPlayer());
+                long updateStart = System.nanoTime();
                 gameManager.update();
+                long updateTime = System.nanoTime() - updateStart;
+                performanceMonitor.recordUpdateTime(updateTime);
+                metrics.recordTick(updateTime);
+                // More than one tick behind, this ticks repaint will be merged with the next one and never shown
+                if (deltaTime >= 2) metrics.recordDroppedFrame();
+                updateRecording(previousState);
 
                 // 2nd Draw: draw the screen with the updated info
                 GamePanel gamePanel = gameWindow.getGamePanel();
@@ -59,9 +111,11 @@ public class GameController implements Runnable {
                 drawCount++;
             }
 
-            // Display fps in console every second
+            // Display fps in console every second, and refresh the overlays allocation and GC numbers
             if(timer > oneBillion) {
                 System.out.println("FPS: " + drawCount);
+                performanceMonitor.sampleManagementBeans(drawCount);
+                if (!startupReported) reportStartup();
                 drawCount = 0;
                 timer = 0;
             }
@@ -70,6 +124,121 @@ public class GameController implements Runnable {
     }
 
 
+    // Prints how long the game took to draw its first frame and to decode every sprite once both have happened, and
+    // hands the times to the metrics so startup regressions show up next to the other numbers
+    private void reportStartup() {
+        GamePanel gamePanel = gameWindow.getGamePanel();
+        long firstFrameTime = gamePanel.getFirstFrameTime();
+        long spritesLoadedTime = gamePanel.getSpritesLoadedTime();
+        if (firstFrameTime == 0 || spritesLoadedTime == 0) return;
+        startupReported = true;
+        long firstFrameNanos = firstFrameTime - JVM_START_TIME;
+        long spritesLoadedNanos = spritesLoadedTime - JVM_START_TIME;
+        System.out.printf("Startup: first frame after %.0f ms, all sprites decoded after %.0f ms%n",
+                firstFrameNanos / NANOS_PER_MILLI, spritesLoadedNanos / NANOS_PER_MILLI);
+        metrics.recordStartup(firstFrameNanos, spritesLoadedNanos);
+    }
+
+    // Optional metrics endpoint for soak tests, enabled with -Dplatformer.metrics.port=<port>
+    private void startMetricsServer() {
+        String port = System.getProperty(METRICS_PORT_PROPERTY);
+        if (port == null) return;
+        try {
+            new MetricsServer(metrics, Integer.parseInt(port)).start();
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not start the metrics server: " + e.getMessage());
+        }
+    }
+
+    // Dev mode, hot reloads edited level files, see LevelWatcher
+    private void startLevelWatcher() {
+        String levelDirectory = System.getProperty(DEV_LEVELS_PROPERTY);
+        if (levelDirectory == null) return;
+        gameManager.setLevelDirectory(Paths.get(levelDirectory));
+        try {
+            levelWatcher = new LevelWatcher(Paths.get(levelDirectory));
+        } catch (IOException e) {
+            System.err.println("Could not watch the level directory: " + e.getMessage());
+        }
+    }
+
+    // Dev mode, edits the level being played with the mouse and saves it to the level directory, see LevelEditor
+    private void startLevelEditor() {
+        String levelDirectory = System.getProperty(DEV_LEVELS_PROPERTY);
+        if (levelDirectory == null) return;
+        levelEditor = new LevelEditor(gameWindow.getGamePanel(), Paths.get(levelDirectory));
+    }
+
+    // Applies the level edits the LevelWatcher has finished reading since the last tick
+    private void applyLevelChanges() {
+        TileChanges changes;
+        while ((changes = levelWatcher.pollChanges()) != null) {
+            long startTime = System.nanoTime();
+            if (!gameManager.applyLevelChanges(changes)) continue;
+            System.out.printf("Level %s reloaded: %d tiles applied in %.2f ms%n", changes.getLevelName(),
+                    changes.size(), (System.nanoTime() - startTime) / NANOS_PER_MILLI);
+            // The attempt was partly played on the old level, so it cannot be replayed or raced
+            inputRecorder.cancelRecording();
+            ghostRecorder.cancelRecording();
+        }
+    }
+
+    // Steps the level back while the rewind key is held
+    private void updateRewind(int inputBits) {
+        boolean rewinding = InputBits.isRewind(inputBits) && gameManager.getGameState() == GameState.IN_LEVEL;
+        gameManager.setRewinding(rewinding);
+        if (rewinding) {
+            // A rewound attempt no longer matches its input, so it cannot be replayed or raced
+            inputRecorder.cancelRecording();
+            ghostRecorder.cancelRecording();
+        }
+    }
+
+    // Records every level attempt from its first tick, finished attempts are saved as replays and personal bests are
+    // also saved as ghosts
+    private void updateRecording(GameState previousState) {
+        GameState gameState = gameManager.getGameState();
+        if (gameState == GameState.EDITOR && previousState == GameState.IN_LEVEL) {
+            // Leaving the editor restarts the attempt on the edited level, the old one is not worth keeping
+            inputRecorder.cancelRecording();
+            ghostRecorder.cancelRecording();
+            hideGhosts();
+        }
+        if (gameState == GameState.IN_LEVEL && previousState != GameState.IN_LEVEL) {
+            inputRecorder.beginRecording(gameManager.getCurrentLevel());
+            ghostRecorder.beginRecording(gameManager.getCurrentLevel());
+            showGhosts(gameManager.getCurrentLevel());
+        }
+        if (previousState == GameState.IN_LEVEL) ghostRecorder.recordTick(gameManager);
+        if (gameState == GameState.LEVEL_FINISHED && previousState == GameState.IN_LEVEL) {
+            inputRecorder.finishRecording(new ReplayFile.Claims(
+                    gameManager.getLevelTicks(), gameManager.getCollectibleAmount(), gameManager.getLevelTime()));
+            hideGhosts();  // Closed before saving, as a new best moves the older ghost files
+            ghostRecorder.finishRecording(gameManager.isLevelTimeRecord());
+        }
+    }
+
+    // Starts streaming the saved ghosts of the level to the GamePanel
+    private void showGhosts(int level) {
+        hideGhosts();
+        List<Path> ghostFiles = GhostFile.findGhosts(profileDirectory, level);
+        GhostStream[] levelGhosts = new GhostStream[ghostFiles.size()];
+        for (int i = 0; i < levelGhosts.length; i++) {
+            levelGhosts[i] = new GhostStream(ghostFiles.get(i));
+        }
+        ghosts = levelGhosts;
+        gameWindow.getGamePanel().setGhosts(levelGhosts);
+    }
+
+    private void hideGhosts() {
+        if (ghosts.length == 0) return;
+        gameWindow.getGamePanel().setGhosts(new GhostStream[0]);
+        for (GhostStream ghost : ghosts) {
+            ghost.close();
+        }
+        ghosts = new GhostStream[0];
+    }
+
     public static void main (String[] args) {
         GameController gameController = new GameController();
         gameController.startGame();
@@ -0,0 +1,59 @@
+package control;
+
+import io.GhostFile;
+import model.GameManager;
+import util.Vector2D;
+
+import java.nio.file.Path;
+
+// Records where the player is and what they are doing on every tick of a level attempt, so a personal best can be
+// raced as a ghost. Like the level timer, only the attempt since the last respawn counts.
+public class GhostRecorder {
+
+    private final Path profileDirectory;  // Where the ghosts are saved, see SaveStore.profileDirectory()
+    private final GhostFile.TrackBuffer track = new GhostFile.TrackBuffer();
+    private boolean recording = false;
+    private int level = 0;
+    private boolean facingLeft = false;
+
+    public GhostRecorder(Path profileDirectory) {
+        this.profileDirectory = profileDirectory;
+    }
+
+    public void beginRecording(int level) {
+        this.level = level;
+        track.clear();
+        facingLeft = false;
+        recording = true;
+    }
+
+    // Called after every update the level was played in
+    public void recordTick(GameManager gameManager) {
+        if (!recording) return;
+        int levelTicks = gameManager.getLevelTicks();
+        if (levelTicks <= 1) track.clear();  // The player respawned, the attempt starts over
+        if (levelTicks == 0) return;
+
+        // Faces the way the player last moved, the same way the GamePanel flips the player
+        double horizontalVelocity = gameManager.getPlayerHorizontalVelocity();
+        if (horizontalVelocity < 0.0) facingLeft = true;
+        if (horizontalVelocity > 0.0) facingLeft = false;
+
+        Vector2D position = gameManager.getPlayerWorldPosition();
+        int state = gameManager.getPlayerState().ordinal() | (facingLeft ? GhostFile.FACING_LEFT : 0);
+        track.appendFrame(state, position.x, position.y);
+    }
+
+    public void cancelRecording() {
+        recording = false;
+    }
+
+    // Ends the recording and saves it as the levels ghost if the run was a new personal best, returns where it was
+    // saved or null if nothing was saved
+    public Path finishRecording(boolean personalBest) {
+        if (!recording) return null;
+        recording = false;
+        if (!personalBest || track.getFrameCount() == 0) return null;
+        return GhostFile.saveBest(profileDirectory, level, track);
+    }
+}
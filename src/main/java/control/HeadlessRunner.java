@@ -0,0 +1,82 @@
+package control;
+
+import model.GameManager;
+import model.GameState;
+
+// Runs the game simulation without a window or frame cap, as fast as the machine allows
+// Builds its own GameManager (which creates the Player and TileMap) that never touches save data, feeds it input from
+// an InputSource and steps update() back to back. Used to load test physics changes and to run bots or validation at
+// many times real time.
+// Run with: java control.HeadlessRunner [ticks per level] [level...]
+public class HeadlessRunner {
+
+    private static final int LEVEL_AMOUNT = 5;
+    private static final int DEFAULT_TICKS = 1_000_000;
+    private static final int WARMUP_TICKS = 50_000;  // Lets the JIT compile the tick before anything is timed
+    private static final double REAL_TIME_TICK_RATE = 60.0;  // Ticks per second of the windowed game
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final GameManager gameManager;
+
+    private int goalsReached = 0;
+
+    public HeadlessRunner() {
+        this(new GameManager(false));
+    }
+
+    // Runs a GameManager set up by the caller, such as a lightweight one when thousands of runs share the JVM
+    public HeadlessRunner(GameManager gameManager) {
+        this.gameManager = gameManager;
+    }
+
+    // Plays the level for up to the given amount of ticks, or until the input runs out
+    // Reaching the goal restarts the level straight away. Returns the amount of ticks that were run.
+    public int runLevel(int level, int ticks, InputSource input) {
+        gameManager.startLevel(level);
+        goalsReached = 0;
+        int tick = 0;
+        while (tick < ticks && input.routeTickInput(tick, gameManager.getPlayer())) {
+            gameManager.update();
+            tick++;
+            if (gameManager.getGameState() == GameState.LEVEL_FINISHED) {
+                goalsReached++;
+                gameManager.startLevel(level);
+            }
+        }
+        return tick;
+    }
+
+    public int getGoalsReached() {
+        return goalsReached;
+    }
+
+    public GameManager getGameManager() {
+        return gameManager;
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+        int[] levels = new int[Math.max(args.length - 1, 0)];
+        for (int i = 1; i < args.length; i++) {
+            levels[i - 1] = Integer.parseInt(args[i]);
+        }
+        if (levels.length == 0) {
+            levels = new int[LEVEL_AMOUNT];
+            for (int i = 0; i < LEVEL_AMOUNT; i++) levels[i] = i + 1;
+        }
+
+        HeadlessRunner runner = new HeadlessRunner();
+        for (int level : levels) {
+            runner.runLevel(level, WARMUP_TICKS, new ScriptedInput());
+        }
+
+        for (int level : levels) {
+            long startTime = System.nanoTime();
+            int ticksRun = runner.runLevel(level, ticks, new ScriptedInput());
+            double seconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+            double ticksPerSecond = ticksRun / seconds;
+            System.out.printf("Level %d: %d ticks in %.3f s, %.0f ticks/s (%.0fx real time), %d goals reached%n",
+                    level, ticksRun, seconds, ticksPerSecond, ticksPerSecond / REAL_TIME_TICK_RATE, runner.getGoalsReached());
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package control;
 
+import util.InputBits;
 import util.InputObserver;
+import util.PerformanceMonitor;
 import util.Vector2D;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 // Class that handles key inputs and sends them to the appropriate model or view classes
+// Key events only queue a timestamped transition, the game thread turns them into one input snapshot per tick with
+// pollTick() and hands it to the listeners, so input state is never shared between the two threads.
 
 public class InputHandler extends InputObserver implements KeyListener {
 
-    private boolean upPressed, downPressed, leftPressed, rightPressed;
-    private boolean jumpInput = false;
-    private boolean backspaceInput = false;
+    // How long a jump press keeps counting as a jump after it happened, so pressing jump a moment before landing
+    // still jumps even if the key was already let go
+    private static final long JUMP_BUFFER_NANOS = 100_000_000L;
+
+    private final KeyTransitionQueue transitions = new KeyTransitionQueue();
+    private int eventHeldBits = 0;  // Keys held as seen by the AWT event thread, only touched by it
+
+    // Game thread state
+    private int heldBits = 0;
+    private boolean jumpBuffered = false;
+    private long jumpBufferEnd = 0;
+
+    // Reused for every snapshot, listeners copy the values they need out of it
+    private final Vector2D movementVector = new Vector2D();
+
+    private PerformanceMonitor performanceMonitor;  // F3 toggles its overlay
+    private boolean overlayKeyHeld = false;  // Stops key repeat from toggling the overlay on and off
 
     @Override
     public void keyTyped(KeyEvent e) {
@@ -23,70 +41,72 @@ public class InputHandler extends InputObserver implements KeyListener {
     public void keyPressed(KeyEvent e) {
         int code = e.getKeyCode();  // Returns int keyCode associated with the key in this event
 
-        if (code == KeyEvent.VK_W || code == KeyEvent.VK_UP) {
-            upPressed = true;
-        }
-        if (code == KeyEvent.VK_S || code == KeyEvent.VK_DOWN) {
-            downPressed = true;
-        }
-        if (code == KeyEvent.VK_A || code == KeyEvent.VK_LEFT) {
-            leftPressed = true;
+        // Debug keys are handled here and not passed on to listeners
+        if (code == KeyEvent.VK_F3) {
+            if (performanceMonitor != null && !overlayKeyHeld) performanceMonitor.toggleOverlay();
+            overlayKeyHeld = true;
+            return;
         }
-        if (code == KeyEvent.VK_D || code == KeyEvent.VK_RIGHT) {
-            rightPressed = true;
-        }
-        if (code == KeyEvent.VK_SPACE) {
-            jumpInput = true;
-        }
-        if (code == KeyEvent.VK_BACK_SPACE) {
-            backspaceInput = true;
-        }
-        notifyListeners(getMovementVector(), jumpInput, backspaceInput);
+        queueTransition(eventHeldBits | keyBit(code));
     }
 
     @Override
     public void keyReleased(KeyEvent e) {
         int code = e.getKeyCode();
 
-        if (code == KeyEvent.VK_W || code == KeyEvent.VK_UP) {
-            upPressed = false;
-        }
-        if (code == KeyEvent.VK_S || code == KeyEvent.VK_DOWN) {
-            downPressed = false;
-        }
-        if (code == KeyEvent.VK_A || code == KeyEvent.VK_LEFT) {
-            leftPressed = false;
-        }
-        if (code == KeyEvent.VK_D || code == KeyEvent.VK_RIGHT) {
-            rightPressed = false;
+        if (code == KeyEvent.VK_F3) {
+            overlayKeyHeld = false;
+            return;
         }
-        if (code == KeyEvent.VK_SPACE) {
-            jumpInput = false;
-        }
-        if (code == KeyEvent.VK_BACK_SPACE) {
-            backspaceInput = false;
-        }
-        notifyListeners(getMovementVector(), jumpInput, backspaceInput);
+        queueTransition(eventHeldBits & ~keyBit(code));
     }
 
-    public Vector2D getMovementVector() {
-        Vector2D inputVector = new Vector2D();
-        if (upPressed) {
-            inputVector.y--;
-        }
-        if (downPressed) {
-            inputVector.y++;
-        }
-        if (leftPressed) {
-            inputVector.x--;
-        }
-        if (rightPressed) {
-            inputVector.x++;
-        }
-        return inputVector;
+    // Key repeat sends more presses of a key that is already held, those are not transitions
+    private void queueTransition(int bits) {
+        if (bits == eventHeldBits) return;
+        eventHeldBits = bits;
+        transitions.offer(bits, System.nanoTime());
+    }
+
+    private static int keyBit(int code) {
+        return switch (code) {
+            case KeyEvent.VK_W, KeyEvent.VK_UP -> InputBits.UP;
+            case KeyEvent.VK_S, KeyEvent.VK_DOWN -> InputBits.DOWN;
+            case KeyEvent.VK_A, KeyEvent.VK_LEFT -> InputBits.LEFT;
+            case KeyEvent.VK_D, KeyEvent.VK_RIGHT -> InputBits.RIGHT;
+            case KeyEvent.VK_SPACE -> InputBits.JUMP;
+            case KeyEvent.VK_BACK_SPACE -> InputBits.BACKSPACE;
+            case KeyEvent.VK_R -> InputBits.REWIND;
+            default -> 0;
+        };
+    }
+
+    // Applies every key transition queued since the last tick and returns the input bits of the tick starting at
+    // tickTime. A key pressed and released between two ticks still shows as held for this one tick, and
+    // InputBits.JUMP_BUFFERED is set while the last jump press is younger than JUMP_BUFFER_NANOS at tickTime.
+    // The listeners are given the same input without the jump buffer. Only called by the game thread.
+    public int pollTick(long tickTime) {
+        int pressedBits = 0;
+        while (transitions.hasNext()) {
+            int bits = transitions.peekBits();
+            int newlyPressed = bits & ~heldBits;
+            if ((newlyPressed & InputBits.JUMP) != 0) {
+                jumpBuffered = true;
+                jumpBufferEnd = transitions.peekTime() + JUMP_BUFFER_NANOS;
+            }
+            pressedBits |= newlyPressed;
+            heldBits = bits;
+            transitions.remove();
+        }
+        if (jumpBuffered && tickTime - jumpBufferEnd >= 0) jumpBuffered = false;
+
+        int tickBits = heldBits | pressedBits;
+        notifyListeners(InputBits.decodeMovement(tickBits, movementVector), InputBits.isJump(tickBits),
+                InputBits.isBackspace(tickBits));
+        return jumpBuffered ? tickBits | InputBits.JUMP_BUFFERED : tickBits;
     }
 
-    public boolean getJumpInput() {
-        return jumpInput;
+    public void setPerformanceMonitor(PerformanceMonitor performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
     }
 }
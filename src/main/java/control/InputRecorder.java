@@ -0,0 +1,68 @@
+package control;
+
+import io.ReplayFile;
+import util.InputBits;
+import util.InputListener;
+import util.Vector2D;
+
+import java.nio.file.Path;
+
+// Sits between the InputHandler and the Player: the input snapshot of each tick is handed to the player by
+// captureTick(). Since the player sees exactly one input per tick, recording those inputs, jump buffer included, is
+// enough to replay a level attempt deterministically.
+public class InputRecorder {
+
+    private final Vector2D inputVector = new Vector2D();
+    private final Path profileDirectory;  // Where the replays are saved, see SaveStore.profileDirectory()
+
+    // Recording state, only touched by the game thread
+    private final ReplayFile.RunBuffer runs = new ReplayFile.RunBuffer();
+    private boolean recording = false;
+    private int level = 0;
+    private int tickCount = 0;
+    private int runBits = 0;
+    private int runLength = 0;
+
+    public InputRecorder(Path profileDirectory) {
+        this.profileDirectory = profileDirectory;
+    }
+
+    public void beginRecording(int level) {
+        this.level = level;
+        runs.clear();
+        tickCount = 0;
+        runLength = 0;
+        recording = true;
+    }
+
+    // Hands the input bits of this tick to the target, and records them if a recording is running
+    public void captureTick(int bits, InputListener target) {
+        if (recording) {
+            if (runLength > 0 && bits != runBits) {
+                runs.appendRun(runBits, runLength);
+                runLength = 0;
+            }
+            runBits = bits;
+            runLength++;
+            tickCount++;
+        }
+        InputBits.route(bits, target, inputVector);
+    }
+
+    // Ends the recording and saves it along with the results of the run, returns where it was saved or null if nothing
+    // was saved
+    public Path finishRecording(ReplayFile.Claims claims) {
+        if (!recording) return null;
+        recording = false;
+        if (runLength > 0) runs.appendRun(runBits, runLength);
+        return ReplayFile.saveReplay(profileDirectory, level, tickCount, claims, runs);
+    }
+
+    public void cancelRecording() {
+        recording = false;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+}
@@ -0,0 +1,9 @@
+package control;
+
+import util.InputListener;
+
+// Supplies the input for each tick when the game is driven without a keyboard, such as headless runs and replays
+public interface InputSource {
+    // Routes the input for the given tick to the listener, returns false once the source has no more input to give
+    boolean routeTickInput(int tick, InputListener listener);
+}
@@ -0,0 +1,56 @@
+package control;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single producer, single consumer ring buffer of key transitions, written by the AWT event thread and read by the
+// game thread. Each entry is the full set of held keys (util.InputBits) after the transition and the System.nanoTime()
+// it happened at, kept in parallel arrays so neither side allocates. Since every entry carries the whole held state,
+// a transition dropped because the buffer was full only loses a tap, never leaves a key stuck down.
+public class KeyTransitionQueue {
+    private static final int CAPACITY = 256;  // Must be a power of two
+    private static final int SLOT_MASK = CAPACITY - 1;
+
+    private final int[] heldBits = new int[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+
+    // Each position is only advanced by one thread, the lazySet publishes the slots written or freed before it
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private long droppedTransitions = 0;  // Only touched by the producer
+
+    // Queues a transition, returns false if the game thread has fallen a full buffer behind. Producer thread only.
+    public boolean offer(int bits, long time) {
+        long position = writePosition.get();
+        if (position - readPosition.get() >= CAPACITY) {
+            droppedTransitions++;
+            return false;
+        }
+        int slot = (int) position & SLOT_MASK;
+        heldBits[slot] = bits;
+        times[slot] = time;
+        writePosition.lazySet(position + 1);
+        return true;
+    }
+
+    // The peek methods read the oldest transition, only valid while hasNext() is true. Consumer thread only.
+    public boolean hasNext() {
+        return readPosition.get() != writePosition.get();
+    }
+
+    public int peekBits() {
+        return heldBits[(int) readPosition.get() & SLOT_MASK];
+    }
+
+    public long peekTime() {
+        return times[(int) readPosition.get() & SLOT_MASK];
+    }
+
+    // Hands the oldest slot back to the producer
+    public void remove() {
+        readPosition.lazySet(readPosition.get() + 1);
+    }
+
+    public long getDroppedTransitions() {
+        return droppedTransitions;
+    }
+}
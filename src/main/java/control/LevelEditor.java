@@ -0,0 +1,173 @@
+package control;
+
+import io.MapLoader;
+import model.GameManager;
+import model.GameState;
+import model.TileChanges;
+import model.TileType;
+import view.GamePanel;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Dev mode level editor, toggled with F2 while playing a level. The mouse paints and erases tiles on the level being
+// played, and F5 saves it back to its file in the level directory in the same format as the tile map editor.
+// Mouse and keys arrive on the AWT event thread and are queued as commands, the game thread applies them at the start
+// of its tick with applyCommands(), so the tile map is only ever changed by the game thread.
+public class LevelEditor extends MouseAdapter implements KeyListener {
+    private static final String TEMPORARY_FILE_TYPE = ".tmp";
+
+    private enum Action { TOGGLE, PAINT, ERASE, SELECT, SAVE }
+
+    // The column and row are only used by PAINT and ERASE, the type only by SELECT
+    private record EditorCommand(Action action, int column, int row, TileType type) {}
+
+    // A level file that finished saving, with the edit count of the tiles that were written
+    private record SavedLevel(String levelName, int editCount) {}
+
+    private final GamePanel gamePanel;
+    private final Path levelDirectory;
+    private final ConcurrentLinkedQueue<EditorCommand> commands = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<SavedLevel> savedLevels = new ConcurrentLinkedQueue<>();
+
+    // Only touched by the AWT event thread, a drag only paints each tile once
+    private int lastColumn;
+    private int lastRow;
+
+    public LevelEditor(GamePanel gamePanel, Path levelDirectory) {
+        this.gamePanel = gamePanel;
+        this.levelDirectory = levelDirectory;
+        gamePanel.addKeyListener(this);
+        gamePanel.addMouseListener(this);
+        gamePanel.addMouseMotionListener(this);
+    }
+
+    // Applies the commands queued since the last tick, called by the game thread before it updates the game
+    public void applyCommands(GameManager gameManager) {
+        SavedLevel savedLevel;
+        while ((savedLevel = savedLevels.poll()) != null) {
+            if (savedLevel.levelName().equals(gameManager.getLevelName())) gameManager.markLevelSaved(savedLevel.editCount());
+        }
+
+        EditorCommand command;
+        while ((command = commands.poll()) != null) {
+            switch (command.action()) {
+                case TOGGLE -> gameManager.toggleEditor();
+                case PAINT -> gameManager.paintTile(command.column(), command.row());
+                case ERASE -> gameManager.eraseTile(command.column(), command.row());
+                case SELECT -> gameManager.setEditorTileType(command.type());
+                case SAVE -> {
+                    if (gameManager.getGameState() == GameState.EDITOR) saveLevel(gameManager);
+                }
+            }
+        }
+    }
+
+    // The tiles are copied on the game thread and written on their own thread, so saving a big level does not stall the game
+    private void saveLevel(GameManager gameManager) {
+        TileChanges tiles = gameManager.exportLevel();
+        int editCount = gameManager.getLevelEditCount();
+        Thread saver = new Thread(() -> {
+            if (writeLevel(tiles)) savedLevels.add(new SavedLevel(tiles.getLevelName(), editCount));
+        }, "Level saver");
+        saver.start();
+    }
+
+    // Writes to a temporary file first and moves it over the level, so the LevelWatcher never reads a half written level
+    private boolean writeLevel(TileChanges tiles) {
+        Path levelFile = MapLoader.levelFile(levelDirectory, tiles.getLevelName());
+        Path temporaryFile = levelFile.resolveSibling(levelFile.getFileName() + TEMPORARY_FILE_TYPE);
+        long startTime = System.nanoTime();
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                writeTiles(out, tiles);
+            }
+            Files.move(temporaryFile, levelFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save the level: " + e.getMessage());
+            return false;
+        }
+        System.out.printf("Saved %d tiles to %s in %.0f ms%n", tiles.size(), levelFile,
+                (System.nanoTime() - startTime) / 1_000_000.0);
+        return true;
+    }
+
+    private static void writeTiles(Writer out, TileChanges tiles) throws IOException {
+        MapLoader.MapWriter map = new MapLoader.MapWriter(out);
+        for (int i = 0; i < tiles.size(); i++) {
+            map.writeTile(TileType.tileTypeToString(tiles.getType(i)), tiles.getVariant(i), tiles.getColumn(i),
+                    tiles.getRow(i));
+        }
+        map.finish();
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_F2 -> queue(Action.TOGGLE, 0, 0, null);
+            case KeyEvent.VK_F5 -> queue(Action.SAVE, 0, 0, null);
+            case KeyEvent.VK_1 -> queue(Action.SELECT, 0, 0, TileType.GROUND);
+            case KeyEvent.VK_2 -> queue(Action.SELECT, 0, 0, TileType.HAZARD);
+            case KeyEvent.VK_3 -> queue(Action.SELECT, 0, 0, TileType.GOAL);
+            case KeyEvent.VK_4 -> queue(Action.SELECT, 0, 0, TileType.COLLECTIBLE);
+            default -> {}
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {}
+
+    @Override
+    public void keyTyped(KeyEvent e) {}
+
+    @Override
+    public void mousePressed(MouseEvent e) {
+        lastColumn = gamePanel.screenToColumn(e.getX());
+        lastRow = gamePanel.screenToRow(e.getY());
+        queueMouseEdit(e, lastColumn, lastRow);
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        gamePanel.setEditorMouse(e.getX(), e.getY());
+        int column = gamePanel.screenToColumn(e.getX());
+        int row = gamePanel.screenToRow(e.getY());
+        if (column == lastColumn && row == lastRow) return;
+        lastColumn = column;
+        lastRow = row;
+        queueMouseEdit(e, column, row);
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        gamePanel.setEditorMouse(e.getX(), e.getY());
+    }
+
+    @Override
+    public void mouseExited(MouseEvent e) {
+        gamePanel.hideEditorMouse();
+    }
+
+    // The left button paints, the right one erases
+    private void queueMouseEdit(MouseEvent e, int column, int row) {
+        if ((e.getModifiersEx() & MouseEvent.BUTTON1_DOWN_MASK) != 0) {
+            queue(Action.PAINT, column, row, null);
+        } else if ((e.getModifiersEx() & MouseEvent.BUTTON3_DOWN_MASK) != 0) {
+            queue(Action.ERASE, column, row, null);
+        }
+    }
+
+    private void queue(Action action, int column, int row, TileType type) {
+        commands.add(new EditorCommand(action, column, row, type));
+    }
+}
@@ -0,0 +1,710 @@
+package control;
+
+import io.ReplayFile;
+import model.EventBatch;
+import model.EventBus;
+import model.EventListener;
+import model.Player;
+import model.TileChanges;
+import model.TileMap;
+import model.TileType;
+import util.InputBits;
+import util.Vector2D;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// Searches for the fewest ticks of input that take the player from the spawn to the goal, optionally taking every
+// collectible on the way, to get a reference best time for each level. It is also a heavy and realistic workload for
+// measuring how fast the simulation runs, as it does nothing but step the real Player physics.
+// Weighted best first search: a state is the player after some ticks of input, expanding it restores it into a Player
+// and moves it TICKS_PER_INPUT ticks with each input that can make a difference. Children that hit a hazard, leave the level or finish
+// it too early are dropped, and a child that rounds to the same position and velocity (and collectibles taken, when all
+// of them are wanted) as one reached in as many ticks or fewer is dropped as well. The open state with the fewest ticks
+// so far plus weight times the estimated ticks left is expanded first. The estimate is not exact, so the solution found
+// is a good time for the level rather than the best one.
+// The most promising states are expanded in batches, every thread moving its share of a batch with its own Player and
+// TileMap, and the children are added to the search on the calling thread.
+// Run with: java control.LevelSolver [--all] [--weight=w] [--threads=count] [--replays=folder] [level or level file...]
+// --all also takes every collectible, --replays writes the solutions of the games levels as replays that
+// ReplayValidator can check.
+public class LevelSolver {
+
+    private static final int TILE_SIZE = 32;
+    private static final int LEVEL_AMOUNT = 5;
+    private static final double DEFAULT_WEIGHT = 1.5;
+    private static final int MAX_STATES = 4_000_000;  // Gives up once this many states are stored, about 300 MB
+    private static final int STATES_PER_THREAD = 256;  // States every thread expands per batch
+    private static final int INITIAL_CAPACITY = 1 << 16;  // Must be a power of two
+    private static final double MILLIS_PER_TICK = 1000.0 / 60.0;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    // The inputs tried for every state, jumping only makes a difference while standing, so airborne states try the
+    // first three only
+    private static final int[] INPUTS = {0, InputBits.LEFT, InputBits.RIGHT,
+            InputBits.JUMP, InputBits.LEFT | InputBits.JUMP, InputBits.RIGHT | InputBits.JUMP};
+    private static final int AIRBORNE_INPUTS = 3;
+    private static final int TICKS_PER_INPUT = 6;  // An input is held this long before the search branches again
+
+    // States are the same when they round to the same pixel and the same tenth of a pixel per tick
+    private static final double VELOCITY_STEP = 0.1;
+
+    // Rows of empty space above the highest tile that still count as inside the level, more than a jump can climb
+    private static final int TOP_MARGIN_ROWS = 4;
+    private static final double DISTANCE_WEIGHT = 1.0 / 64;  // Ticks per pixel of straight distance to a target
+    private static final float TICKS_PER_TILE = (float) (TILE_SIZE / Player.MAX_HORIZONTAL_SPEED);
+
+    // Player state layout inside Player.saveState()
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int VELOCITY_X = 2;
+    private static final int VELOCITY_Y = 3;
+    private static final int ON_GROUND = 4;
+
+    // The best input found for a level
+    public static class Solution {
+        public final String levelName;
+        public final boolean solved;
+        public final int[] inputBits;  // One entry per tick, the last one reaches the goal
+        public final int collectibles;
+        public final int expandedStates;
+        public final long simulatedTicks;
+        public final double seconds;
+
+        private Solution(String levelName, int[] inputBits, int collectibles, int expandedStates, long simulatedTicks,
+                         double seconds) {
+            this.levelName = levelName;
+            this.solved = inputBits != null;
+            this.inputBits = inputBits;
+            this.collectibles = collectibles;
+            this.expandedStates = expandedStates;
+            this.simulatedTicks = simulatedTicks;
+            this.seconds = seconds;
+        }
+
+        public int getTicks() {
+            return solved ? inputBits.length : 0;
+        }
+    }
+
+    private final Supplier<TileMap> levelLoader;
+    private final String levelName;
+    private final boolean collectAll;
+    private final double weight;
+    private final int threads;
+
+    // Level layout, read only once built, so every worker shares it
+    private int minColumn;
+    private int minRow;
+    private int columns;
+    private int rows;
+    private int[] collectibleColumns;
+    private int[] collectibleRows;
+    private int maskWords;  // Longs per state for the collectibles taken
+    private float[][] targetTicks;  // Ticks to the target by cell, one plan per collectible and the goal last
+    private double[] targetXs;  // Center of each target
+    private double[] targetYs;
+    private float unreachableTicks;  // Stands in for cells the target cannot be reached from
+    private double collectibleWeight;  // More than any estimate, so taking a collectible always ranks a state higher
+
+    // Every state found so far, by index
+    private int stateCount;
+    private double[] stateValues;  // Player.STATE_SIZE values per state
+    private long[] stateMasks;  // maskWords per state, the collectibles taken
+    private int[] stateParents;  // -1 for the spawn
+    private byte[] stateInputs;  // Index into INPUTS of the input that led here
+    private int[] stateTicks;
+    private long[] stateKeys;
+    private boolean[] stateGoals;
+
+    // Binary heap of the states to expand, each entry the float bits of its priority followed by its index
+    private long[] open;
+    private int openSize;
+
+    // Fewest ticks each key was reached in, an open addressing hash table
+    private long[] visitedKeys;
+    private int[] visitedTicks;
+    private int visitedCount;
+
+    // The states being expanded, and their children, INPUTS.length slots for each of them written by the workers
+    private final int[] batch;
+    private int batchSize;
+    private final double[] childValues;
+    private final long[] childMasks;
+    private final double[] childEstimates;  // Ticks left, NaN for an empty slot
+    private final long[] childKeys;
+    private final boolean[] childGoals;
+    private final byte[] childTicks;  // Ticks the input was held for, fewer than TICKS_PER_INPUT if the goal came first
+
+    public LevelSolver(Supplier<TileMap> levelLoader, boolean collectAll, double weight, int threads) {
+        this.levelLoader = levelLoader;
+        this.collectAll = collectAll;
+        this.weight = weight;
+        this.threads = threads;
+        TileMap tileMap = levelLoader.get();
+        this.levelName = tileMap.getName();
+        buildLayout(tileMap);
+
+        int slots = threads * STATES_PER_THREAD * INPUTS.length;
+        batch = new int[threads * STATES_PER_THREAD];
+        childValues = new double[slots * Player.STATE_SIZE];
+        childMasks = new long[slots * maskWords];
+        childEstimates = new double[slots];
+        childKeys = new long[slots];
+        childGoals = new boolean[slots];
+        childTicks = new byte[slots];
+    }
+
+    public static LevelSolver forLevel(int level, boolean collectAll, double weight, int threads) {
+        return new LevelSolver(() -> new TileMap(String.valueOf(level - 1), TILE_SIZE), collectAll, weight, threads);
+    }
+
+    public static LevelSolver forLevelFile(Path levelFile, boolean collectAll, double weight, int threads) {
+        return new LevelSolver(() -> new TileMap(levelFile, TILE_SIZE), collectAll, weight, threads);
+    }
+
+    // Lays the level out on a grid and works out how many ticks each cell is from every target
+    private void buildLayout(TileMap tileMap) {
+        TileChanges tiles = tileMap.exportTiles();
+        int maxColumn = Integer.MIN_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        minColumn = Integer.MAX_VALUE;
+        minRow = Integer.MAX_VALUE;
+        int collectibleCount = 0;
+        int goal = -1;
+        for (int i = 0; i < tiles.size(); i++) {
+            minColumn = Math.min(minColumn, tiles.getColumn(i));
+            maxColumn = Math.max(maxColumn, tiles.getColumn(i));
+            minRow = Math.min(minRow, tiles.getRow(i));
+            maxRow = Math.max(maxRow, tiles.getRow(i));
+            if (tiles.getType(i) == TileType.COLLECTIBLE) collectibleCount++;
+            if (tiles.getType(i) == TileType.GOAL) goal = i;
+        }
+        if (goal < 0) throw new IllegalArgumentException("Level " + levelName + " has no goal");
+        // The spawn is at the top left of tile 0, 0 and the player may leave the outermost tiles by a tile
+        minColumn = Math.min(minColumn, 0) - 1;
+        minRow = Math.min(minRow, 0) - TOP_MARGIN_ROWS;
+        columns = maxColumn + 2 - minColumn;
+        rows = maxRow + 2 - minRow;
+
+        boolean[] ground = new boolean[columns * rows];
+        collectibleColumns = new int[collectibleCount];
+        collectibleRows = new int[collectibleCount];
+        int collectible = 0;
+        for (int i = 0; i < tiles.size(); i++) {
+            switch (tiles.getType(i)) {
+                case GROUND -> ground[cell(tiles.getColumn(i), tiles.getRow(i))] = true;
+                case COLLECTIBLE -> {
+                    collectibleColumns[collectible] = tiles.getColumn(i);
+                    collectibleRows[collectible] = tiles.getRow(i);
+                    collectible++;
+                }
+                case null, default -> {}
+            }
+        }
+        maskWords = Math.max((collectibleCount + 63) / 64, 1);
+
+        int targetCount = collectAll ? collectibleCount + 1 : 1;
+        targetTicks = new float[targetCount][];
+        targetXs = new double[targetCount];
+        targetYs = new double[targetCount];
+        float longest = 0;
+        for (int target = 0; target < targetCount; target++) {
+            boolean isGoal = target == targetCount - 1;
+            int column = isGoal ? tiles.getColumn(goal) : collectibleColumns[target];
+            int row = isGoal ? tiles.getRow(goal) : collectibleRows[target];
+            targetXs[target] = (column + 0.5) * TILE_SIZE;
+            targetYs[target] = (row + 0.5) * TILE_SIZE;
+            targetTicks[target] = flightTicks(ground, column, row);
+            for (float ticks : targetTicks[target]) {
+                if (ticks != Float.POSITIVE_INFINITY) longest = Math.max(longest, ticks);
+            }
+        }
+        unreachableTicks = longest + 1;
+        collectibleWeight = unreachableTicks + Math.hypot(columns, rows) * TILE_SIZE * DISTANCE_WEIGHT + 1;
+    }
+
+    // Ticks to the target from every cell at top speed, going through the empty cells in any of the eight directions.
+    // Infinite in the ground and where no empty cell leads to the target.
+    // It ignores that the player has to climb by jumping from the ground, which makes it a loose estimate where the way
+    // up is a detour, but unlike a plan on the NavigationGraph it keeps getting smaller along a jump, so the search is
+    // pulled through the air instead of trying every way to steer from the takeoff.
+    private float[] flightTicks(boolean[] ground, int targetColumn, int targetRow) {
+        float[] ticks = new float[columns * rows];
+        Arrays.fill(ticks, Float.POSITIVE_INFINITY);
+        int[] queue = new int[columns * rows];
+        int head = 0;
+        int tail = 0;
+        int target = cell(targetColumn, targetRow);
+        ticks[target] = 0;
+        queue[tail++] = target;
+        while (head < tail) {
+            int current = queue[head++];
+            int column = current % columns;
+            int row = current / columns;
+            for (int neighborRow = Math.max(row - 1, 0); neighborRow <= Math.min(row + 1, rows - 1); neighborRow++) {
+                for (int neighborColumn = Math.max(column - 1, 0); neighborColumn <= Math.min(column + 1, columns - 1);
+                     neighborColumn++) {
+                    int neighbor = neighborRow * columns + neighborColumn;
+                    if (ground[neighbor] || ticks[neighbor] != Float.POSITIVE_INFINITY) continue;
+                    ticks[neighbor] = ticks[current] + TICKS_PER_TILE;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return ticks;
+    }
+
+    private int cell(int column, int row) {
+        return (row - minRow) * columns + column - minColumn;
+    }
+
+    // Runs the search, using threads workers for the expansion
+    public Solution solve() throws InterruptedException {
+        long startTime = System.nanoTime();
+        List<Worker> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) workers.add(new Worker());
+
+        stateCount = 0;
+        stateValues = new double[INITIAL_CAPACITY * Player.STATE_SIZE];
+        stateMasks = new long[INITIAL_CAPACITY * maskWords];
+        stateParents = new int[INITIAL_CAPACITY];
+        stateInputs = new byte[INITIAL_CAPACITY];
+        stateTicks = new int[INITIAL_CAPACITY];
+        stateKeys = new long[INITIAL_CAPACITY];
+        stateGoals = new boolean[INITIAL_CAPACITY];
+        open = new long[INITIAL_CAPACITY];
+        openSize = 0;
+        visitedKeys = new long[INITIAL_CAPACITY];
+        visitedTicks = new int[INITIAL_CAPACITY];
+        visitedCount = 0;
+
+        // The spawn, as the player is before the first tick
+        Worker first = workers.get(0);
+        first.player.saveState(childValues, 0);
+        Arrays.fill(childMasks, 0, maskWords, 0);
+        childKeys[0] = first.stateKey(0, 0);
+        childGoals[0] = false;
+        push(addState(-1, 0, 0, 0), 0);
+
+        int goal = -1;
+        int expandedStates = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            while (openSize > 0 && stateCount < MAX_STATES) {
+                goal = takeBatch();
+                if (goal >= 0 || batchSize == 0) break;
+                expandedStates += batchSize;
+                expand(executor, workers);
+                addChildren();
+            }
+        }
+
+        long simulatedTicks = 0;
+        for (Worker worker : workers) simulatedTicks += worker.simulatedTicks;
+        int[] inputBits = goal >= 0 ? traceInputs(goal) : null;
+        int collectibles = goal >= 0 ? countCollectibles(stateMasks, goal * maskWords) : 0;
+        // Let go of the states, a long search holds hundreds of megabytes of them
+        stateValues = null;
+        stateMasks = null;
+        stateParents = null;
+        stateInputs = null;
+        stateTicks = null;
+        stateKeys = null;
+        stateGoals = null;
+        open = null;
+        visitedKeys = null;
+        visitedTicks = null;
+        return new Solution(levelName, inputBits, collectibles, expandedStates, simulatedTicks,
+                (System.nanoTime() - startTime) / NANOS_PER_SECOND);
+    }
+
+    // Fills the batch with the most promising open states that are still the fastest way to their key
+    // Returns a state that reached the goal instead if one comes up first, or -1
+    private int takeBatch() {
+        batchSize = 0;
+        while (openSize > 0 && batchSize < batch.length) {
+            int state = poll();
+            if (stateGoals[state]) return state;
+            if (stateTicks[state] > visitedTicks[findVisited(stateKeys[state])]) continue;  // Reached faster since
+            batch[batchSize++] = state;
+        }
+        return -1;
+    }
+
+    // Every worker moves an equal share of the batch, each child is written to the slot of its state and input
+    private void expand(ExecutorService executor, List<Worker> workers) throws InterruptedException {
+        int share = (batchSize + threads - 1) / threads;
+        for (int i = 0; i < threads; i++) {
+            workers.get(i).setShare(Math.min(i * share, batchSize), Math.min((i + 1) * share, batchSize));
+        }
+        for (Future<Void> future : executor.invokeAll(workers)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Level solver worker failed", e.getCause());
+            }
+        }
+    }
+
+    // Adds every child that is the fastest way to its key so far to the search
+    private void addChildren() {
+        for (int i = 0; i < batchSize; i++) {
+            int parent = batch[i];
+            for (int input = 0; input < INPUTS.length; input++) {
+                int slot = i * INPUTS.length + input;
+                if (Double.isNaN(childEstimates[slot])) continue;
+                int ticks = stateTicks[parent] + childTicks[slot];
+                int position = findVisited(childKeys[slot]);
+                if (visitedKeys[position] != 0 && visitedTicks[position] <= ticks) continue;
+                if (visitedKeys[position] == 0) {
+                    visitedKeys[position] = childKeys[slot];
+                    visitedCount++;
+                }
+                visitedTicks[position] = ticks;
+                push(addState(parent, input, ticks, slot), ticks + weight * childEstimates[slot]);
+                if (visitedCount * 2 > visitedKeys.length) growVisited();
+            }
+        }
+    }
+
+    // Copies a child out of its slot into the states
+    private int addState(int parent, int input, int ticks, int slot) {
+        if (stateCount == stateTicks.length) {
+            int capacity = stateCount * 2;
+            stateValues = Arrays.copyOf(stateValues, capacity * Player.STATE_SIZE);
+            stateMasks = Arrays.copyOf(stateMasks, capacity * maskWords);
+            stateParents = Arrays.copyOf(stateParents, capacity);
+            stateInputs = Arrays.copyOf(stateInputs, capacity);
+            stateTicks = Arrays.copyOf(stateTicks, capacity);
+            stateKeys = Arrays.copyOf(stateKeys, capacity);
+            stateGoals = Arrays.copyOf(stateGoals, capacity);
+        }
+        int state = stateCount++;
+        System.arraycopy(childValues, slot * Player.STATE_SIZE, stateValues, state * Player.STATE_SIZE, Player.STATE_SIZE);
+        System.arraycopy(childMasks, slot * maskWords, stateMasks, state * maskWords, maskWords);
+        stateParents[state] = parent;
+        stateInputs[state] = (byte) input;
+        stateTicks[state] = ticks;
+        stateKeys[state] = childKeys[slot];
+        stateGoals[state] = childGoals[slot];
+        return state;
+    }
+
+    // Position of the key in the visited table, or of the empty entry it would go in
+    private int findVisited(long key) {
+        int mask = visitedKeys.length - 1;
+        int position = (int) key & mask;
+        while (visitedKeys[position] != 0 && visitedKeys[position] != key) position = (position + 1) & mask;
+        return position;
+    }
+
+    private void growVisited() {
+        long[] oldKeys = visitedKeys;
+        int[] oldTicks = visitedTicks;
+        visitedKeys = new long[oldKeys.length * 2];
+        visitedTicks = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int position = findVisited(oldKeys[i]);
+            visitedKeys[position] = oldKeys[i];
+            visitedTicks[position] = oldTicks[i];
+        }
+    }
+
+    // Priorities are never negative, so the bits of the float sort the same way as the priorities
+    private void push(int state, double priority) {
+        if (openSize == open.length) open = Arrays.copyOf(open, openSize * 2);
+        long entry = ((long) Float.floatToIntBits((float) priority) << 32) | state;
+        int position = openSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (open[parent] <= entry) break;
+            open[position] = open[parent];
+            position = parent;
+        }
+        open[position] = entry;
+    }
+
+    private int poll() {
+        int state = (int) open[0];
+        long last = open[--openSize];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= openSize) break;
+            if (child + 1 < openSize && open[child + 1] < open[child]) child++;
+            if (open[child] >= last) break;
+            open[position] = open[child];
+            position = child;
+        }
+        open[position] = last;
+        return state;
+    }
+
+    // Follows the parents back from the state that reached the goal
+    private int[] traceInputs(int state) {
+        int[] inputBits = new int[stateTicks[state]];
+        for (; stateParents[state] >= 0; state = stateParents[state]) {
+            Arrays.fill(inputBits, stateTicks[stateParents[state]], stateTicks[state], INPUTS[stateInputs[state]]);
+        }
+        return inputBits;
+    }
+
+    private int countCollectibles(long[] masks, int offset) {
+        int count = 0;
+        for (int word = 0; word < maskWords; word++) count += Long.bitCount(masks[offset + word]);
+        return count;
+    }
+
+    // Moves states of the batch with its own Player and TileMap. The collectibles the tile map has disabled are kept in
+    // step with the state being moved, so a collectible taken by one state is still there for the next.
+    private class Worker implements Callable<Void>, EventListener {
+        private final EventBus eventBus = new EventBus();
+        private final Player player = new Player(eventBus);
+        private final TileMap tileMap = levelLoader.get();
+        private final TileMap.Tile[] collectibleTiles = new TileMap.Tile[collectibleColumns.length];
+        private final long[] disabledMask = new long[maskWords];  // The collectibles the tile map has disabled
+        private final Vector2D inputVector = new Vector2D();
+        private int from;
+        private int to;
+        private long simulatedTicks = 0;
+
+        // Events of the last move, the collectibles taken are written to the child slot directly
+        private boolean goalReached;
+        private boolean playerDied;
+        private int childMaskOffset;
+
+        private Worker() {
+            eventBus.addListener(this);
+            player.resetPlayer(new Vector2D());
+            for (int i = 0; i < collectibleTiles.length; i++) {
+                collectibleTiles[i] = tileMap.getTile(collectibleColumns[i], collectibleRows[i]);
+            }
+        }
+
+        private void setShare(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Void call() {
+            for (int i = from; i < to; i++) {
+                int state = batch[i];
+                int inputCount = stateValues[state * Player.STATE_SIZE + ON_GROUND] != 0 ? INPUTS.length : AIRBORNE_INPUTS;
+                for (int input = 0; input < INPUTS.length; input++) {
+                    int slot = i * INPUTS.length + input;
+                    childEstimates[slot] = Double.NaN;
+                    if (input < inputCount) moveChild(state, input, slot);
+                }
+            }
+            return null;
+        }
+
+        private void moveChild(int state, int input, int slot) {
+            syncCollectibles(stateMasks, state * maskWords);
+            childMaskOffset = slot * maskWords;
+            System.arraycopy(stateMasks, state * maskWords, childMasks, childMaskOffset, maskWords);
+            goalReached = false;
+            playerDied = false;
+
+            player.restoreState(stateValues, state * Player.STATE_SIZE);
+            InputBits.route(INPUTS[input], player, inputVector);
+            int ticks = 0;
+            while (ticks < TICKS_PER_INPUT && !goalReached && !playerDied) {
+                player.move(tileMap);
+                eventBus.drain();
+                ticks++;
+            }
+            simulatedTicks += ticks;
+            childTicks[slot] = (byte) ticks;
+
+            int valueOffset = slot * Player.STATE_SIZE;
+            player.saveState(childValues, valueOffset);
+            int remaining = collectibleColumns.length - countCollectibles(childMasks, childMaskOffset);
+            childGoals[slot] = goalReached;
+            if (goalReached) {
+                // Touching the goal ends the level, so it is either a solution or a dead end
+                if (!collectAll || remaining == 0) {
+                    childEstimates[slot] = 0;
+                    childKeys[slot] = stateKey(valueOffset, childMaskOffset);
+                }
+                return;
+            }
+            if (playerDied) return;
+            double centerX = childValues[valueOffset + X] + player.getWidth() / 2.0;
+            double centerY = childValues[valueOffset + Y] + player.getHeight() / 2.0;
+            int centerColumn = (int) Math.floor(centerX / TILE_SIZE);
+            int centerRow = (int) Math.floor(centerY / TILE_SIZE);
+            if (centerColumn <= minColumn || centerColumn >= minColumn + columns - 1
+                    || centerRow <= minRow || centerRow >= minRow + rows - 1) {
+                return;  // Fell out of the level or walked off its side
+            }
+            childEstimates[slot] = estimate(cell(centerColumn, centerRow), centerX, centerY, remaining);
+            childKeys[slot] = stateKey(valueOffset, childMaskOffset);
+        }
+
+        // Ticks left to the goal through the empty cells, plus a little for the straight distance to it, which ranks
+        // states in the same cell. When every collectible is wanted it is the ticks to the nearest collectible
+        // not yet taken instead, plus a weight per collectible left.
+        private double estimate(int cell, double centerX, double centerY, int remaining) {
+            if (!collectAll || remaining == 0) return ticksLeft(targetTicks.length - 1, cell, centerX, centerY);
+            double nearest = Double.MAX_VALUE;
+            for (int word = 0; word < maskWords; word++) {
+                long missing = ~childMasks[childMaskOffset + word];
+                while (missing != 0) {
+                    int collectible = word * 64 + Long.numberOfTrailingZeros(missing);
+                    missing &= missing - 1;
+                    if (collectible >= collectibleColumns.length) break;
+                    nearest = Math.min(nearest, ticksLeft(collectible, cell, centerX, centerY));
+                }
+            }
+            return nearest + remaining * collectibleWeight;
+        }
+
+        private double ticksLeft(int target, int cell, double centerX, double centerY) {
+            float ticks = targetTicks[target][cell];
+            if (ticks == Float.POSITIVE_INFINITY) ticks = unreachableTicks;
+            return ticks + Math.hypot(targetXs[target] - centerX, targetYs[target] - centerY) * DISTANCE_WEIGHT;
+        }
+
+        // Hash of the rounded position, velocity and ground state, and of the collectibles taken if they matter
+        private long stateKey(int valueOffset, int maskOffset) {
+            long hash = Math.round(childValues[valueOffset + X]);
+            hash = hash * 0x9E3779B97F4A7C15L + Math.round(childValues[valueOffset + Y]);
+            hash = hash * 0x9E3779B97F4A7C15L + Math.round(childValues[valueOffset + VELOCITY_X] / VELOCITY_STEP);
+            hash = hash * 0x9E3779B97F4A7C15L + Math.round(childValues[valueOffset + VELOCITY_Y] / VELOCITY_STEP);
+            hash = hash * 0x9E3779B97F4A7C15L + (long) childValues[valueOffset + ON_GROUND];
+            if (collectAll) {
+                for (int word = 0; word < maskWords; word++) {
+                    hash = hash * 0x9E3779B97F4A7C15L + childMasks[maskOffset + word];
+                }
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            return hash == 0 ? 1 : hash;  // 0 marks an empty visited table entry
+        }
+
+        // Makes the tile map disable exactly the collectibles taken in the given mask
+        private void syncCollectibles(long[] masks, int offset) {
+            if (Arrays.equals(disabledMask, 0, maskWords, masks, offset, offset + maskWords)) return;
+            tileMap.resetTileMap();
+            for (int word = 0; word < maskWords; word++) {
+                long taken = masks[offset + word];
+                disabledMask[word] = taken;
+                while (taken != 0) {
+                    tileMap.disableTile(collectibleTiles[word * 64 + Long.numberOfTrailingZeros(taken)]);
+                    taken &= taken - 1;
+                }
+            }
+        }
+
+        @Override
+        public void processEvents(EventBatch events) {
+            for (int i = 0; i < events.size(); i++) {
+                switch (events.getEvent(i)) {
+                    case GOAL_REACHED -> goalReached = true;
+                    case HAZARD_HIT, OUT_OF_BOUNDS -> playerDied = true;
+                    case COLLECTIBLE -> takeCollectible(events.getTileColumn(i), events.getTileRow(i));
+                    case null, default -> {}
+                }
+            }
+        }
+
+        // The player disabled the tile itself, so the tile map and its mask move on to the childs collectibles
+        private void takeCollectible(int column, int row) {
+            for (int i = 0; i < collectibleColumns.length; i++) {
+                if (collectibleColumns[i] != column || collectibleRows[i] != row) continue;
+                childMasks[childMaskOffset + i / 64] |= 1L << i;
+                disabledMask[i / 64] |= 1L << i;
+                return;
+            }
+        }
+    }
+
+    // Writes a solution of one of the games levels as a replay that finished the level in exactly its ticks
+    private static void writeReplay(Path directory, int level, Solution solution) {
+        ReplayFile.RunBuffer runs = new ReplayFile.RunBuffer();
+        int[] inputBits = solution.inputBits;
+        int runStart = 0;
+        for (int tick = 1; tick <= inputBits.length; tick++) {
+            if (tick == inputBits.length || inputBits[tick] != inputBits[runStart]) {
+                runs.appendRun(inputBits[runStart], tick - runStart);
+                runStart = tick;
+            }
+        }
+        ReplayFile.Claims claims = new ReplayFile.Claims(solution.getTicks(), solution.collectibles,
+                solution.getTicks() * MILLIS_PER_TICK);
+        Path path = directory.resolve("level" + level + "_solved.rpl");
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                ReplayFile.write(out, level, solution.getTicks(), claims, runs);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write the replay " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void printSolution(String label, Solution solution, int threads) {
+        double ticksPerSecond = solution.simulatedTicks / solution.seconds;
+        if (solution.solved) {
+            System.out.printf("%s: %d ticks (%.2f s), %d collectibles", label, solution.getTicks(),
+                    solution.getTicks() * MILLIS_PER_TICK / 1000.0, solution.collectibles);
+        } else {
+            System.out.printf("%s: not solved", label);
+        }
+        System.out.printf(", %d states expanded, %d ticks simulated in %.2f s, %.0f ticks/s (%.0f per thread)%n",
+                solution.expandedStates, solution.simulatedTicks, solution.seconds, ticksPerSecond, ticksPerSecond / threads);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean collectAll = false;
+        double weight = DEFAULT_WEIGHT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path replayDirectory = null;
+        List<String> levels = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--all")) collectAll = true;
+            else if (arg.startsWith("--weight=")) weight = Double.parseDouble(arg.substring("--weight=".length()));
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else if (arg.startsWith("--replays=")) replayDirectory = Paths.get(arg.substring("--replays=".length()));
+            else levels.add(arg);
+        }
+        if (levels.isEmpty()) {
+            for (int level = 1; level <= LEVEL_AMOUNT; level++) levels.add(String.valueOf(level));
+        }
+
+        long simulatedTicks = 0;
+        double seconds = 0;
+        for (String level : levels) {
+            boolean gameLevel = level.chars().allMatch(Character::isDigit);
+            LevelSolver solver = gameLevel
+                    ? forLevel(Integer.parseInt(level), collectAll, weight, threads)
+                    : forLevelFile(Paths.get(level), collectAll, weight, threads);
+            Solution solution = solver.solve();
+            printSolution(gameLevel ? "Level " + level : level, solution, threads);
+            simulatedTicks += solution.simulatedTicks;
+            seconds += solution.seconds;
+            if (gameLevel && solution.solved && replayDirectory != null) {
+                writeReplay(replayDirectory, Integer.parseInt(level), solution);
+            }
+        }
+        System.out.printf("%d ticks simulated in %.2f s on %d threads, %.0f ticks/s%n",
+                simulatedTicks, seconds, threads, simulatedTicks / seconds);
+    }
+}
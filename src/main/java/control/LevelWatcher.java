@@ -0,0 +1,189 @@
+package control;
+
+import io.MapLoader;
+import model.TileChanges;
+import model.TileMap;
+import model.TileType;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Dev mode hot reload: watches a level directory, such as the one the tile map editor saves to, and turns every saved
+// level file into the TileChanges between it and the previous version of the file. In dev mode the GameManager loads
+// its levels from the same files, so the previous version is what the level being played was loaded from. Reading and
+// diffing happen on the watcher thread, the game thread only picks up the finished changes with pollChanges() and
+// applies them.
+// Started by the GameController when the platformer.dev.levels system property is set to the directory.
+public class LevelWatcher {
+    private static final String LEVEL_FILE_TYPE = ".json";
+    private static final long SETTLE_MILLIS = 50;  // Editors can write a file in several steps, wait for them to stop
+
+    // Each tile of a level is packed into one long, ordered by column, then row, so two levels diff in one pass
+    // Bits 40-62: column, 16-39: row, both offset to be positive, 8-15: TileType ordinal, 0-7: variant
+    private static final int COORDINATE_OFFSET = 1 << 22;  // Levels can span 4 million tiles in each direction
+    private static final int POSITION_SHIFT = 16;
+    private static final TileType[] TILE_TYPES = TileType.values();
+
+    private final Path levelDirectory;
+    private final WatchService watchService;
+    private final ConcurrentLinkedQueue<TileChanges> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    // Last version of every level file seen, only touched by the watcher thread
+    private final HashMap<String, long[]> levels = new HashMap<>();
+
+    public LevelWatcher(Path levelDirectory) throws IOException {
+        this.levelDirectory = levelDirectory;
+        this.watchService = levelDirectory.getFileSystem().newWatchService();
+        levelDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread watcher = new Thread(this::watch, "Level watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        System.out.println("Watching for level changes in: " + levelDirectory.toAbsolutePath());
+    }
+
+    // Returns the next batch of changes to a level, or null if no level file changed. Called by the game thread.
+    public TileChanges pollChanges() {
+        return pendingChanges.poll();
+    }
+
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void watch() {
+        // The levels as they were when the game started are what the first edits are diffed against. A level loaded
+        // after a save but before its changes arrive already has them, applying them again changes nothing.
+        try (DirectoryStream<Path> levelFiles = Files.newDirectoryStream(levelDirectory, "*" + LEVEL_FILE_TYPE)) {
+            for (Path levelFile : levelFiles) {
+                long[] tiles = readLevel(levelFile);
+                if (tiles != null) levels.put(TileMap.levelName(levelFile), tiles);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        HashSet<Path> changedFiles = new HashSet<>();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                // Collects the changed files until the directory has been quiet for a moment
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path fileName && fileName.toString().endsWith(LEVEL_FILE_TYPE)) {
+                            changedFiles.add(levelDirectory.resolve(fileName));
+                        }
+                    }
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                for (Path levelFile : changedFiles) {
+                    reload(levelFile);
+                }
+                changedFiles.clear();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed, stop watching
+        }
+    }
+
+    private void reload(Path levelFile) {
+        long startTime = System.nanoTime();
+        long[] tiles = readLevel(levelFile);
+        if (tiles == null) return;  // Kept the previous version, the next save of the file tries again
+        String levelName = TileMap.levelName(levelFile);
+        long[] previousTiles = levels.put(levelName, tiles);
+        if (previousTiles == null) return;  // A new level, nothing was loaded from it before
+
+        TileChanges changes = diff(levelName, previousTiles, tiles);
+        if (changes.size() == 0) return;
+        pendingChanges.add(changes);
+        System.out.printf("Level %s changed: %d tiles, read and diffed in %.1f ms%n",
+                levelName, changes.size(), (System.nanoTime() - startTime) / 1_000_000.0);
+    }
+
+    // Walks both sorted levels at once, every position that only one of them has or that they disagree on is a change
+    private static TileChanges diff(String levelName, long[] previousTiles, long[] tiles) {
+        TileChanges changes = new TileChanges(levelName);
+        int previous = 0;
+        int current = 0;
+        while (previous < previousTiles.length || current < tiles.length) {
+            long previousPosition = previous < previousTiles.length ? previousTiles[previous] >>> POSITION_SHIFT : Long.MAX_VALUE;
+            long position = current < tiles.length ? tiles[current] >>> POSITION_SHIFT : Long.MAX_VALUE;
+            if (previousPosition < position) {
+                changes.removeTile(column(previousTiles[previous]), row(previousTiles[previous]));
+                previous++;
+            } else {
+                if (previousPosition > position || previousTiles[previous] != tiles[current]) {
+                    long tile = tiles[current];
+                    changes.setTile(column(tile), row(tile), TILE_TYPES[(int) (tile >>> 8) & 0xFF], (int) tile & 0xFF);
+                }
+                if (previousPosition == position) previous++;
+                current++;
+            }
+        }
+        return changes;
+    }
+
+    // Reads a level file into its packed tiles in sorted order, or returns null if it could not be read
+    private static long[] readLevel(Path levelFile) {
+        PackedTiles packedTiles = new PackedTiles();
+        try {
+            MapLoader.scanMap(levelFile, packedTiles);
+        } catch (IOException e) {
+            // Also happens when the file is read half written
+            System.err.println("Could not read level " + levelFile + ": " + e.getMessage());
+            return null;
+        }
+        if (packedTiles.skippedTiles > 0) {
+            System.err.println("Skipped " + packedTiles.skippedTiles + " tiles of level " + levelFile
+                    + " that cannot be hot reloaded");
+        }
+        long[] tiles = Arrays.copyOf(packedTiles.tiles, packedTiles.tileCount);
+        Arrays.sort(tiles);
+        return tiles;
+    }
+
+    private static class PackedTiles implements MapLoader.TileVisitor {
+        private long[] tiles = new long[1024];
+        private int tileCount = 0;
+        private int skippedTiles = 0;
+
+        @Override
+        public void visitTile(String type, int variant, int x, int y) {
+            TileType tileType = TileType.stringToTileType(type);
+            long column = x + (long) COORDINATE_OFFSET;
+            long row = y + (long) COORDINATE_OFFSET;
+            if (tileType == null || column < 0 || column >= 2L * COORDINATE_OFFSET || row < 0
+                    || row >= 2L * COORDINATE_OFFSET || variant < 0 || variant > 0xFF) {
+                skippedTiles++;
+                return;
+            }
+            if (tileCount == tiles.length) tiles = Arrays.copyOf(tiles, tileCount * 2);
+            tiles[tileCount++] = column << 40 | row << POSITION_SHIFT | (long) tileType.ordinal() << 8 | variant;
+        }
+    }
+
+    private static int column(long tile) {
+        return (int) (tile >>> 40) - COORDINATE_OFFSET;
+    }
+
+    private static int row(long tile) {
+        return (int) ((tile >>> POSITION_SHIFT) & 0xFFFFFF) - COORDINATE_OFFSET;
+    }
+}
@@ -0,0 +1,147 @@
+package control;
+
+import io.MetricsServer;
+import util.GameMetrics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Headless check of the MetricsServer over loopback. Starts it on a free port, scrapes /metrics before and after the
+// game has recorded a tick and checks the response against the Prometheus text exposition format: every sample belongs
+// to a metric with a # TYPE line before it, histogram buckets only grow and end at +Inf with the _count, and the game
+// state only shows up once it has been set. Exits with code 1 if anything does not match.
+// Run with: java control.MetricsScrapeCheck
+public class MetricsScrapeCheck {
+
+    private static final String PREFIX = "platformer_";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+    private static final Pattern TYPE_LINE = Pattern.compile("# TYPE (\\w+) (counter|gauge|histogram)");
+    private static final Pattern HELP_LINE = Pattern.compile("# HELP (\\w+) .+");
+    private static final Pattern SAMPLE_LINE = Pattern.compile("(\\w+)(\\{(\\w+)=\"([^\"]*)\"})? (\\S+)");
+    private static final String[] HISTOGRAM_SUFFIXES = {"_bucket", "_sum", "_count"};
+    private static final long TICK_NANOS = 2_000_000;
+
+    private final List<String> failures = new ArrayList<>();
+
+    private boolean run() throws IOException, InterruptedException {
+        GameMetrics metrics = new GameMetrics();
+        MetricsServer server = new MetricsServer(metrics, 0);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/metrics");
+
+            HashMap<String, String> samples = scrape(client, uri);
+            check(!hasMetric(samples, PREFIX + "game_state"), "game_state is exported before a state was set");
+            check("0".equals(samples.get(PREFIX + "ticks_total")), "ticks_total is not 0 before the first tick");
+
+            metrics.setGameState("IN_LEVEL");
+            metrics.recordTick(TICK_NANOS);
+            samples = scrape(client, uri);
+            check("1".equals(samples.get(PREFIX + "game_state{state=\"IN_LEVEL\"}")), "game_state is not IN_LEVEL");
+            check("1".equals(samples.get(PREFIX + "ticks_total")), "ticks_total is not 1 after one tick");
+            check("1".equals(samples.get(PREFIX + "tick_duration_seconds_count")),
+                    "tick_duration_seconds_count is not 1");
+
+            HttpResponse<String> post = client.send(HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            check(post.statusCode() == 405, "POST answered with " + post.statusCode() + " instead of 405");
+        } finally {
+            server.stop();
+        }
+        for (String failure : failures) System.err.println("FAILED: " + failure);
+        return failures.isEmpty();
+    }
+
+    // GETs the metrics, checks the response and returns every sample by its name and labels
+    private HashMap<String, String> scrape(HttpClient client, URI uri) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        check(response.statusCode() == 200, "GET answered with " + response.statusCode());
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        check(contentType.startsWith(CONTENT_TYPE), "unexpected Content-Type: " + contentType);
+        check(response.body().endsWith("\n"), "the body does not end with a line feed");
+
+        HashMap<String, String> types = new HashMap<>();
+        HashMap<String, String> samples = new HashMap<>();
+        double previousBucket = -1;
+        for (String line : response.body().split("\n")) {
+            Matcher type = TYPE_LINE.matcher(line);
+            if (type.matches()) {
+                check(types.put(type.group(1), type.group(2)) == null, "metric typed twice: " + type.group(1));
+                continue;
+            }
+            if (HELP_LINE.matcher(line).matches()) continue;
+            Matcher sample = SAMPLE_LINE.matcher(line);
+            if (!sample.matches()) {
+                check(false, "not a valid exposition line: " + line);
+                continue;
+            }
+            String name = sample.group(1);
+            String value = sample.group(5);
+            check(name.startsWith(PREFIX), "metric without the " + PREFIX + " prefix: " + name);
+            check(types.containsKey(familyName(name, types)), "sample before its # TYPE line: " + name);
+            check(isNumber(value), "sample value is not a number: " + line);
+            samples.put(sample.group(2) == null ? name : name + sample.group(2), value);
+
+            // Buckets are cumulative, +Inf closes them and has to match _count
+            if (name.endsWith("_bucket") && isNumber(value)) {
+                double count = Double.parseDouble(value);
+                check(count >= previousBucket, "bucket count went down: " + line);
+                previousBucket = "+Inf".equals(sample.group(4)) ? -1 : count;
+                if ("+Inf".equals(sample.group(4))) samples.put(name.replace("_bucket", "_inf"), value);
+            }
+            if (name.endsWith("_count")) {
+                String infCount = samples.get(name.replace("_count", "_inf"));
+                check(value.equals(infCount), "+Inf bucket and _count differ for " + name);
+            }
+        }
+        return samples;
+    }
+
+    // Whether any sample of the metric was scraped, whatever its labels
+    private static boolean hasMetric(HashMap<String, String> samples, String name) {
+        for (String sample : samples.keySet()) {
+            if (sample.equals(name) || sample.startsWith(name + "{")) return true;
+        }
+        return false;
+    }
+
+    // The metric a sample belongs to, histogram samples carry a suffix on the metric name
+    private static String familyName(String name, HashMap<String, String> types) {
+        if (types.containsKey(name)) return name;
+        for (String suffix : HISTOGRAM_SUFFIXES) {
+            if (!name.endsWith(suffix)) continue;
+            String family = name.substring(0, name.length() - suffix.length());
+            if ("histogram".equals(types.get(family))) return family;
+        }
+        return name;
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void check(boolean condition, String failure) {
+        if (!condition) failures.add(failure);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean passed = new MetricsScrapeCheck().run();
+        if (!passed) System.exit(1);
+        System.out.println("Metrics scrape matches the exposition format");
+    }
+}
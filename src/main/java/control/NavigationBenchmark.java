@@ -0,0 +1,96 @@
+package control;
+
+import model.NavigationEdgeType;
+import model.NavigationGraph;
+import model.NavigationQuery;
+import model.TileChanges;
+import model.TileMap;
+import model.TileType;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+
+// Builds the NavigationGraph of levels and times path finding from the spawn to the goal
+// For every level it prints the graph size and build time, then the path found and the average time and allocation of
+// a search. Without arguments it runs the games own levels, otherwise the given level files.
+// Run with: java control.NavigationBenchmark [level file...]
+public class NavigationBenchmark {
+
+    private static final int TILE_SIZE = 32;
+    private static final int LEVEL_COUNT = 5;
+    private static final int WARMUP_SEARCHES = 2_000;
+    private static final int SEARCHES = 20_000;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static void benchmark(TileMap tileMap) {
+        long startTime = System.nanoTime();
+        NavigationGraph graph = NavigationGraph.build(tileMap);
+        long buildNanos = System.nanoTime() - startTime;
+        System.out.printf("  graph:  %d spans, %d edges, built in %.1f ms%n",
+                graph.getNodeCount(), graph.getEdgeCount(), buildNanos / NANOS_PER_MILLI);
+
+        // The player spawns at the top left of column 0 and drops onto whatever is below it
+        int start = graph.findNodeBelow(0, 0);
+        int goal = findGoal(tileMap, graph);
+        if (start < 0 || goal < 0) {
+            System.out.println("  path:   no span under the " + (start < 0 ? "spawn" : "goal"));
+            return;
+        }
+        int startColumn = 0;
+        int startRow = graph.getNodeRow(start);
+        int goalColumn = graph.getNodeStartColumn(goal);
+        int goalRow = graph.getNodeRow(goal);
+
+        NavigationQuery query = new NavigationQuery(graph);
+        if (!query.findPath(startColumn, startRow, goalColumn, goalRow)) {
+            System.out.println("  path:   goal not reachable from the spawn");
+            return;
+        }
+        int[] edgeCounts = new int[NavigationEdgeType.values().length];
+        for (int i = 0; i < query.getPathLength(); i++) {
+            edgeCounts[graph.getEdgeType(query.getPathEdge(i)).ordinal()]++;
+        }
+        System.out.printf("  path:   %d edges (%d runs, %d falls, %d jumps), %.0f ticks%n", query.getPathLength(),
+                edgeCounts[NavigationEdgeType.RUN.ordinal()], edgeCounts[NavigationEdgeType.FALL.ordinal()],
+                edgeCounts[NavigationEdgeType.JUMP.ordinal()], query.getPathCost());
+
+        for (int i = 0; i < WARMUP_SEARCHES; i++) {
+            query.findPath(startColumn, startRow, goalColumn, goalRow);
+        }
+        long allocatedBefore = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+        startTime = System.nanoTime();
+        for (int i = 0; i < SEARCHES; i++) {
+            query.findPath(startColumn, startRow, goalColumn, goalRow);
+        }
+        long searchNanos = System.nanoTime() - startTime;
+        long allocated = THREAD_BEAN.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("  search: %.2f us per path, %.2f bytes allocated per path%n",
+                searchNanos / NANOS_PER_MICRO / SEARCHES, (double) allocated / SEARCHES);
+    }
+
+    // The span the goal tile sits on
+    private static int findGoal(TileMap tileMap, NavigationGraph graph) {
+        TileChanges tiles = tileMap.exportTiles();
+        for (int i = 0; i < tiles.size(); i++) {
+            if (tiles.getType(i) == TileType.GOAL) return graph.findNodeBelow(tiles.getColumn(i), tiles.getRow(i));
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            for (int level = 1; level <= LEVEL_COUNT; level++) {
+                System.out.println("Level " + level + ":");
+                benchmark(new TileMap(String.valueOf(level - 1), TILE_SIZE));
+            }
+        }
+        for (String arg : args) {
+            System.out.println(Paths.get(arg).getFileName() + ":");
+            benchmark(new TileMap(Paths.get(arg), TILE_SIZE));
+        }
+    }
+}
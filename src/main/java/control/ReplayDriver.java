@@ -0,0 +1,67 @@
+package control;
+
+import io.ReplayFile;
+import model.GameManager;
+import model.GameState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Plays recorded replays back headlessly, feeding each tick of input to a fresh GameManager in lockstep with update()
+// Run with: java control.ReplayDriver <replay file...>
+public class ReplayDriver {
+
+    // Outcome of one replay
+    public static class Result {
+        public final int level;
+        public final int recordedTicks;
+        public final int ticksReplayed;
+        public final boolean goalReached;
+        public final int collectibles;
+        public final int levelTicks;  // Ticks since the last respawn when the replay ended
+
+        private Result(int level, int recordedTicks, int ticksReplayed, boolean goalReached, int collectibles, int levelTicks) {
+            this.level = level;
+            this.recordedTicks = recordedTicks;
+            this.ticksReplayed = ticksReplayed;
+            this.goalReached = goalReached;
+            this.collectibles = collectibles;
+            this.levelTicks = levelTicks;
+        }
+    }
+
+    // Replays the input from the start of its level until the input runs out or the goal is reached
+    public static Result replay(ReplayInput input) {
+        GameManager gameManager = new GameManager(false, true);
+        gameManager.startLevel(input.getLevel());
+        int tick = 0;
+        while (gameManager.getGameState() == GameState.IN_LEVEL && input.routeTickInput(tick, gameManager.getPlayer())) {
+            gameManager.update();
+            tick++;
+        }
+        boolean goalReached = gameManager.getGameState() == GameState.LEVEL_FINISHED;
+        return new Result(input.getLevel(), input.getTickCount(), tick, goalReached,
+                gameManager.getCollectibleAmount(), gameManager.getLevelTicks());
+    }
+
+    public static Result replay(Path path) throws IOException {
+        try (ReplayInput input = new ReplayInput(ReplayFile.open(path))) {
+            return replay(input);
+        }
+    }
+
+    public static void main(String[] args) {
+        for (String arg : args) {
+            try {
+                Result result = replay(Paths.get(arg));
+                System.out.printf("%s: level %d, %d/%d ticks replayed, goal %s, %d collectibles%n",
+                        arg, result.level, result.ticksReplayed, result.recordedTicks,
+                        result.goalReached ? "reached" : "not reached", result.collectibles);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Could not replay " + arg + ": " + e.getMessage());
+            }
+        }
+    }
+}
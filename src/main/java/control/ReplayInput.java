@@ -0,0 +1,51 @@
+package control;
+
+import io.ReplayFile;
+import util.InputBits;
+import util.InputListener;
+import util.Vector2D;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Feeds a recorded replay back one tick at a time, streamed from the file as it goes
+public class ReplayInput implements InputSource, Closeable {
+
+    private final ReplayFile.Reader reader;
+    private final Vector2D inputVector = new Vector2D();
+
+    public ReplayInput(ReplayFile.Reader reader) {
+        this.reader = reader;
+    }
+
+    public int getLevel() {
+        return reader.getLevel();
+    }
+
+    public int getTickCount() {
+        return reader.getTickCount();
+    }
+
+    public ReplayFile.Claims getClaims() {
+        return reader.getClaims();
+    }
+
+    @Override
+    public boolean routeTickInput(int tick, InputListener listener) {
+        int bits;
+        try {
+            bits = reader.nextTickBits();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Replay ended early at tick " + tick, e);
+        }
+        if (bits < 0) return false;
+        InputBits.route(bits, listener, inputVector);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,127 @@
+package control;
+
+import io.ReplayFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Checks a folder of submitted replays by re-simulating every one of them headlessly, one per core at a time
+// A run is valid when its input reaches the goal on exactly its last tick, with the claimed collectible count and
+// ticks since the last respawn, and a claimed time that is not shorter than those ticks take at the games tick rate.
+// Every task gets its own GameManager, so runs cannot affect each other.
+// Run with: java control.ReplayValidator <replay folder> [threads]
+public class ReplayValidator {
+
+    private static final String REPLAY_GLOB = "*.rpl";
+    private static final double MILLIS_PER_TICK = 1000.0 / 60.0;
+    private static final int TIME_TOLERANCE_TICKS = 2;  // The game loop catches up on late frames, allow a little jitter
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    // Outcome of checking one replay, reason is null when the replay is valid
+    public static class Verdict {
+        public final Path path;
+        public final String reason;
+        public final int ticksReplayed;
+
+        private Verdict(Path path, String reason, int ticksReplayed) {
+            this.path = path;
+            this.reason = reason;
+            this.ticksReplayed = ticksReplayed;
+        }
+
+        public boolean isValid() {
+            return reason == null;
+        }
+    }
+
+    public static Verdict validate(Path path) {
+        try (ReplayInput input = new ReplayInput(ReplayFile.open(path))) {
+            ReplayDriver.Result result = ReplayDriver.replay(input);
+            return new Verdict(path, findMismatch(result, input.getClaims()), result.ticksReplayed);
+        } catch (IOException | RuntimeException e) {
+            return new Verdict(path, "unreadable: " + e.getMessage(), 0);
+        }
+    }
+
+    // Returns why the replayed result does not back up the claims, or null if it does
+    private static String findMismatch(ReplayDriver.Result result, ReplayFile.Claims claims) {
+        if (!result.goalReached) {
+            return "goal never reached";
+        }
+        if (result.ticksReplayed != result.recordedTicks) {
+            return "goal reached on tick " + result.ticksReplayed + ", claimed " + result.recordedTicks;
+        }
+        if (result.levelTicks != claims.levelTicks) {
+            return "finished " + result.levelTicks + " ticks after respawning, claimed " + claims.levelTicks;
+        }
+        if (result.collectibles != claims.collectibles) {
+            return result.collectibles + " collectibles, claimed " + claims.collectibles;
+        }
+        double shortestTime = (result.levelTicks - TIME_TOLERANCE_TICKS) * MILLIS_PER_TICK;
+        if (claims.levelTime < shortestTime) {
+            return "claimed time " + claims.levelTime + " ms is shorter than " + result.levelTicks + " ticks allow";
+        }
+        return null;
+    }
+
+    // Validates every replay in the folder on the given amount of threads, results keep the folder listing order
+    public static List<Verdict> validateAll(Path directory, int threads) throws IOException, InterruptedException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, REPLAY_GLOB)) {
+            for (Path path : stream) paths.add(path);
+        }
+
+        List<Verdict> verdicts = new ArrayList<>(paths.size());
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<Verdict>> futures = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                futures.add(executor.submit(() -> validate(path)));
+            }
+            for (Future<Verdict> future : futures) {
+                try {
+                    verdicts.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Replay validation task failed", e.getCause());
+                }
+            }
+        }
+        return verdicts;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java control.ReplayValidator <replay folder> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long startTime = System.nanoTime();
+        List<Verdict> verdicts = validateAll(Paths.get(args[0]), threads);
+        double seconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+
+        int invalidCount = 0;
+        long totalTicks = 0;
+        for (Verdict verdict : verdicts) {
+            totalTicks += verdict.ticksReplayed;
+            if (!verdict.isValid()) {
+                invalidCount++;
+                System.out.println("INVALID " + verdict.path.getFileName() + ": " + verdict.reason);
+            }
+        }
+        double runsPerSecond = verdicts.size() / seconds;
+        System.out.printf("%d runs, %d valid, %d invalid in %.3f s on %d threads%n",
+                verdicts.size(), verdicts.size() - invalidCount, invalidCount, seconds, threads);
+        System.out.printf("%.1f runs/s, %.1f runs/s per core, %.0f ticks/s%n",
+                runsPerSecond, runsPerSecond / threads, totalTicks / seconds);
+        if (invalidCount > 0) System.exit(1);
+    }
+}
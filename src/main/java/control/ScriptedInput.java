@@ -0,0 +1,24 @@
+package control;
+
+import util.InputListener;
+import util.Vector2D;
+
+// Endless scripted input: runs right then back left, jumping in short bursts
+// Not meant to beat levels, just to exercise running, jumping, collisions, collectibles and hazards every cycle
+public class ScriptedInput implements InputSource {
+
+    private static final int INPUT_CYCLE = 240;
+    private static final int RIGHT_TICKS = 150;
+    private static final int JUMP_CYCLE = 40;
+    private static final int JUMP_HOLD_TICKS = 12;
+
+    private final Vector2D inputVector = new Vector2D();
+
+    @Override
+    public boolean routeTickInput(int tick, InputListener listener) {
+        inputVector.set(tick % INPUT_CYCLE < RIGHT_TICKS ? 1 : -1, 0);
+        boolean jump = tick % JUMP_CYCLE < JUMP_HOLD_TICKS;
+        listener.routeInput(inputVector, jump, false);
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+package control;
+
+import model.GameManager;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs thousands of independent headless games in one JVM, each session on its own virtual thread, the way the bot and
+// validation farms do. Every session is a lightweight GameManager playing scripted input, and sessions on the same level
+// share its LevelGeometry, so a session only holds its own player, collectibles taken and a small event buffer.
+// Prints the heap each session takes once they are all in a level, then how fast they run side by side.
+// Run with: java control.SessionHost [sessions] [ticks per session] [level...]
+public class SessionHost {
+
+    private static final int LEVEL_AMOUNT = 5;
+    private static final int DEFAULT_SESSIONS = 10_000;
+    private static final int DEFAULT_TICKS = 6_000;  // 100 seconds of play at the windowed tick rate
+    private static final int WARMUP_TICKS = 2_000;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final List<HeadlessRunner> sessions;
+    private final int[] sessionLevels;
+
+    // Starts the sessions in their levels straight away, spread evenly over the given levels
+    public SessionHost(int sessionCount, int[] levels) {
+        sessions = new ArrayList<>(sessionCount);
+        sessionLevels = new int[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            HeadlessRunner session = new HeadlessRunner(new GameManager(false, true));
+            sessionLevels[i] = levels[i % levels.length];
+            session.getGameManager().startLevel(sessionLevels[i]);
+            sessions.add(session);
+        }
+    }
+
+    // Plays every session for the given amount of ticks, each on a virtual thread of its own, and returns the ticks run
+    public long run(int ticks) throws InterruptedException {
+        long ticksRun = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> futures = new ArrayList<>(sessions.size());
+            for (int i = 0; i < sessions.size(); i++) {
+                HeadlessRunner session = sessions.get(i);
+                int level = sessionLevels[i];
+                futures.add(executor.submit(() -> session.runLevel(level, ticks, new ScriptedInput())));
+            }
+            for (Future<Integer> future : futures) {
+                try {
+                    ticksRun += future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Game session failed", e.getCause());
+                }
+            }
+        }
+        return ticksRun;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // Goals reached by every session in its last run
+    public int getGoalsReached() {
+        int goalsReached = 0;
+        for (HeadlessRunner session : sessions) goalsReached += session.getGoalsReached();
+        return goalsReached;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int sessionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SESSIONS;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+        int[] levels = new int[Math.max(args.length - 2, 0)];
+        for (int i = 2; i < args.length; i++) {
+            levels[i - 2] = Integer.parseInt(args[i]);
+        }
+        if (levels.length == 0) {
+            levels = new int[LEVEL_AMOUNT];
+            for (int i = 0; i < LEVEL_AMOUNT; i++) levels[i] = i + 1;
+        }
+
+        // Loads the shared levels and lets the JIT compile the tick, so neither counts towards the sessions
+        new SessionHost(levels.length, levels).run(WARMUP_TICKS);
+
+        long usedBefore = usedHeap();
+        long startTime = System.nanoTime();
+        SessionHost host = new SessionHost(sessionCount, levels);
+        double startSeconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+        long usedBytes = usedHeap() - usedBefore;
+        System.out.printf("%d sessions started in %.3f s, %.0f bytes of heap per session%n",
+                sessionCount, startSeconds, (double) usedBytes / sessionCount);
+
+        startTime = System.nanoTime();
+        long ticksRun = host.run(ticks);
+        double seconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+        System.out.printf("%d ticks in %.3f s on %d cores, %.0f ticks/s, %d goals reached%n", ticksRun, seconds,
+                Runtime.getRuntime().availableProcessors(), ticksRun / seconds, host.getGoalsReached());
+        Reference.reachabilityFence(host);
+    }
+}
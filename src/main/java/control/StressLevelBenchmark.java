@@ -0,0 +1,148 @@
+package control;
+
+import model.GameManager;
+import model.GameState;
+import model.TileMap;
+import util.InputListener;
+import util.Vector2D;
+import view.GamePanel;
+import view.QualityLevel;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Loads, plays and renders level files headlessly and reports how the cost scales with their size
+// Meant for the big levels written by StressLevelGenerator, but works with any level file. For every level it prints:
+// - load time and heap used per tile (best of a few loads)
+// - ticks per second while running right through the level, and the cost of a visible tile query at the players view
+// - frame render time percentiles of the GamePanel drawing into an offscreen image at full quality
+// Run with: java control.StressLevelBenchmark <level file...>
+public class StressLevelBenchmark {
+
+    private static final int TILE_SIZE = 32;
+    private static final int LOAD_RUNS = 3;
+    private static final int PLAY_TICKS = 60_000;
+    private static final int WARMUP_FRAMES = 120;
+    private static final int RENDER_FRAMES = 600;
+    private static final Vector2D VIEW_SIZE = new Vector2D(928, 480);  // What the GamePanel shows of the world
+    private static final int SCREEN_WIDTH = 1856;
+    private static final int SCREEN_HEIGHT = 960;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    // Holds right and jump, so the player jumps again as soon as it lands. Clears most steps and spikes.
+    private static class RunRightInput implements InputSource {
+        private final Vector2D inputVector = new Vector2D(1, 0);
+
+        @Override
+        public boolean routeTickInput(int tick, InputListener listener) {
+            listener.routeInput(inputVector, true, false);
+            return true;
+        }
+    }
+
+    private static void benchmarkLoad(Path levelFile) {
+        long bestNanos = Long.MAX_VALUE;
+        long usedBytes = 0;
+        int tileCount = 0;
+        for (int run = 0; run < LOAD_RUNS; run++) {
+            long usedBefore = usedHeap();
+            long startTime = System.nanoTime();
+            TileMap tileMap = new TileMap(levelFile, TILE_SIZE);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - startTime);
+            usedBytes = usedHeap() - usedBefore;
+            tileCount = tileMap.getTileCount();
+            Reference.reachabilityFence(tileMap);  // Keep the map alive until its memory has been measured
+        }
+        System.out.printf("  load:   %d tiles in %.1f ms, %.0f bytes per tile%n",
+                tileCount, bestNanos / NANOS_PER_MILLI, (double) usedBytes / Math.max(tileCount, 1));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void benchmarkPlay(Path levelFile) {
+        GameManager gameManager = new GameManager(false);
+        gameManager.startLevel(levelFile);
+        InputSource input = new RunRightInput();
+        Vector2D cameraPosition = new Vector2D();
+
+        long tickNanos = 0;
+        long queryNanos = 0;
+        int deaths = 0;
+        double furthestX = 0;
+        int tick = 0;
+        for (; tick < PLAY_TICKS && gameManager.getGameState() == GameState.IN_LEVEL; tick++) {
+            input.routeTickInput(tick, gameManager.getPlayer());
+            int previousLevelTicks = gameManager.getLevelTicks();
+
+            long startTime = System.nanoTime();
+            gameManager.update();
+            long queryStart = System.nanoTime();
+            Vector2D playerCenter = gameManager.getPlayerCenterPosition();
+            cameraPosition.set(playerCenter.x - VIEW_SIZE.x / 2, playerCenter.y - VIEW_SIZE.y / 2);
+            gameManager.getVisibleTiles(cameraPosition, VIEW_SIZE);
+            long endTime = System.nanoTime();
+
+            tickNanos += queryStart - startTime;
+            queryNanos += endTime - queryStart;
+            if (gameManager.getLevelTicks() < previousLevelTicks) deaths++;  // The level restarts on death
+            furthestX = Math.max(furthestX, playerCenter.x);
+        }
+        boolean goalReached = gameManager.getGameState() == GameState.LEVEL_FINISHED;
+        System.out.printf("  play:   %d ticks, %.0f ticks/s, %.0f ns per visible tile query, reached column %d, %d deaths, goal %s%n",
+                tick, tick / (tickNanos / NANOS_PER_SECOND), (double) queryNanos / tick,
+                (int) (furthestX / TILE_SIZE), deaths, goalReached ? "reached" : "not reached");
+    }
+
+    private static void benchmarkRender(Path levelFile) {
+        GameManager gameManager = new GameManager(false);
+        gameManager.startLevel(levelFile);
+        GamePanel gamePanel = new GamePanel();
+        gamePanel.awaitSprites();
+        gamePanel.setGameManager(gameManager);
+        gamePanel.lockQuality(QualityLevel.FULL);
+        BufferedImage frame = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        InputSource input = new RunRightInput();
+
+        long[] frameNanos = new long[RENDER_FRAMES];
+        for (int i = 0; i < WARMUP_FRAMES + RENDER_FRAMES; i++) {
+            input.routeTickInput(i, gameManager.getPlayer());
+            gameManager.update();
+            // Only the level itself is measured, a finished level starts over instead of showing the results screen
+            if (gameManager.getGameState() != GameState.IN_LEVEL) gameManager.startLevel(levelFile);
+            Graphics2D graphics = frame.createGraphics();
+            long startTime = System.nanoTime();
+            gamePanel.paintComponent(graphics);
+            if (i >= WARMUP_FRAMES) frameNanos[i - WARMUP_FRAMES] = System.nanoTime() - startTime;
+        }
+        Arrays.sort(frameNanos);
+        System.out.printf("  render: %d frames, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", RENDER_FRAMES,
+                frameNanos[RENDER_FRAMES / 2] / NANOS_PER_MILLI,
+                frameNanos[RENDER_FRAMES * 99 / 100] / NANOS_PER_MILLI,
+                frameNanos[RENDER_FRAMES - 1] / NANOS_PER_MILLI);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java control.StressLevelBenchmark <level file...>");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");  // Rendering goes to an image, no window is opened
+
+        for (String arg : args) {
+            Path levelFile = Paths.get(arg);
+            System.out.println(levelFile.getFileName() + ":");
+            benchmarkLoad(levelFile);
+            benchmarkPlay(levelFile);
+            benchmarkRender(levelFile);
+        }
+    }
+}
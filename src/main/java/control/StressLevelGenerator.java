@@ -0,0 +1,163 @@
+package control;
+
+import io.MapLoader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+// Writes large, seeded level files in the same format as the levels made with the Python editor, for scale testing
+// The level is a long strip of rolling ground starting under the players spawn point, with floor spikes, floating
+// collectibles and a goal at the far end. Ground is filled down to a flat bottom, so the tile count grows with both
+// width and depth: 100000 columns at the default depth is about two and a half million tiles.
+// The same seed and size always produce the same file.
+// Run with: java control.StressLevelGenerator <seed> <width in tiles> [depth in tiles] [output file]
+public class StressLevelGenerator {
+
+    private static final String DEFAULT_OUTPUT_DIR = "stress_levels/";
+    private static final int DEFAULT_DEPTH = 16;
+
+    // Terrain shape, in tiles. Surface y grows downwards like the rest of the game.
+    private static final int START_SURFACE = 3;  // The player spawns at the origin and falls onto this
+    private static final int FLAT_START_COLUMNS = 12;
+    private static final int MIN_SEGMENT_WIDTH = 2;  // Keeps every ground tile on a known autotile shape
+    private static final int MAX_SEGMENT_WIDTH = 12;
+    private static final int MAX_STEP = 2;  // Highest step up or down between segments, the player can jump about 3
+    private static final int SURFACE_RANGE = 10;  // How far the surface may wander up or down from the start
+    private static final double HAZARD_CHANCE = 0.04;
+    private static final double COLLECTIBLE_CHANCE = 0.06;
+    private static final int COLLECTIBLE_HEIGHT = 3;  // Tiles above the surface
+    private static final int GOAL_COLUMN_OFFSET = 3;  // Columns before the end of the level
+
+    // Ground variants picked by the editors autotiler (Python_TileMap_Editor/tilemap.py) from which of the four
+    // neighbours are also ground. Index: 1 = right, 2 = left, 4 = below, 8 = above. -1 never happens in these levels.
+    private static final int[] GROUND_VARIANTS = {
+            -1, -1, -1, -1,
+            -1, 0, 2, 1,    // below + right / left / both
+            -1, -1, -1, -1,
+            -1, 7, 3, 8,    // above and below + right / left / both
+    };
+    private static final int[] GROUND_VARIANTS_NO_BELOW = {-1, 6, 4, 5};  // above + right / left / both
+
+    private static final int HAZARD_VARIANT = 0;  // Floor spikes
+    private static final int DEFAULT_VARIANT = 0;
+
+    private final int width;
+    private final int bottom;  // First row below the ground
+    private final int[] surface;  // Surface row of each column
+    private final boolean[] hazards;
+    private final boolean[] collectibles;
+
+    public StressLevelGenerator(long seed, int width, int depth) {
+        if (width < FLAT_START_COLUMNS + GOAL_COLUMN_OFFSET + 1) {
+            throw new IllegalArgumentException("Level is too narrow: " + width);
+        }
+        if (depth < 2) {
+            throw new IllegalArgumentException("Ground must be at least 2 tiles deep: " + depth);
+        }
+        this.width = width;
+        this.bottom = START_SURFACE + SURFACE_RANGE + depth;
+        this.surface = new int[width];
+        this.hazards = new boolean[width];
+        this.collectibles = new boolean[width];
+        generate(new Random(seed));
+    }
+
+    private void generate(Random random) {
+        int height = START_SURFACE;
+        int x = 0;
+        while (x < width) {
+            boolean start = x < FLAT_START_COLUMNS;
+            int segmentWidth = start ? FLAT_START_COLUMNS
+                    : MIN_SEGMENT_WIDTH + random.nextInt(MAX_SEGMENT_WIDTH - MIN_SEGMENT_WIDTH + 1);
+            // A short last segment would leave a one tile wide column, so it is merged into this one
+            if (width - (x + segmentWidth) < MIN_SEGMENT_WIDTH) segmentWidth = width - x;
+
+            for (int i = 0; i < segmentWidth; i++) {
+                int column = x + i;
+                surface[column] = height;
+                // Spikes and collectibles stay off the edges of a segment and out of the start and goal area
+                boolean inner = !start && i > 0 && i < segmentWidth - 1 && column < width - GOAL_COLUMN_OFFSET - 2;
+                hazards[column] = inner && random.nextDouble() < HAZARD_CHANCE;
+                collectibles[column] = !start && !hazards[column] && random.nextDouble() < COLLECTIBLE_CHANCE;
+            }
+            x += segmentWidth;
+
+            int step = random.nextInt(2 * MAX_STEP + 1) - MAX_STEP;
+            height = Math.clamp(height + step, START_SURFACE - SURFACE_RANGE, START_SURFACE + SURFACE_RANGE);
+        }
+        // Hazards on the last row before the goal would make it unreachable more often than not
+        int goalColumn = width - GOAL_COLUMN_OFFSET;
+        for (int column = goalColumn - 1; column <= goalColumn; column++) {
+            hazards[column] = false;
+        }
+    }
+
+    private boolean isGround(int x, int y) {
+        return x >= 0 && x < width && y >= surface[x] && y < bottom;
+    }
+
+    private int groundVariant(int x, int y) {
+        int neighbours = (isGround(x + 1, y) ? 1 : 0) | (isGround(x - 1, y) ? 2 : 0);
+        if (isGround(x, y + 1)) {
+            neighbours |= 4;
+            if (isGround(x, y - 1)) neighbours |= 8;
+            return GROUND_VARIANTS[neighbours];
+        }
+        return GROUND_VARIANTS_NO_BELOW[neighbours];
+    }
+
+    public long getTileCount() {
+        long count = 0;
+        for (int x = 0; x < width; x++) {
+            count += bottom - surface[x];
+            if (hazards[x]) count++;
+            if (collectibles[x]) count++;
+        }
+        return count + 1;  // Goal
+    }
+
+    // Writes the level as one JSON object on a single line, which is what MapLoader expects
+    public void write(Writer out) throws IOException {
+        MapLoader.MapWriter map = new MapLoader.MapWriter(out);
+        for (int x = 0; x < width; x++) {
+            for (int y = surface[x]; y < bottom; y++) {
+                map.writeTile("ground", groundVariant(x, y), x, y);
+            }
+            if (hazards[x]) map.writeTile("hazard", HAZARD_VARIANT, x, surface[x] - 1);
+            if (collectibles[x]) map.writeTile("collectible", DEFAULT_VARIANT, x, surface[x] - COLLECTIBLE_HEIGHT);
+        }
+        int goalColumn = width - GOAL_COLUMN_OFFSET;
+        map.writeTile("goal", DEFAULT_VARIANT, goalColumn, surface[goalColumn] - 1);
+        map.finish();
+    }
+
+    public static Path writeLevel(long seed, int width, int depth, Path output) throws IOException {
+        StressLevelGenerator generator = new StressLevelGenerator(seed, width, depth);
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            generator.write(out);
+        }
+        System.out.println("Wrote " + generator.getTileCount() + " tiles to: " + output);
+        return output;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java control.StressLevelGenerator <seed> <width in tiles> [depth in tiles] [output file]");
+            System.exit(2);
+        }
+        long seed = Long.parseLong(args[0]);
+        int width = Integer.parseInt(args[1]);
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+        Path output = args.length > 3 ? Paths.get(args[3])
+                : Paths.get(DEFAULT_OUTPUT_DIR + "stress_" + seed + "_" + width + "x" + depth + ".json");
+        writeLevel(seed, width, depth, output);
+    }
+}
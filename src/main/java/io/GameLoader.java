@@ -2,19 +2,19 @@ package io;
 
 import org.json.*;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
-// Class that loads the games save data
+// Class that loads the save data of older versions of the game, which was one JSON file, so the SaveStore can import it
 public class GameLoader {
-    private static final String SAVE_PATH = "/saves/save_data.json";
+    private static final String SAVE_PATH = "assets/saves/save_data.json";  // Where older versions wrote it
 
     public static JSONObject loadSaveData() {
-        try (InputStreamReader isr = new InputStreamReader(GameLoader.class.getResourceAsStream(SAVE_PATH))) {
-            BufferedReader br = new BufferedReader(isr);
-            JSONObject saveData = new JSONObject(br.readLine());  // Save data only on 1 line
-            br.close();
-            return saveData;
-        } catch (NullPointerException e) {
-            System.out.println("Save data not found, a new save file will be created later.");
+        Path path = Paths.get(SAVE_PATH);
+        if (!Files.exists(path)) return null;
+        try (BufferedReader br = Files.newBufferedReader(path)) {
+            return new JSONObject(br.readLine());  // Save data only on 1 line
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -1,34 +1,214 @@
 package io;
 
-import org.json.JSONObject;
+import profiling.SaveWriteEvent;
+import util.GameMetrics;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
 
-// Class that Saves the games current progress
+// Class that Saves the games current progress, for one profile of the SaveStore
+// Each finished level that set a record is appended to the profiles journal as one fixed width entry, so a save costs
+// the same however many levels there are. Appends are written behind the game by a background thread, the game thread
+// only queues an entry. Entries that queue up while the writer is busy are appended together with one write.
+// Once the journal holds COMPACT_AFTER_ENTRIES entries, the writer folds it into the records file. The records go to a
+// temporary file that is renamed over the old one, and only then is the journal emptied. Replaying a journal entry
+// twice changes nothing, so a crash at any point still loads the same records.
+// Whether writes are forced to disk is set with -Dplatformer.save.fsync=always|never.
 public class GameSaver {
-    private static final String SAVE_PATH = "assets/saves/save_data.json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FSYNC_PROPERTY = "platformer.save.fsync";
+    private static final int COMPACT_AFTER_ENTRIES = 64;
 
-    public static void saveGame(JSONObject levelSaveData) {
+    public enum FsyncPolicy {
+        ALWAYS,  // Force every write to disk, survives power loss. Saves are rare so this is the default
+        NEVER;  // Leave it to the operating system, survives the game crashing but not the machine
+
+        private static FsyncPolicy fromProperty() {
+            String policy = System.getProperty(FSYNC_PROPERTY);
+            return policy != null && policy.equalsIgnoreCase("never") ? NEVER : ALWAYS;
+        }
+    }
+
+    // One finished level, as it was when saveLevel() was called
+    private static final class Entry {
+        private final int level;
+        private final int collectibles;
+        private final double levelTime;
+
+        private Entry(int level, int collectibles, double levelTime) {
+            this.level = level;
+            this.collectibles = collectibles;
+            this.levelTime = levelTime;
+        }
+    }
+
+    private final Path recordsPath;
+    private final Path journalPath;
+    private final FsyncPolicy fsyncPolicy = FsyncPolicy.fromProperty();
+    private final ConcurrentLinkedQueue<Entry> pendingEntries = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private volatile boolean closed = false;
+    private volatile GameMetrics metrics;  // Counts the writes that reached the journal, null if nobody is counting
+
+    // Writer state, guarded by writeLock
+    private final Object writeLock = new Object();
+    private final SaveRecords records;  // The writers own copy, written out on compaction
+    private int journalEntries;
+    private FileChannel journal;
+
+    // Takes over the records and the number of valid journal entries the SaveStore loaded
+    // Note: the first append cuts the journal down to journalEntries, so it must be the count read from the journal
+    // that is on disk. A journal that could not be read is moved away by the SaveStore first.
+    public GameSaver(Path recordsPath, Path journalPath, SaveRecords records, int journalEntries) {
+        this.recordsPath = recordsPath;
+        this.journalPath = journalPath;
+        this.records = records.copy();
+        this.journalEntries = journalEntries;
+        this.writer = new Thread(this::writeSaves, "Save writer");
+        writer.setDaemon(true);
+        writer.start();
+        // The writer is a daemon so it never keeps the game open, entries still queued on exit are written here
+        this.shutdownHook = new Thread(this::flush, "Save flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Queues a finished level to be appended to the journal, returns right away
+    public void saveLevel(int level, int collectibles, double levelTime) {
+        pendingEntries.add(new Entry(level, collectibles, levelTime));
+        LockSupport.unpark(writer);
+    }
+
+    private void writeSaves() {
+        while (!closed) {
+            if (pendingEntries.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+            writePending();
+        }
+    }
+
+    // Writes everything that is still queued before returning, also waits for a write in progress
+    public void flush() {
+        writePending();
+    }
+
+    // Writes what is still queued and stops the writer, the saver leaves no thread or shutdown hook behind
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
         try {
-            Path path = Paths.get(SAVE_PATH);
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // Closed while the game is shutting down, the hook is already running
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                if (journal != null) journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journal = null;
+        }
+    }
 
-            // Create the file if it doesn't exist
-            if (!Files.exists(path)) {
-                Files.createFile(path);
+    private void writePending() {
+        synchronized (writeLock) {
+            ArrayList<Entry> batch = new ArrayList<>();
+            Entry entry;
+            while ((entry = pendingEntries.poll()) != null) batch.add(entry);
+            if (batch.isEmpty()) return;
+
+            SaveWriteEvent saveEvent = new SaveWriteEvent();
+            saveEvent.begin();
+            ByteBuffer buffer = ByteBuffer.allocate(batch.size() * SaveRecords.JOURNAL_ENTRY_BYTES);
+            for (Entry e : batch) {
+                SaveRecords.encodeJournalEntry(buffer, e.level, e.collectibles, e.levelTime);
+                records.merge(e.level, e.collectibles, e.levelTime);
+            }
+            buffer.flip();
+            try {
+                appendToJournal(buffer);
+                journalEntries += batch.size();
+                GameMetrics currentMetrics = metrics;
+                if (currentMetrics != null) currentMetrics.recordSaveWrite();
+                saveEvent.bytes = batch.size() * SaveRecords.JOURNAL_ENTRY_BYTES;
+                saveEvent.coalesced = batch.size() - 1;
+                if (journalEntries >= COMPACT_AFTER_ENTRIES) compact();
+                System.out.println("Save data written to: " + journalPath);
+            } catch (IOException e) {
+                System.err.println("An error occurred during file operation: " + e.getMessage());
+                e.printStackTrace();
             }
+            saveEvent.commit();
+        }
+    }
 
-            // Write content to the file (overwriting existing content)
-            Files.write(path, levelSaveData.toString().getBytes());
+    private void appendToJournal(ByteBuffer buffer) throws IOException {
+        if (journal == null) {
+            Files.createDirectories(journalPath.toAbsolutePath().getParent());
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Cuts off an entry a crash left half written, anything appended after it would never be replayed
+            long validBytes = (long) journalEntries * SaveRecords.JOURNAL_ENTRY_BYTES;
+            journal.truncate(validBytes);
+            journal.position(validBytes);
+        }
+        while (buffer.hasRemaining()) journal.write(buffer);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) journal.force(false);
+    }
 
-            System.out.println("File created/updated and written to successfully at: " + SAVE_PATH);
+    // Folds the journal into the records file
+    private void compact() throws IOException {
+        writeAtomically(recordsPath, records.encodeRecords());
+        journal.truncate(0);
+        journal.position(0);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) journal.force(false);
+        journalEntries = 0;
+    }
 
-        } catch (IOException e) {
-            System.err.println("An error occurred during file operation: " + e.getMessage());
-            e.printStackTrace();
+    private void writeAtomically(Path path, ByteBuffer buffer) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) channel.force(true);
         }
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) forceDirectory(directory);
     }
 
+    // Makes the rename itself durable. Not every platform can open a folder this way, there the rename is left to the
+    // operating system.
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
 }
@@ -0,0 +1,221 @@
+package io;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Class that writes and streams ghost tracks, the path the player took through their best runs of a level
+// The last KEPT_GHOSTS personal bests of each level are kept in the ghosts folder of the profile that set them (see
+// SaveStore.profileDirectory()), level<n>.ghost being the current one.
+// File format, all numbers big endian:
+// - int magic "PLGH", byte version
+// - int level, int frame count
+// - One frame per tick of the run: byte state (PlayerState ordinal, FACING_LEFT set when the player faces left), then
+//   x and y in quarter pixels as zigzag varint differences from the previous frame (from 0, 0 for the first frame)
+// The player moves a few pixels per tick at most, so a frame is usually 3 bytes.
+public class GhostFile {
+    private static final String GHOST_DIR = "ghosts";
+    private static final String FILE_TYPE = ".ghost";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x504C4748;  // "PLGH"
+    private static final byte VERSION = 1;
+    private static final double POSITION_SCALE = 4;  // Quarter pixels
+    private static final int MAX_VARINT_BYTES = 5;
+
+    public static final int KEPT_GHOSTS = 3;
+    public static final int FACING_LEFT = 0x80;
+    public static final int STATE_MASK = 0x7F;
+
+    private static Path ghostPath(Path profileDirectory, int level, int rank) {
+        String name = rank == 0 ? "level" + level : "level" + level + "_" + (rank + 1);
+        return profileDirectory.resolve(GHOST_DIR).resolve(name + FILE_TYPE);
+    }
+
+    // Saves a new personal best of the level, moving the older ones down a place and dropping the oldest. Returns where
+    // it was written, or null if writing failed.
+    // The ghost is written to a temporary file first, the older ones only move once it is complete, so a failed write
+    // leaves the saved ghosts as they were.
+    public static Path saveBest(Path profileDirectory, int level, TrackBuffer track) {
+        Path path = ghostPath(profileDirectory, level, 0);
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(path.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+                write(out, level, track);
+            }
+            for (int rank = KEPT_GHOSTS - 1; rank > 0; rank--) {
+                Path newer = ghostPath(profileDirectory, level, rank - 1);
+                if (Files.exists(newer)) {
+                    Files.move(newer, ghostPath(profileDirectory, level, rank), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("Ghost saved to: " + path);
+            return path;
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the ghost: " + e.getMessage());
+            e.printStackTrace();
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException deleteException) {
+                deleteException.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    public static void write(OutputStream out, int level, TrackBuffer track) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(level);
+        data.writeInt(track.frameCount);
+        data.write(track.data, 0, track.length);
+        data.flush();
+    }
+
+    // The saved ghosts of a level, newest personal best first
+    public static List<Path> findGhosts(Path profileDirectory, int level) {
+        List<Path> ghosts = new ArrayList<>(KEPT_GHOSTS);
+        for (int rank = 0; rank < KEPT_GHOSTS; rank++) {
+            Path path = ghostPath(profileDirectory, level, rank);
+            if (Files.exists(path)) ghosts.add(path);
+        }
+        return ghosts;
+    }
+
+    public static Reader open(Path path) throws IOException {
+        return new Reader(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    // In memory frames of a run being recorded, encoded the same way they are written to the file
+    public static class TrackBuffer {
+        private static final int INITIAL_CAPACITY = 16384;  // A bit over a minute of play
+        private static final int MAX_FRAME_BYTES = 11;  // 1 byte of state and two varints of at most 5 bytes
+
+        private byte[] data = new byte[INITIAL_CAPACITY];
+        private int length = 0;
+        private int frameCount = 0;
+        private int previousX = 0;
+        private int previousY = 0;
+
+        public void appendFrame(int state, double x, double y) {
+            if (length + MAX_FRAME_BYTES > data.length) {
+                byte[] grown = new byte[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            int quantizedX = (int) Math.round(x * POSITION_SCALE);
+            int quantizedY = (int) Math.round(y * POSITION_SCALE);
+            data[length++] = (byte) state;
+            appendVarInt(zigzag(quantizedX - previousX));
+            appendVarInt(zigzag(quantizedY - previousY));
+            previousX = quantizedX;
+            previousY = quantizedY;
+            frameCount++;
+        }
+
+        private void appendVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        private static int zigzag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        public void clear() {
+            length = 0;
+            frameCount = 0;
+            previousX = 0;
+            previousY = 0;
+        }
+    }
+
+    // Streams a ghost one frame at a time, only the current frame is held in memory
+    public static class Reader implements Closeable {
+        private final DataInputStream data;
+        private final int level;
+        private final int frameCount;
+        private int framesRead = 0;
+        private int state = 0;
+        private int x = 0;
+        private int y = 0;
+
+        private Reader(InputStream in) throws IOException {
+            this.data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) throw new IOException("Not a ghost file");
+            byte version = data.readByte();
+            if (version != VERSION) throw new IOException("Unsupported ghost version: " + version);
+            this.level = data.readInt();
+            this.frameCount = data.readInt();
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        // Moves on to the next frame, returns false once every frame has been read
+        public boolean nextFrame() throws IOException {
+            if (framesRead >= frameCount) return false;
+            state = data.readUnsignedByte();
+            x += unzigzag(readVarInt());
+            y += unzigzag(readVarInt());
+            framesRead++;
+            return true;
+        }
+
+        public int getState() {
+            return state;
+        }
+
+        public double getX() {
+            return x / POSITION_SCALE;
+        }
+
+        public double getY() {
+            return y / POSITION_SCALE;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift == 7 * MAX_VARINT_BYTES) throw new IOException("Ghost position is too long");
+                b = data.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static int unzigzag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
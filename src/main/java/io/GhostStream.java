@@ -0,0 +1,130 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+// Plays a ghost file back for the renderer without loading it whole
+// A decoder thread reads the file and decodes frames a little ahead of the one being drawn into a small ring buffer,
+// so drawing a ghost only copies three numbers out of the buffer and never waits on the file.
+// NOTE: frameAt() and the getters are only used by the rendering thread
+public class GhostStream implements Closeable {
+    private static final int READ_AHEAD_FRAMES = 64;  // About a second of play, must be a power of two
+    private static final int SLOT_MASK = READ_AHEAD_FRAMES - 1;
+
+    private final Path path;
+    private final Thread decoder;
+
+    // Ring buffer, frame i is kept in slot i & SLOT_MASK
+    private final double[] slotX = new double[READ_AHEAD_FRAMES];
+    private final double[] slotY = new double[READ_AHEAD_FRAMES];
+    private final int[] slotState = new int[READ_AHEAD_FRAMES];
+
+    // Written by the decoder
+    private volatile int decodedFrames = 0;
+    private volatile int decodedStart = 0;  // Which restart the decoded frames belong to
+
+    // Written by the renderer
+    private volatile int wantedFrame = 0;  // The decoder stays at most READ_AHEAD_FRAMES past this frame
+    private volatile int requestedStart = 0;  // Bumped to make the decoder start over from the first frame
+    private volatile boolean closed = false;
+
+    // Renderer side
+    private int lastFrame = 0;
+    private double x = 0;
+    private double y = 0;
+    private int state = 0;
+
+    public GhostStream(Path path) {
+        this.path = path;
+        this.decoder = new Thread(this::decode, "Ghost decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+    }
+
+    private void decode() {
+        GhostFile.Reader reader = null;
+        int start = -1;
+        try {
+            while (!closed) {
+                if (start != requestedStart) {
+                    if (reader != null) reader.close();
+                    start = requestedStart;
+                    reader = GhostFile.open(path);
+                    decodedFrames = 0;
+                    decodedStart = start;
+                }
+                int frame = decodedFrames;
+                if (frame - wantedFrame < READ_AHEAD_FRAMES && reader.nextFrame()) {
+                    int slot = frame & SLOT_MASK;
+                    slotX[slot] = reader.getX();
+                    slotY[slot] = reader.getY();
+                    slotState[slot] = reader.getState();
+                    decodedFrames = frame + 1;  // Publishes the slot
+                } else {
+                    LockSupport.park(this);  // Buffer is full or the ghost is over, the renderer wakes it up
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while reading the ghost " + path + ": " + e.getMessage());
+        } finally {
+            try {
+                if (reader != null) reader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Looks up the given frame of the ghost, returns false if it is not decoded yet or the ghost has already finished
+    // Going back to an earlier frame, such as when the player respawns, starts the ghost over.
+    public boolean frameAt(int frame) {
+        if (frame < lastFrame) {
+            wantedFrame = frame;
+            requestedStart++;
+            LockSupport.unpark(decoder);
+        }
+        lastFrame = frame;
+        wantedFrame = frame;
+        int decoded = decodedFrames;
+        if (decoded - frame < READ_AHEAD_FRAMES / 2) LockSupport.unpark(decoder);
+
+        if (decodedStart != requestedStart) return false;
+        decoded = decodedFrames;
+        if (frame >= decoded) return false;
+        int slot = frame & SLOT_MASK;
+        x = slotX[slot];
+        y = slotY[slot];
+        state = slotState[slot];
+        return true;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    // PlayerState ordinal of the frame
+    public int getState() {
+        return state & GhostFile.STATE_MASK;
+    }
+
+    public boolean isFacingLeft() {
+        return (state & GhostFile.FACING_LEFT) != 0;
+    }
+
+    // Returns once the decoder has stopped and closed the file, so the file can be moved or replaced right after
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(decoder);
+        try {
+            decoder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
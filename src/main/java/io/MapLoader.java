@@ -2,6 +2,9 @@ package io;
 
 import org.json.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 // Class that loads a map, called by the TileMap class for further processing
 
@@ -23,5 +26,199 @@ public class MapLoader {
         }
         return null;
     }
-}
 
+    // Where a level is kept in a directory of level files, such as the one the tile map editor saves to
+    public static Path levelFile(Path levelDirectory, String mapFile) {
+        return levelDirectory.resolve(mapFile + FILE_TYPE);
+    }
+
+    // Loads a map file from disk instead of from the games bundled levels, used for generated and dev mode levels
+    public static JSONObject loadMapJSON(Path mapFile) {
+        try (BufferedReader br = Files.newBufferedReader(mapFile, StandardCharsets.UTF_8)) {
+            return new JSONObject(br.readLine());  // Entire map is on one line only
+        } catch (IOException e) {
+            System.err.println("Could not load map " + mapFile + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Receives the tiles of a level file one at a time, see scanMap()
+    public interface TileVisitor {
+        void visitTile(String type, int variant, int x, int y);
+    }
+
+    // Reads the tiles of a level file without building a JSONObject of it first, which is many times faster on large
+    // levels. Fields other than type, variant and pos are skipped. Throws an IOException if the file is not a level.
+    public static void scanMap(Path mapFile, TileVisitor visitor) throws IOException {
+        new MapScanner(Files.readAllBytes(mapFile)).scanTiles(visitor);
+    }
+
+    // Writes a level file one tile at a time in the format of the tile map editor, which is what scanMap() and
+    // loadMapJSON() read: one JSON object on a single line. Call finish() once all tiles are written.
+    public static class MapWriter {
+        private final Writer out;
+        private boolean first = true;
+
+        public MapWriter(Writer out) throws IOException {
+            this.out = out;
+            out.write('{');
+        }
+
+        public void writeTile(String type, int variant, int x, int y) throws IOException {
+            if (!first) out.write(", ");
+            first = false;
+            out.write("\"" + x + ";" + y + "\": {\"type\": \"" + type + "\", \"variant\": " + variant
+                    + ", \"pos\": [" + x + ", " + y + "]}");
+        }
+
+        public void finish() throws IOException {
+            out.write("}\n");
+        }
+    }
+
+    // Just enough of a JSON reader for the level format: {"x;y": {"type": "ground", "variant": 0, "pos": [x, y]}, ...}
+    private static class MapScanner {
+        private final byte[] data;
+        private int position = 0;
+
+        private MapScanner(byte[] data) {
+            this.data = data;
+        }
+
+        private void scanTiles(TileVisitor visitor) throws IOException {
+            expect('{');
+            if (tryConsume('}')) return;
+            do {
+                skipString();  // The "x;y" key, the same position is in the tiles pos field
+                expect(':');
+                scanTile(visitor);
+            } while (tryConsume(','));
+            expect('}');
+        }
+
+        private void scanTile(TileVisitor visitor) throws IOException {
+            String type = null;
+            int variant = 0;
+            int x = 0;
+            int y = 0;
+            boolean hasPosition = false;
+            expect('{');
+            if (!tryConsume('}')) {
+                do {
+                    String field = readString();
+                    expect(':');
+                    switch (field) {
+                        case "type" -> type = readString();
+                        case "variant" -> variant = readInt();
+                        case "pos" -> {
+                            expect('[');
+                            x = readInt();
+                            expect(',');
+                            y = readInt();
+                            expect(']');
+                            hasPosition = true;
+                        }
+                        default -> skipValue();
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            if (type == null || !hasPosition) throw error("tile without a type or position");
+            visitor.visitTile(type, variant, x, y);
+        }
+
+        private void skipWhitespace() {
+            while (position < data.length && data[position] <= ' ') position++;
+        }
+
+        private boolean tryConsume(char c) {
+            skipWhitespace();
+            if (position < data.length && data[position] == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (!tryConsume(c)) throw error("expected '" + c + "'");
+        }
+
+        // Level strings are plain ASCII names, escapes are skipped over but not decoded
+        private String readString() throws IOException {
+            int start = stringStart();
+            skipStringBody();
+            return new String(data, start, position - 1 - start, StandardCharsets.UTF_8);
+        }
+
+        private void skipString() throws IOException {
+            stringStart();
+            skipStringBody();
+        }
+
+        private int stringStart() throws IOException {
+            expect('"');
+            return position;
+        }
+
+        private void skipStringBody() throws IOException {
+            while (position < data.length && data[position] != '"') {
+                if (data[position] == '\\') position++;
+                position++;
+            }
+            if (position >= data.length) throw error("unterminated string");
+            position++;
+        }
+
+        // Reads a number, a fraction is dropped since tile positions and variants are whole numbers
+        private int readInt() throws IOException {
+            skipWhitespace();
+            boolean negative = position < data.length && data[position] == '-';
+            if (negative) position++;
+            int start = position;
+            long value = 0;
+            while (position < data.length && data[position] >= '0' && data[position] <= '9') {
+                value = value * 10 + (data[position++] - '0');
+                if (value > Integer.MAX_VALUE) throw error("number out of range");
+            }
+            if (position == start) throw error("expected a number");
+            if (position < data.length && data[position] == '.') {
+                position++;
+                while (position < data.length && data[position] >= '0' && data[position] <= '9') position++;
+            }
+            return (int) (negative ? -value : value);
+        }
+
+        private void skipValue() throws IOException {
+            skipWhitespace();
+            if (position >= data.length) throw error("expected a value");
+            switch (data[position]) {
+                case '"' -> skipString();
+                case '{', '[' -> {
+                    // Skips to the matching bracket, strings are skipped whole so brackets in them do not count
+                    int depth = 0;
+                    do {
+                        byte c = data[position];
+                        if (c == '"') {
+                            skipString();
+                            continue;
+                        }
+                        if (c == '{' || c == '[') depth++;
+                        if (c == '}' || c == ']') depth--;
+                        position++;
+                    } while (depth > 0 && position < data.length);
+                    if (depth > 0) throw error("unterminated value");
+                }
+                default -> {
+                    // Numbers, true, false and null
+                    while (position < data.length && data[position] != ',' && data[position] != '}'
+                            && data[position] != ']' && data[position] > ' ') position++;
+                }
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at byte " + position);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import util.GameMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Small HTTP server that serves the GameMetrics at /metrics in the Prometheus text format, for scraping soak tests
+// Only listens on the loopback address, so the metrics are never reachable from other machines.
+// Started by the GameController when the platformer.metrics.port system property is set.
+public class MetricsServer {
+    private static final String METRICS_PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX = "platformer_";
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final GameMetrics metrics;
+    private final HttpServer server;
+
+    public MetricsServer(GameMetrics metrics, int port) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(METRICS_PATH, this::handleScrape);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Serving metrics at: http://localhost:" + getPort() + METRICS_PATH);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    // The bound port, useful when the server was created with port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = formatMetrics().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public String formatMetrics() {
+        StringBuilder out = new StringBuilder();
+        appendCounter(out, "ticks_total", "Game updates run.", metrics.getTicks());
+        appendCounter(out, "frames_total", "Frames rendered.", metrics.getFrames());
+        appendCounter(out, "dropped_frames_total", "Updates that ran too late for their frame to be drawn.", metrics.getDroppedFrames());
+        appendCounter(out, "level_loads_total", "Levels loaded from file.", metrics.getLevelLoads());
+        appendCounter(out, "save_writes_total", "Times save data was written to the journal on disk.", metrics.getSaveWrites());
+        appendHistogram(out, "tick_duration_seconds", "Time spent in one game update.", metrics.getTickLatency());
+        appendHistogram(out, "render_duration_seconds", "Time spent drawing one frame.", metrics.getRenderLatency());
+        // Left out until the game has started up, so a scrape during startup is not mistaken for a 0 s startup
+        if (metrics.getStartupFirstFrameNanos() > 0) {
+            appendGauge(out, "startup_first_frame_seconds", "Time from JVM start until the first frame was drawn.",
+                    metrics.getStartupFirstFrameNanos() / NANOS_PER_SECOND);
+            appendGauge(out, "startup_sprites_loaded_seconds", "Time from JVM start until every sprite was decoded.",
+                    metrics.getStartupSpritesLoadedNanos() / NANOS_PER_SECOND);
+        }
+
+        // Left out until the first update has set a state, rather than exported as a state with an empty name
+        String gameState = metrics.getGameState();
+        if (!gameState.isEmpty()) {
+            String name = PREFIX + "game_state";
+            appendHeader(out, name, "gauge", "Current state of the game, the series with value 1.");
+            out.append(name).append("{state=\"").append(gameState).append("\"} 1\n");
+        }
+        return out.toString();
+    }
+
+    private static void appendHeader(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendCounter(StringBuilder out, String name, String help, long value) {
+        appendHeader(out, PREFIX + name, "counter", help);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void appendGauge(StringBuilder out, String name, String help, double value) {
+        appendHeader(out, PREFIX + name, "gauge", help);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String help, GameMetrics.Histogram histogram) {
+        String fullName = PREFIX + name;
+        appendHeader(out, fullName, "histogram", help);
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            out.append(fullName).append("_bucket{le=\"").append(histogram.getUpperBound(i)).append("\"} ")
+                    .append(histogram.getCumulativeCount(i)).append('\n');
+        }
+        // Read the count once so +Inf and _count agree even while the game keeps recording
+        long count = histogram.getCount();
+        out.append(fullName).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        out.append(fullName).append("_sum ").append(histogram.getSumSeconds()).append('\n');
+        out.append(fullName).append("_count ").append(count).append('\n');
+    }
+}
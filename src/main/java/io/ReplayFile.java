@@ -0,0 +1,181 @@
+package io;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Class that writes and streams recorded level inputs (replays)
+// File format, all numbers big endian:
+// - int magic "PLRP", byte version
+// - int level, int tick count (at most MAX_TICKS)
+// - What the run claims to have achieved: int level ticks since the last respawn, int collectibles, double level time
+//   in milliseconds. Saved replays are always of finished levels, so reaching the goal on the last tick is implied.
+// - Runs until tick count ticks are covered: byte input bits (see util.InputBits), varint amount of ticks it was held
+// Input rarely changes between frames, so a minute of play is usually a few hundred bytes.
+public class ReplayFile {
+    private static final String REPLAY_DIR = "replays";
+    private static final String FILE_TYPE = ".rpl";
+    private static final int MAGIC = 0x504C5250;  // "PLRP"
+    private static final byte VERSION = 2;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    // An hour of play at 60 ticks per second. Longer replays are neither saved nor read, so a few bytes of header can
+    // not make a validator simulate billions of ticks.
+    public static final int MAX_TICKS = 60 * 60 * 60;
+
+    // Saves the replay into the replays folder of the profile (see SaveStore.profileDirectory()) and returns where it
+    // was written, or null if writing failed
+    public static Path saveReplay(Path profileDirectory, int level, int tickCount, Claims claims, RunBuffer runs) {
+        if (tickCount > MAX_TICKS) {
+            System.out.println("Replay not saved, it is longer than " + MAX_TICKS + " ticks");
+            return null;
+        }
+        try {
+            Path directory = profileDirectory.resolve(REPLAY_DIR);
+            Files.createDirectories(directory);
+            Path path = directory.resolve("level" + level + "_" + System.currentTimeMillis() + FILE_TYPE);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                write(out, level, tickCount, claims, runs);
+            }
+            System.out.println("Replay saved to: " + path);
+            return path;
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the replay: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public static void write(OutputStream out, int level, int tickCount, Claims claims, RunBuffer runs) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(level);
+        data.writeInt(tickCount);
+        data.writeInt(claims.levelTicks);
+        data.writeInt(claims.collectibles);
+        data.writeDouble(claims.levelTime);
+        data.write(runs.data, 0, runs.length);
+        data.flush();
+    }
+
+    public static Reader open(Path path) throws IOException {
+        return new Reader(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    public static Reader open(InputStream in) throws IOException {
+        return new Reader(in);
+    }
+
+    // Results the player got at the end of the recorded run, checked when the replay is validated
+    public static class Claims {
+        public final int levelTicks;
+        public final int collectibles;
+        public final double levelTime;  // In milliseconds
+
+        public Claims(int levelTicks, int collectibles, double levelTime) {
+            this.levelTicks = levelTicks;
+            this.collectibles = collectibles;
+            this.levelTime = levelTime;
+        }
+    }
+
+    // In memory run data of a replay being recorded, encoded the same way it is written to the file
+    public static class RunBuffer {
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final int MAX_RUN_BYTES = 6;  // 1 byte of bits and at most 5 bytes of varint
+
+        private byte[] data = new byte[INITIAL_CAPACITY];
+        private int length = 0;
+
+        public void appendRun(int bits, int runLength) {
+            if (length + MAX_RUN_BYTES > data.length) {
+                byte[] grown = new byte[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            data[length++] = (byte) bits;
+            while ((runLength & ~0x7F) != 0) {
+                data[length++] = (byte) ((runLength & 0x7F) | 0x80);
+                runLength >>>= 7;
+            }
+            data[length++] = (byte) runLength;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public void clear() {
+            length = 0;
+        }
+    }
+
+    // Streams a replay one tick at a time, only the current run is held in memory
+    public static class Reader implements Closeable {
+        private final DataInputStream data;
+        private final int level;
+        private final int tickCount;
+        private final Claims claims;
+        private int ticksRead = 0;
+        private int runBits = 0;
+        private int runTicksLeft = 0;
+
+        private Reader(InputStream in) throws IOException {
+            this.data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) throw new IOException("Not a replay file");
+            byte version = data.readByte();
+            if (version != VERSION) throw new IOException("Unsupported replay version: " + version);
+            this.level = data.readInt();
+            this.tickCount = data.readInt();
+            if (tickCount < 0 || tickCount > MAX_TICKS) {
+                throw new IOException("Replay tick count out of range: " + tickCount);
+            }
+            this.claims = new Claims(data.readInt(), data.readInt(), data.readDouble());
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public int getTickCount() {
+            return tickCount;
+        }
+
+        public Claims getClaims() {
+            return claims;
+        }
+
+        // Returns the input bits of the next tick, or -1 once every recorded tick has been read
+        public int nextTickBits() throws IOException {
+            if (ticksRead >= tickCount) return -1;
+            while (runTicksLeft == 0) {
+                runBits = data.readUnsignedByte();
+                runTicksLeft = readVarInt();
+                if (runTicksLeft > tickCount - ticksRead) throw new IOException("Replay run goes past its tick count");
+            }
+            runTicksLeft--;
+            ticksRead++;
+            return runBits;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift == 7 * MAX_VARINT_BYTES) throw new IOException("Replay run length is too long");
+                b = data.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (value < 0) throw new IOException("Replay run length out of range");
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
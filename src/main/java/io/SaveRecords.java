@@ -0,0 +1,133 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// The best results of every level of one profile, kept in primitive arrays indexed by level
+// A result only ever replaces a worse one, so applying the same run twice changes nothing. That lets the SaveStore
+// replay its journal over a compacted records file without caring which entries the file already contains.
+//
+// Records file, all numbers big endian: int magic "PLSV", byte version, int level count, then one fixed width record
+// per level starting at level 0: int collectibles, double best time in milliseconds (Double.MAX_VALUE when unbeaten).
+// Journal entry, fixed width: int level, int collectibles, double level time, int CRC32 of the first 16 bytes.
+public class SaveRecords {
+    private static final int RECORDS_MAGIC = 0x504C5356;  // "PLSV"
+    private static final byte RECORDS_VERSION = 1;
+    private static final int RECORDS_HEADER_BYTES = 9;
+    private static final int RECORD_BYTES = 12;
+
+    public static final int JOURNAL_ENTRY_BYTES = 20;
+    private static final int JOURNAL_CHECKED_BYTES = 16;
+
+    public static final double NO_TIME = Double.MAX_VALUE;
+
+    private final int[] collectibles;
+    private final double[] bestTimes;
+
+    public SaveRecords(int levelCount) {
+        collectibles = new int[levelCount];
+        bestTimes = new double[levelCount];
+        Arrays.fill(bestTimes, NO_TIME);
+    }
+
+    private SaveRecords(SaveRecords other) {
+        collectibles = other.collectibles.clone();
+        bestTimes = other.bestTimes.clone();
+    }
+
+    public SaveRecords copy() {
+        return new SaveRecords(this);
+    }
+
+    public int getLevelCount() {
+        return collectibles.length;
+    }
+
+    public int getCollectibles(int level) {
+        return level < collectibles.length ? collectibles[level] : 0;
+    }
+
+    public double getBestTime(int level) {
+        return level < bestTimes.length ? bestTimes[level] : NO_TIME;
+    }
+
+    // Keeps the better of the saved and given results, returns true if anything changed
+    // Levels outside [0, getLevelCount()) are ignored, so a bad journal entry cannot make the arrays grow
+    public boolean merge(int level, int levelCollectibles, double levelTime) {
+        if (level < 0 || level >= collectibles.length) return false;
+        boolean changed = false;
+        if (levelCollectibles > collectibles[level]) {
+            collectibles[level] = levelCollectibles;
+            changed = true;
+        }
+        if (levelTime < bestTimes[level]) {
+            bestTimes[level] = levelTime;
+            changed = true;
+        }
+        return changed;
+    }
+
+    public ByteBuffer encodeRecords() {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORDS_HEADER_BYTES + collectibles.length * RECORD_BYTES);
+        buffer.putInt(RECORDS_MAGIC);
+        buffer.put(RECORDS_VERSION);
+        buffer.putInt(collectibles.length);
+        for (int level = 0; level < collectibles.length; level++) {
+            buffer.putInt(collectibles[level]);
+            buffer.putDouble(bestTimes[level]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Holds at least levelCount levels, more if the file has more, so records of levels the game no longer has are kept
+    public static SaveRecords decodeRecords(ByteBuffer buffer, int levelCount) throws IOException {
+        if (buffer.remaining() < RECORDS_HEADER_BYTES || buffer.getInt() != RECORDS_MAGIC) {
+            throw new IOException("Not a save records file");
+        }
+        byte version = buffer.get();
+        if (version != RECORDS_VERSION) throw new IOException("Unsupported save records version: " + version);
+        int fileLevelCount = buffer.getInt();
+        if (fileLevelCount < 0 || buffer.remaining() < (long) fileLevelCount * RECORD_BYTES) {
+            throw new IOException("Save records file is cut short");
+        }
+        SaveRecords records = new SaveRecords(Math.max(levelCount, fileLevelCount));
+        for (int level = 0; level < fileLevelCount; level++) {
+            records.collectibles[level] = buffer.getInt();
+            records.bestTimes[level] = buffer.getDouble();
+        }
+        return records;
+    }
+
+    public static void encodeJournalEntry(ByteBuffer buffer, int level, int levelCollectibles, double levelTime) {
+        int start = buffer.position();
+        buffer.putInt(level);
+        buffer.putInt(levelCollectibles);
+        buffer.putDouble(levelTime);
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    // Merges every whole, intact entry from the buffer and returns how many there were. Stops at the first entry that
+    // is cut short or fails its checksum, which is where a crash interrupted the last append.
+    public int replayJournal(ByteBuffer buffer) {
+        int entries = 0;
+        while (buffer.remaining() >= JOURNAL_ENTRY_BYTES) {
+            int start = buffer.position();
+            int level = buffer.getInt();
+            int levelCollectibles = buffer.getInt();
+            double levelTime = buffer.getDouble();
+            if (buffer.getInt() != checksum(buffer, start)) break;
+            merge(level, levelCollectibles, levelTime);
+            entries++;
+        }
+        return entries;
+    }
+
+    private static int checksum(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, JOURNAL_CHECKED_BYTES);
+        return (int) crc.getValue();
+    }
+}
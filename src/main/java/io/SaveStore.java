@@ -0,0 +1,187 @@
+package io;
+
+import org.json.JSONObject;
+import util.GameMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// The save data of one player profile, the most collectibles and best time of every level
+// On disk it is a records file compacted from earlier runs plus an append-only journal of runs since then, see
+// SaveRecords for both formats and GameSaver for how they are written. Looking up a level is an array access and
+// saving a run appends one fixed width entry, however many levels there are.
+// Every profile has its own folder under assets/saves/profiles/, which also holds its ghosts and replays. The game
+// plays the profile named by -Dplatformer.profile.
+public class SaveStore {
+    private static final String PROFILES_DIR = "assets/saves/profiles/";
+    private static final String RECORDS_FILE = "records.bin";
+    private static final String JOURNAL_FILE = "journal.bin";
+    private static final String UNREADABLE_SUFFIX = ".unreadable";
+    private static final String PROFILE_PROPERTY = "platformer.profile";
+    private static final String PROFILE_NAME_PATTERN = "[A-Za-z0-9_-]+";
+    public static final String DEFAULT_PROFILE = "default";
+
+    // Stores opened and not closed yet, by profile, so a profile only ever has one GameSaver writing its files
+    private static final HashMap<String, SaveStore> OPEN_STORES = new HashMap<>();
+
+    private final String profile;
+    private final SaveRecords records;
+    private final GameSaver saver;  // Null when the store only lives in memory
+
+    private SaveStore(String profile, SaveRecords records, GameSaver saver) {
+        this.profile = profile;
+        this.records = records;
+        this.saver = saver;
+    }
+
+    // A store that is never loaded from or written to disk, used by headless runs so they never touch a players save
+    public static SaveStore inMemory(int levelCount) {
+        return new SaveStore(null, new SaveRecords(levelCount), null);
+    }
+
+    // The profile named by -Dplatformer.profile, throws IllegalArgumentException if it is not a valid profile name
+    public static String selectedProfile() {
+        String profile = System.getProperty(PROFILE_PROPERTY, DEFAULT_PROFILE);
+        checkProfileName(profile);
+        return profile;
+    }
+
+    // The folder of a profile, its save data, ghosts and replays are all kept in it
+    public static Path profileDirectory(String profile) {
+        checkProfileName(profile);
+        return Paths.get(PROFILES_DIR, profile);
+    }
+
+    private static void checkProfileName(String profile) {
+        if (!profile.matches(PROFILE_NAME_PATTERN)) {
+            throw new IllegalArgumentException("Profile names may only use letters, digits, - and _: " + profile);
+        }
+    }
+
+    // Opening a profile that is already open returns the store that has it open
+    public static synchronized SaveStore open(String profile, int levelCount) {
+        Path directory = profileDirectory(profile);
+        SaveStore openStore = OPEN_STORES.get(profile);
+        if (openStore != null) return openStore;
+        Path recordsPath = directory.resolve(RECORDS_FILE);
+        Path journalPath = directory.resolve(JOURNAL_FILE);
+        boolean newProfile = !Files.exists(recordsPath) && !Files.exists(journalPath);
+
+        SaveRecords records = new SaveRecords(levelCount);
+        int journalEntries = 0;
+        boolean writable = true;
+        try {
+            if (Files.exists(recordsPath)) {
+                records = SaveRecords.decodeRecords(ByteBuffer.wrap(Files.readAllBytes(recordsPath)), levelCount);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while loading the save records of " + profile + ": " + e.getMessage());
+            e.printStackTrace();
+            writable = setAside(recordsPath);  // The next compaction would replace it with the journal alone
+        }
+        try {
+            // The journal is replayed even if the records could not be read, it may still hold the latest runs
+            if (Files.exists(journalPath)) {
+                journalEntries = records.replayJournal(ByteBuffer.wrap(Files.readAllBytes(journalPath)));
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while loading the save journal of " + profile + ": " + e.getMessage());
+            e.printStackTrace();
+            writable &= setAside(journalPath);  // The first append would cut it down to the entries that were read
+        }
+        if (!writable) {
+            System.err.println("Save data of " + profile + " will not be written until its files can be read");
+            return new SaveStore(profile, records, null);
+        }
+
+        SaveStore store = new SaveStore(profile, records, new GameSaver(recordsPath, journalPath, records, journalEntries));
+        if (newProfile && profile.equals(DEFAULT_PROFILE)) store.importLegacySave();
+        OPEN_STORES.put(profile, store);
+        return store;
+    }
+
+    // Moves a save file that could not be read out of the way, so the saves that follow start a new one rather than
+    // overwrite it. Returns false if it could not be moved.
+    private static boolean setAside(Path path) {
+        Path unreadablePath = path.resolveSibling(path.getFileName() + UNREADABLE_SUFFIX);
+        try {
+            Files.move(path, unreadablePath, StandardCopyOption.REPLACE_EXISTING);
+            System.err.println("Kept the save file that could not be read as: " + unreadablePath);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not move the save file that could not be read: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Names of every profile that has save data
+    public static List<String> listProfiles() {
+        List<String> profiles = new ArrayList<>();
+        Path directory = Paths.get(PROFILES_DIR);
+        if (!Files.isDirectory(directory)) return profiles;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path profile : stream) profiles.add(profile.getFileName().toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return profiles;
+    }
+
+    // Moves the save data of older versions of the game, one JSON file, into this profile
+    private void importLegacySave() {
+        JSONObject levelSaveData = GameLoader.loadSaveData();
+        if (levelSaveData == null) return;
+        for (String key : levelSaveData.keySet()) {
+            JSONObject levelData = levelSaveData.optJSONObject(key);
+            if (levelData == null) continue;
+            int collectibles = (int) levelData.optDouble("COLLECTIBLES", 0);
+            double levelTime = levelData.optDouble("TIME", SaveRecords.NO_TIME);
+            recordRun(Integer.parseInt(key), collectibles, levelTime);
+        }
+        System.out.println("Imported the old save data into profile: " + profile);
+    }
+
+    // Keeps the results of a finished level if they beat the saved ones, returns true if anything was saved
+    public boolean recordRun(int level, int collectibles, double levelTime) {
+        if (!records.merge(level, collectibles, levelTime)) return false;
+        if (saver != null) saver.saveLevel(level, collectibles, levelTime);
+        return true;
+    }
+
+    public int getCollectibles(int level) {
+        return records.getCollectibles(level);
+    }
+
+    public double getBestTime(int level) {
+        return records.getBestTime(level);
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    // Counts every write of the save data to disk, a store that only lives in memory never writes
+    public void setMetrics(GameMetrics metrics) {
+        if (saver != null) saver.setMetrics(metrics);
+    }
+
+    public void flush() {
+        if (saver != null) saver.flush();
+    }
+
+    public void close() {
+        if (saver == null) return;
+        synchronized (SaveStore.class) {
+            OPEN_STORES.remove(profile, this);
+        }
+        saver.close();
+    }
+}
@@ -0,0 +1,22 @@
+package model;
+
+// Read only view of the events an EventBus dispatches at once, only valid while processEvents() is running
+// Events are in the order they were published, index 0 being the oldest.
+public interface EventBatch {
+    int size();
+
+    GameEvent getEvent(int index);
+
+    // Which entity the event came from, EventBus.PLAYER_ENTITY for the player or EventBus.NO_ENTITY
+    int getEntity(int index);
+
+    // Grid position of the tile the event is about, EventBus.NO_TILE if it is not about a tile
+    int getTileColumn(int index);
+
+    int getTileRow(int index);
+
+    // World position the event happened at
+    double getX(int index);
+
+    double getY(int index);
+}
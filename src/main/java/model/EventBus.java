@@ -0,0 +1,179 @@
+package model;
+
+import profiling.GameEventDispatchEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Collects game events during a tick and hands them to the listeners in one batch when the GameManager drains it
+// Events are published into a preallocated ring buffer, each one a GameEvent plus a few primitive payload fields kept
+// in parallel arrays, so neither publishing nor dispatching allocates. Any thread may publish, such as worker threads
+// or async loaders, but only the game thread drains. Each slot has a sequence number that says whether it is free,
+// written or being read, so publishers only race on claiming a slot and never take a lock.
+public class EventBus implements EventBatch {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final GameEvent[] GAME_EVENTS = GameEvent.values();
+
+    // Payload values for events that are not about a tile or an entity
+    public static final int NO_TILE = Integer.MIN_VALUE;
+    public static final int NO_ENTITY = -1;
+    public static final int PLAYER_ENTITY = 0;
+
+    private final List<EventListener> listeners = new ArrayList<>();
+
+    // A slot is free for the publisher of position p when its sequence is p, and readable once it is p + 1
+    private final int capacity;
+    private final int slotMask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong publishPosition = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private long drainPosition = 0;  // Only touched by the game thread
+
+    // Payload of each slot
+    private final int[] events;
+    private final int[] entities;
+    private final int[] tileColumns;
+    private final int[] tileRows;
+    private final double[] xs;
+    private final double[] ys;
+
+    // The batch being dispatched, read through the EventBatch methods
+    private long batchStart = 0;
+    private int batchSize = 0;
+
+    public EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // Capacity must be a power of two. A tick publishes a handful of events, so a bus drained every tick can be small,
+    // which matters when thousands of games run side by side.
+    public EventBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        this.capacity = capacity;
+        this.slotMask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.events = new int[capacity];
+        this.entities = new int[capacity];
+        this.tileColumns = new int[capacity];
+        this.tileRows = new int[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        for (int i = 0; i < capacity; i++) sequences.set(i, i);
+    }
+
+    public void addListener(EventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(EventListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Queues an event for the next drain, returns false if the buffer was full and the event was dropped
+    // x and y are where in the world it happened, tileColumn and tileRow which tile it was about, if any
+    public boolean publish(GameEvent gameEvent, int entity, int tileColumn, int tileRow, double x, double y) {
+        long position = publishPosition.get();
+        int slot;
+        while (true) {
+            slot = (int) position & slotMask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (publishPosition.compareAndSet(position, position + 1)) break;
+                position = publishPosition.get();
+            } else if (sequence < position) {
+                droppedEvents.incrementAndGet();  // The game thread has not drained this slot yet
+                return false;
+            } else {
+                position = publishPosition.get();  // Another publisher claimed it first
+            }
+        }
+        events[slot] = gameEvent.ordinal();
+        entities[slot] = entity;
+        tileColumns[slot] = tileColumn;
+        tileRows[slot] = tileRow;
+        xs[slot] = x;
+        ys[slot] = y;
+        sequences.set(slot, position + 1);  // Publishes the payload to the draining thread
+        return true;
+    }
+
+    // Dispatches every event published so far to the listeners, in batches of the events that are ready one after
+    // another. Events published while a batch is being handled are dispatched in the next batch of the same drain.
+    // Returns how many events were dispatched. Only called by the game thread.
+    public int drain() {
+        int dispatched = 0;
+        while (true) {
+            int ready = 0;
+            while (ready < capacity && sequences.get((int) (drainPosition + ready) & slotMask) == drainPosition + ready + 1) {
+                ready++;
+            }
+            if (ready == 0) return dispatched;
+
+            GameEventDispatchEvent dispatchEvent = GameEventDispatchEvent.isTypeEnabled() ? new GameEventDispatchEvent() : null;
+            if (dispatchEvent != null) dispatchEvent.begin();
+            batchStart = drainPosition;
+            batchSize = ready;
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).processEvents(this);
+            }
+            // Hands the slots back to publishers, one lap of the ring later
+            for (int i = 0; i < ready; i++) {
+                long position = drainPosition + i;
+                sequences.set((int) position & slotMask, position + capacity);
+            }
+            drainPosition += ready;
+            dispatched += ready;
+            batchSize = 0;
+            if (dispatchEvent != null && dispatchEvent.shouldCommit()) {
+                dispatchEvent.eventCount = ready;
+                dispatchEvent.listenerCount = listeners.size();
+                dispatchEvent.commit();
+            }
+        }
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private int slot(int index) {
+        return (int) (batchStart + index) & slotMask;
+    }
+
+    @Override
+    public int size() {
+        return batchSize;
+    }
+
+    @Override
+    public GameEvent getEvent(int index) {
+        return GAME_EVENTS[events[slot(index)]];
+    }
+
+    @Override
+    public int getEntity(int index) {
+        return entities[slot(index)];
+    }
+
+    @Override
+    public int getTileColumn(int index) {
+        return tileColumns[slot(index)];
+    }
+
+    @Override
+    public int getTileRow(int index) {
+        return tileRows[slot(index)];
+    }
+
+    @Override
+    public double getX(int index) {
+        return xs[slot(index)];
+    }
+
+    @Override
+    public double getY(int index) {
+        return ys[slot(index)];
+    }
+}
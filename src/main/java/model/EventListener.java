@@ -2,5 +2,6 @@ package model;
 
 // Interface for classes that listen to game events
 public interface EventListener {
-    void processEvent(GameEvent gameEvent);
+    // Called with the events published since the last time the EventBus was drained
+    void processEvents(EventBatch events);
 }
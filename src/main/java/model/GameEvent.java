@@ -2,5 +2,5 @@ package model;
 
 // Game event enum for the games main events, primarily used by the Player class
 public enum GameEvent {
-    GOAL_REACHED, COLLECTIBLE, DAMAGE, OUT_OF_BOUNDS;
+    GOAL_REACHED, COLLECTIBLE, HAZARD_HIT, DAMAGE, OUT_OF_BOUNDS;
 }
@@ -1,29 +1,52 @@
 package model;
 
-import io.GameLoader;
-import io.GameSaver;
-import org.json.JSONObject;
+import io.MapLoader;
+import io.SaveStore;
+import profiling.GameTickEvent;
+import util.GameMetrics;
 import util.InputListener;
 import util.Vector2D;
 
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 // Manages and stores the games state, referenced and controlled by the Controller classes
 public class GameManager implements EventListener {
 
     private static final int LEVEL_AMOUNT = 5;
     private static final int TILE_SIZE = 32;
+    private static final Vector2D PLAYER_SPAWN_POSITION = new Vector2D();
+    private static final int LIGHTWEIGHT_EVENT_CAPACITY = 64;  // Far more than a tick publishes
+    private static final int REWIND_TICKS = 60 * 10;  // How far back the rewind key goes, 10 seconds at 60 ticks/s
 
     private final Player player;
-    private TileMap tileMap;
+
+    // Game events published during a tick, handled all at once after the state machine has run
+    private final EventBus eventBus;
+    private TileMap tileMap;  // Shares the geometry of its level with every other GameManager playing it
+
+    // Visual effects, simulated here so they stay in step with the game
+    private final ParticleSystem particleSystem;
+
+    // Every tick of the attempt, for stepping back through while rewinding is held, null in lightweight games
+    private final RewindBuffer rewindBuffer;
+    private boolean rewinding = false;
+    private boolean levelRewound = false;  // The attempt was rewound, so its time and collectibles are not records
 
     // Input listener for menu inputs
     private final MenuInputListener menuInputListener = new MenuInputListener();
 
+    // Optional, counts level loads and save writes and tracks the game state for the metrics endpoint
+    private GameMetrics metrics;
+
     private GameState gameState = GameState.MAIN_MENU;
 
-    // HashMap that stores the save data for the game, saved after each level is beat
-    private final HashMap<Integer, HashMap<LevelData, Double>> levelSaveData = new HashMap<>(LEVEL_AMOUNT);
+    // Best collectibles and time of every level, saved after each level is beat
+    // When persistSaveData is false, save data is neither loaded nor written, used by headless runs so they never
+    // touch the players save
+    // It is opened on a virtual thread so startup does not wait on it, nothing reads it before a level is beat
+    private final CompletableFuture<SaveStore> saveStore;
 
     // Level tracking variables
     private int currentLevel = 0;
@@ -31,9 +54,17 @@ public class GameManager implements EventListener {
     private double previousTime = 0.0;
     private boolean startTimer = true;
     private double levelTimer = 0.0;  // In milliseconds
+    private int levelTicks = 0;  // Updates spent in the current attempt, independent of how fast the game is running
     private boolean levelCollectibleRecord = false;
     private boolean levelTimeRecord = false;
 
+    // Level editor variables, see toggleEditor()
+    private static final double EDITOR_PAN_SPEED = 8;  // Pixels per tick
+    private final Vector2D editorFocus = new Vector2D();  // Where the camera looks while editing
+    private TileType editorTileType = TileType.GROUND;
+    private int savedEditCount = 0;  // Edit count of the tile map when it last matched its level file
+    private Path levelDirectory = null;  // Dev mode loads the levels from here, see setLevelDirectory()
+
     // Level transition variables
     private static final double TRANSITION_TIME = 1;
     private static final double TRANSITION_RATE = 0.03;
@@ -41,51 +72,52 @@ public class GameManager implements EventListener {
 
 
     public GameManager() {
+        this(true);
+    }
+
+    public GameManager(boolean persistSaveData) {
+        this(persistSaveData, false);
+    }
+
+    // A lightweight game has no visual effects, no rewind and a small event buffer, which takes it down to a few
+    // kilobytes, for running thousands of headless games at once (see control.SessionHost)
+    public GameManager(boolean persistSaveData, boolean lightweight) {
+        this.eventBus = lightweight ? new EventBus(LIGHTWEIGHT_EVENT_CAPACITY) : new EventBus();
+        this.particleSystem = new ParticleSystem(!lightweight);
+        this.rewindBuffer = lightweight ? null : new RewindBuffer(REWIND_TICKS);
         Vector2D playerPosition = new Vector2D();
-        this.player = new Player(this, playerPosition);
-        loadLevelSaveData();
-    }
-
-    // Takes a JSONObject from the GameLoader to load level save data
-    private void loadLevelSaveData() {
-        JSONObject levelSaveData = GameLoader.loadSaveData();
-        if (levelSaveData != null) {
-            for (String key : levelSaveData.keySet()) {
-                JSONObject levelData = levelSaveData.getJSONObject(key);
-                HashMap<LevelData, Double> levelSaveDataMap = new HashMap<>();
-                for (String key2 : levelData.keySet()) {
-                    levelSaveDataMap.put(LevelData.getFromString(key2), levelData.getDouble(key2));
-                }
-                this.levelSaveData.put(Integer.valueOf(key), levelSaveDataMap);
-            }
-        } else {
-            double defaultCollectibleCount = 0.0;
-            for (int i = 1; i <= LEVEL_AMOUNT; i++) {
-                HashMap<LevelData, Double> levelData = new HashMap<>();
-                levelData.put(LevelData.COLLECTIBLES, defaultCollectibleCount);
-                levelData.put(LevelData.TIME, Double.MAX_VALUE);
-                this.levelSaveData.put(i, levelData);
-            }
-        }
+        eventBus.addListener(this);
+        this.player = new Player(eventBus, playerPosition);
+        this.saveStore = persistSaveData
+                ? openSaveStore()
+                : CompletableFuture.completedFuture(SaveStore.inMemory(LEVEL_AMOUNT + 1));
+    }
+
+    // Loads the selected profile in the background. The profile name is checked here first, so a bad one still stops
+    // the game at startup, and if loading fails anyway the game is played without saving rather than failing later on
+    // the thread that first asks for the save data.
+    private static CompletableFuture<SaveStore> openSaveStore() {
+        String profile = SaveStore.selectedProfile();
+        return CompletableFuture.supplyAsync(() -> SaveStore.open(profile, LEVEL_AMOUNT + 1),
+                        command -> Thread.ofVirtual().name("Save loader").start(command))
+                .exceptionally(e -> {
+                    System.err.println("Could not load the save data, progress will not be saved: " + e.getMessage());
+                    e.printStackTrace();
+                    return SaveStore.inMemory(LEVEL_AMOUNT + 1);
+                });
     }
 
     private void saveLevelSaveData() {
-        int savedCollectibleCount = getSavedLevelCollectibleCount();
-        double savedLevelTime = getSavedLevelTime();
-        if (savedLevelTime > levelTimer) {
-            levelSaveData.get(currentLevel).put(LevelData.TIME, levelTimer);
-            levelTimeRecord = true;
-        }
-        if (savedCollectibleCount < levelCollectedCollectibles) {
-            levelSaveData.get(currentLevel).put(LevelData.COLLECTIBLES, (double)levelCollectedCollectibles);
-            levelCollectibleRecord = true;
-        }
-        JSONObject levelSaveData = new JSONObject(this.levelSaveData);
-        GameSaver.saveGame(levelSaveData);
+        if (currentLevel == 0) return;  // Levels played from a file have no save data
+        if (levelRewound) return;  // Practice, not a real run
+        if (getSavedLevelTime() > levelTimer) levelTimeRecord = true;
+        if (getSavedLevelCollectibleCount() < levelCollectedCollectibles) levelCollectibleRecord = true;
+        // Only a run that beat a record is saved, as a single journal entry for this level
+        saveStore.join().recordRun(currentLevel, levelCollectedCollectibles, levelTimer);
     }
 
     private void changeLevel() {
-        player.resetPlayer(new Vector2D());
+        player.resetPlayer(PLAYER_SPAWN_POSITION);
         if (currentLevel == LEVEL_AMOUNT) {
             System.out.println("No More levels left :(");
             System.out.println("Back to the beginning");
@@ -96,17 +128,43 @@ public class GameManager implements EventListener {
     }
 
     private void resetLevel() {
-        player.resetPlayer(new Vector2D());
+        player.resetPlayer(PLAYER_SPAWN_POSITION);
+        particleSystem.clear();
         levelCollectedCollectibles = 0;
+        levelTicks = 0;
         startTimer = true;
         tileMap.resetTileMap();
+        startRewind();
     }
 
     private void loadLevel() {
+        String level = String.valueOf(currentLevel - 1);
+        if (levelDirectory == null) {
+            loadLevel(new TileMap(LevelGeometry.forLevel(level, TILE_SIZE)));
+            return;
+        }
+        // Levels the directory does not have are still the ones the game was built with
+        Path levelFile = MapLoader.levelFile(levelDirectory, level);
+        loadLevel(Files.exists(levelFile) ? new TileMap(levelFile, TILE_SIZE) : new TileMap(level, TILE_SIZE));
+    }
+
+    private void loadLevel(TileMap levelTileMap) {
+        particleSystem.clear();
         levelCollectedCollectibles = 0;
+        levelTicks = 0;
         startTimer = true;
-        String level = String.valueOf(currentLevel - 1);
-        tileMap = new TileMap(level, TILE_SIZE);
+        tileMap = levelTileMap;
+        savedEditCount = levelTileMap.getEditCount();
+        startRewind();
+        if (metrics != null) metrics.recordLevelLoad();
+    }
+
+    // A new attempt can only be rewound as far back as the spawn
+    private void startRewind() {
+        levelRewound = false;
+        if (rewindBuffer == null) return;
+        rewindBuffer.clear();
+        rewindBuffer.capture(player, levelTicks, levelTimer, levelCollectedCollectibles);
     }
 
     private void updateLevelTimer() {
@@ -131,10 +189,33 @@ public class GameManager implements EventListener {
 
     // In game state
     private void inLevelState() {
+        if (rewinding && rewindBuffer != null) {
+            rewindState();
+            return;
+        }
+        levelTicks++;
         player.move(tileMap);
         updateLevelTimer();
     }
 
+    // Steps one tick back every update while rewinding is held, and stays at the oldest tick once there is none left
+    private void rewindState() {
+        if (rewindBuffer.rewind(player, tileMap)) {
+            levelTicks = rewindBuffer.getLevelTicks();
+            levelTimer = rewindBuffer.getLevelTime();
+            levelCollectedCollectibles = rewindBuffer.getCollectibleCount();
+            levelRewound = true;
+        }
+        previousTime = System.currentTimeMillis();  // The time spent rewinding is not played
+    }
+
+    // Editor state, the level is frozen and the movement keys pan the camera instead of moving the player
+    private void editorState() {
+        Vector2D panDirection = menuInputListener.getInputVector();
+        editorFocus.x += panDirection.x * EDITOR_PAN_SPEED;
+        editorFocus.y += panDirection.y * EDITOR_PAN_SPEED;
+    }
+
     // Transition state for animation
     private void transitionState() {
         currentTransitionTime += TRANSITION_RATE;
@@ -165,6 +246,11 @@ public class GameManager implements EventListener {
 
     // Main update loop for the game, called by the game controller every frame
     public void update() {
+        GameTickEvent tickEvent = GameTickEvent.isTypeEnabled() ? new GameTickEvent() : null;
+        if (tickEvent != null) tickEvent.begin();
+        GameState tickState = gameState;
+        boolean playedTick = gameState == GameState.IN_LEVEL && !(rewinding && rewindBuffer != null);
+
         // Update to make sure a press is recorded (button down to button up)
         menuInputListener.updatePressedStates();
 
@@ -175,7 +261,68 @@ public class GameManager implements EventListener {
             case IN_LEVEL -> inLevelState();
             case LEVEL_TRANSITION -> transitionState();
             case LEVEL_FINISHED -> levelFinishedState();
+            case EDITOR -> editorState();
+        }
+        // Events from this tick, and any published by other threads since the last one, change the game state here
+        // rather than in the middle of the physics step
+        eventBus.drain();
+        // A tick that restarted the attempt already captured the spawn
+        if (playedTick && gameState == GameState.IN_LEVEL && levelTicks > 0 && rewindBuffer != null) {
+            rewindBuffer.capture(player, levelTicks, levelTimer, levelCollectedCollectibles);
         }
+        particleSystem.update();
+        if (metrics != null) metrics.setGameState(gameState.name());
+
+        if (tickEvent != null && tickEvent.shouldCommit()) {
+            tickEvent.state = tickState.name();
+            tickEvent.commit();
+        }
+    }
+
+    // Skips the menu and transition and drops the player straight into the given level, used by tools that drive the
+    // GameManager without a window
+    public void startLevel(int level) {
+        player.resetPlayer(PLAYER_SPAWN_POSITION);
+        currentLevel = level;
+        loadLevel();
+        gameState = GameState.IN_LEVEL;
+    }
+
+    // Held by the rewind key, the level steps back a tick every update instead of playing one
+    public void setRewinding(boolean rewinding) {
+        this.rewinding = rewinding;
+    }
+
+    // Whether the level is being stepped back this tick
+    public boolean isRewinding() {
+        return rewinding && gameState == GameState.IN_LEVEL && rewindBuffer != null;
+    }
+
+    // Ticks the rewind key can still step back
+    public int getRewindableTicks() {
+        return rewindBuffer == null ? 0 : rewindBuffer.getRewindableTicks();
+    }
+
+    // Dev mode loads every level from the files in the level directory, the ones the LevelWatcher diffs and the
+    // LevelEditor saves to, so a level left and entered again is the version on disk and not the one the game was
+    // built with. Each gets a geometry of its own rather than the shared one, otherwise the first edit would copy the
+    // whole level and rebuild all of its ground on the game thread.
+    public void setLevelDirectory(Path levelDirectory) {
+        this.levelDirectory = levelDirectory;
+    }
+
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+        saveStore.thenAccept(store -> store.setMetrics(metrics));  // Save writes are counted by the writer thread
+    }
+
+    // Like startLevel(int), but plays a level file from disk that is not one of the games levels, such as a generated
+    // stress test level. Records are not kept for it.
+    public void startLevel(Path levelFile) {
+        player.resetPlayer(PLAYER_SPAWN_POSITION);
+        currentLevel = 0;
+        loadLevel(new TileMap(levelFile, TILE_SIZE));
+        gameState = GameState.IN_LEVEL;
     }
 
     public int getTileSize() {
@@ -204,6 +351,10 @@ public class GameManager implements EventListener {
         return tileMap.getVisibleTiles(worldPos, screenSize);
     }
 
+    public ParticleSystem getParticleSystem() {
+        return particleSystem;
+    }
+
     public int getCollectibleAmount() {
         return levelCollectedCollectibles;
     }
@@ -212,6 +363,10 @@ public class GameManager implements EventListener {
         return levelTimer;
     }
 
+    public int getLevelTicks() {
+        return levelTicks;
+    }
+
     public GameState getGameState() {
         return gameState;
     }
@@ -221,11 +376,11 @@ public class GameManager implements EventListener {
     }
 
     public int getSavedLevelCollectibleCount() {
-        return levelSaveData.get(currentLevel).get(LevelData.COLLECTIBLES).intValue();
+        return saveStore.join().getCollectibles(currentLevel);
     }
 
     public double getSavedLevelTime() {
-        return levelSaveData.get(currentLevel).get(LevelData.TIME);
+        return saveStore.join().getBestTime(currentLevel);
     }
 
     public boolean isLevelCollectibleRecord() {
@@ -240,37 +395,114 @@ public class GameManager implements EventListener {
         return currentLevel;
     }
 
+    // Applies edits made to a level file while the game runs, returns false if they are not for the level being played
+    // The player and the collectibles already collected are left as they are
+    public boolean applyLevelChanges(TileChanges changes) {
+        // Stale even if the level is not the one being played
+        LevelGeometry.invalidate(changes.getLevelName());
+        if (tileMap == null || !tileMap.getName().equals(changes.getLevelName())) return false;
+        boolean unsavedEdits = hasUnsavedEdits();
+        tileMap.applyChanges(changes);
+        if (!unsavedEdits) markLevelSaved();  // The map still matches the file
+        return true;
+    }
+
+    // Switches between playing the level and editing it, only from inside a level. Leaving the editor starts the
+    // attempt over, so nothing played before the edits counts.
+    public void toggleEditor() {
+        if (gameState == GameState.IN_LEVEL) {
+            gameState = GameState.EDITOR;
+            editorFocus.set(player.getPlayerCenterPosition());
+        } else if (gameState == GameState.EDITOR) {
+            gameState = GameState.IN_LEVEL;
+            resetLevel();
+        }
+    }
+
+    // Places the selected editor tile at the grid position, only while editing
+    public void paintTile(int column, int row) {
+        if (gameState != GameState.EDITOR) return;
+        tileMap.paintTile(column, row, editorTileType);
+        tileMap.finishEdits();
+    }
+
+    public void eraseTile(int column, int row) {
+        if (gameState != GameState.EDITOR) return;
+        tileMap.eraseTile(column, row);
+        tileMap.finishEdits();
+    }
+
+    public void setEditorTileType(TileType editorTileType) {
+        this.editorTileType = editorTileType;
+    }
+
+    public TileType getEditorTileType() {
+        return editorTileType;
+    }
+
+    public Vector2D getEditorFocus() {
+        return editorFocus;
+    }
+
+    // Every tile of the current level, to save it back to its level file
+    public TileChanges exportLevel() {
+        return tileMap.exportTiles();
+    }
+
+    public String getLevelName() {
+        return tileMap == null ? null : tileMap.getName();
+    }
+
+    // Called once the tiles from exportLevel() are written to the level file, which also drops any geometry of the
+    // level shared from before the edits
+    public void markLevelSaved(int editCount) {
+        savedEditCount = editCount;
+        LevelGeometry.invalidate(getLevelName());
+    }
+
+    private void markLevelSaved() {
+        markLevelSaved(getLevelEditCount());
+    }
+
+    // Whether the level was edited in the editor since it was loaded or last saved
+    public boolean hasUnsavedEdits() {
+        return getLevelEditCount() != savedEditCount;
+    }
+
+    public int getLevelEditCount() {
+        return tileMap == null ? 0 : tileMap.getEditCount();
+    }
+
     public boolean getTileMapActive() {
         return tileMap != null;
     }
 
     @Override
-    public void processEvent(GameEvent gameEvent) {
-        // Put event processing here
-        switch (gameEvent) {
-            case GOAL_REACHED -> {
-                gameState = GameState.LEVEL_FINISHED;
-                menuInputListener.resetPressedStates();
-                saveLevelSaveData();
-            }
-            case DAMAGE -> {
-                System.out.println("You have died, resetting level");
-                resetLevel();
+    public void processEvents(EventBatch events) {
+        for (int i = 0; i < events.size(); i++) {
+            switch (events.getEvent(i)) {
+                case GOAL_REACHED -> {
+                    gameState = GameState.LEVEL_FINISHED;
+                    menuInputListener.resetPressedStates();
+                    saveLevelSaveData();
+                }
+                case DAMAGE -> resetLevel();
+                case COLLECTIBLE -> {
+                    levelCollectedCollectibles++;
+                    if (rewindBuffer != null) {
+                        TileMap.Tile tile = tileMap.getTile(events.getTileColumn(i), events.getTileRow(i));
+                        if (tile != null) rewindBuffer.recordTaken(tile.getCollectibleIndex());
+                    }
+                    particleSystem.emitCollectiblePickup(events.getX(i), events.getY(i));
+                }
+                case HAZARD_HIT, OUT_OF_BOUNDS -> particleSystem.emitPlayerDeath(events.getX(i), events.getY(i));
+                case null, default -> {}
             }
-            case COLLECTIBLE -> levelCollectedCollectibles++;
         }
     }
 
-    // Enums for the level save data hash map
-    private enum LevelData {
-        COLLECTIBLES, TIME;
-
-        public static LevelData getFromString(String str) {
-            return switch (str) {
-                case "COLLECTIBLES" -> COLLECTIBLES;
-                case "TIME" -> TIME;
-                default -> null;
-            };
-        }
+    // Lets other threads and async loaders send events to the game, handled at the end of the next tick
+    public EventBus getEventBus() {
+        return eventBus;
     }
 }
@@ -7,6 +7,7 @@ public abstract class GameObject {
     protected Vector2D worldPosition = new Vector2D();
     protected int width, height;
     protected Vector2D hitboxOffset = new Vector2D();  // Moves the hit box position, useful to line up hit box with visuals
+    private final RectangleBox hitBox = new RectangleBox(new Vector2D(), 0, 0);  // Reused by getHitBox()
 
     public Vector2D getWorldPosition() {
         return worldPosition;
@@ -20,8 +21,10 @@ public abstract class GameObject {
         return height;
     }
 
+    // The returned box is shared and updated in place, so it is only valid until the next call on this object
     public RectangleBox getHitBox() {
-        return new RectangleBox(new Vector2D(worldPosition.add(hitboxOffset)), width, height);
+        hitBox.setBounds(worldPosition.x + hitboxOffset.x, worldPosition.y + hitboxOffset.y, width, height);
+        return hitBox;
     }
 
 }
@@ -2,5 +2,6 @@ package model;
 
 // Enum for representing the overall state of the game
 public enum GameState {
-    MAIN_MENU, IN_LEVEL, LEVEL_TRANSITION, LEVEL_FINISHED
+    MAIN_MENU, IN_LEVEL, LEVEL_TRANSITION, LEVEL_FINISHED,
+    EDITOR  // Dev mode level editing, entered from inside a level
 }
@@ -0,0 +1,167 @@
+package model;
+
+import util.Vector2D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// Spatial index of the solid ground in a TileMap, used for the players collision checks
+// Ground tiles are merged into as few large rectangles as possible (greedy meshing), so the player checks a few large
+// hit boxes instead of one per tile.
+// The map is split into chunks of CHUNK_SIZE x CHUNK_SIZE tiles and each chunk is meshed on its own. Rectangles never
+// cross a chunk border, which means editing a tile only needs its own chunk to be rebuilt (see rebuildAt()). The
+// tradeoff is that merging stops at chunk borders: a long floor is one box per chunk, with a seam every CHUNK_SIZE
+// tiles. Seams are flush, and the player resolves collisions one axis at a time against boxes it overlaps rather than
+// touches, so running along the top of one does not stop it.
+// Queries only read the index, so any number of threads can query it at once, each with a QueryBuffer of its own.
+public class GroundCollisionIndex {
+
+    private static final int CHUNK_SIZE = 16;  // In tiles
+    private static final int INITIAL_QUERY_CAPACITY = 16;
+
+    private final int tileSize;
+    private final HashMap<Vector2D, TileMap.Tile> tiles;
+    private final HashMap<Vector2D, ArrayList<RectangleBox>> chunks = new HashMap<>();
+    private final HashSet<Vector2D> dirtyChunks = new HashSet<>();  // Waiting for rebuildDirtyChunks()
+
+    // Reused during meshing
+    private final Vector2D lookupKey = new Vector2D();
+    private final boolean[] solidCells = new boolean[CHUNK_SIZE * CHUNK_SIZE];
+
+    // Scratch space for query(), reused by whoever owns it so queries do not allocate
+    public static class QueryBuffer {
+        private final Vector2D lookupKey = new Vector2D();
+        private RectangleBox[] result = new RectangleBox[INITIAL_QUERY_CAPACITY];
+    }
+
+    public GroundCollisionIndex(HashMap<Vector2D, TileMap.Tile> tiles, int tileSize) {
+        this.tiles = tiles;
+        this.tileSize = tileSize;
+        buildAllChunks();
+    }
+
+    // Meshes every chunk that contains at least one ground tile
+    private void buildAllChunks() {
+        HashSet<Vector2D> groundChunks = new HashSet<>();
+        for (Vector2D tilePos : tiles.keySet()) {
+            if (tiles.get(tilePos).getType() != TileType.GROUND) continue;
+            groundChunks.add(new Vector2D(Math.floorDiv((int) tilePos.x, CHUNK_SIZE), Math.floorDiv((int) tilePos.y, CHUNK_SIZE)));
+        }
+        for (Vector2D chunkPos : groundChunks) {
+            rebuildChunk((int) chunkPos.x, (int) chunkPos.y);
+        }
+    }
+
+    // Rebuilds the chunk containing the given tile, call after a ground tile has been added, removed or changed type
+    public void rebuildAt(int tileX, int tileY) {
+        rebuildChunk(Math.floorDiv(tileX, CHUNK_SIZE), Math.floorDiv(tileY, CHUNK_SIZE));
+    }
+
+    // Marks the chunk containing the given tile for the next rebuildDirtyChunks(), so a batch of edits rebuilds every
+    // chunk it touched once instead of once per edited tile
+    public void markDirty(int tileX, int tileY) {
+        dirtyChunks.add(new Vector2D(Math.floorDiv(tileX, CHUNK_SIZE), Math.floorDiv(tileY, CHUNK_SIZE)));
+    }
+
+    // Rebuilds every chunk marked dirty since the last call, returns how many were rebuilt
+    public int rebuildDirtyChunks() {
+        int rebuilt = dirtyChunks.size();
+        for (Vector2D chunkPos : dirtyChunks) {
+            rebuildChunk((int) chunkPos.x, (int) chunkPos.y);
+        }
+        dirtyChunks.clear();
+        return rebuilt;
+    }
+
+    private void rebuildChunk(int chunkX, int chunkY) {
+        int firstTileX = chunkX * CHUNK_SIZE;
+        int firstTileY = chunkY * CHUNK_SIZE;
+
+        // Grab which cells of the chunk are solid ground
+        boolean anySolid = false;
+        for (int y = 0; y < CHUNK_SIZE; y++) {
+            for (int x = 0; x < CHUNK_SIZE; x++) {
+                TileMap.Tile tile = tiles.get(lookupKey.set(firstTileX + x, firstTileY + y));
+                boolean solid = tile != null && tile.getType() == TileType.GROUND;
+                solidCells[y * CHUNK_SIZE + x] = solid;
+                anySolid |= solid;
+            }
+        }
+
+        Vector2D chunkKey = new Vector2D(chunkX, chunkY);
+        if (!anySolid) {
+            chunks.remove(chunkKey);
+            return;
+        }
+
+        // Greedy meshing: take the first solid cell, grow it right as far as possible, then grow that row down as far
+        // as every cell below it is solid. Used cells are cleared so they are not merged twice.
+        ArrayList<RectangleBox> rectangles = new ArrayList<>();
+        for (int y = 0; y < CHUNK_SIZE; y++) {
+            for (int x = 0; x < CHUNK_SIZE; x++) {
+                if (!solidCells[y * CHUNK_SIZE + x]) continue;
+
+                int width = 1;
+                while (x + width < CHUNK_SIZE && solidCells[y * CHUNK_SIZE + x + width]) width++;
+
+                int height = 1;
+                while (y + height < CHUNK_SIZE && isRowSolid(x, y + height, width)) height++;
+
+                for (int clearY = y; clearY < y + height; clearY++) {
+                    for (int clearX = x; clearX < x + width; clearX++) {
+                        solidCells[clearY * CHUNK_SIZE + clearX] = false;
+                    }
+                }
+
+                Vector2D rectanglePos = new Vector2D((firstTileX + x) * tileSize, (firstTileY + y) * tileSize);
+                rectangles.add(new RectangleBox(rectanglePos, width * tileSize, height * tileSize));
+            }
+        }
+        chunks.put(chunkKey, rectangles);
+    }
+
+    private boolean isRowSolid(int startX, int y, int width) {
+        for (int x = startX; x < startX + width; x++) {
+            if (!solidCells[y * CHUNK_SIZE + x]) return false;
+        }
+        return true;
+    }
+
+    // Returns the merged ground boxes that overlap the given box, the result ends at the first null entry
+    // Note: the returned array belongs to the buffer, so its contents are only valid until its next query
+    public RectangleBox[] query(RectangleBox box, QueryBuffer buffer) {
+        int firstChunkX = Math.floorDiv((int) Math.floor(box.getLeftSide() / tileSize), CHUNK_SIZE);
+        int lastChunkX = Math.floorDiv((int) Math.floor(box.getRightSide() / tileSize), CHUNK_SIZE);
+        int firstChunkY = Math.floorDiv((int) Math.floor(box.getTopSide() / tileSize), CHUNK_SIZE);
+        int lastChunkY = Math.floorDiv((int) Math.floor(box.getBottom() / tileSize), CHUNK_SIZE);
+
+        int resultCount = 0;
+        for (int chunkY = firstChunkY; chunkY <= lastChunkY; chunkY++) {
+            for (int chunkX = firstChunkX; chunkX <= lastChunkX; chunkX++) {
+                ArrayList<RectangleBox> rectangles = chunks.get(buffer.lookupKey.set(chunkX, chunkY));
+                if (rectangles == null) continue;
+                for (int i = 0; i < rectangles.size(); i++) {
+                    RectangleBox rectangle = rectangles.get(i);
+                    if (!rectangle.intersects(box)) continue;
+                    // Leave room for the terminating null, only grows on unusually dense ground
+                    if (resultCount + 1 >= buffer.result.length) {
+                        buffer.result = Arrays.copyOf(buffer.result, buffer.result.length * 2);
+                    }
+                    buffer.result[resultCount++] = rectangle;
+                }
+            }
+        }
+        buffer.result[resultCount] = null;
+        return buffer.result;
+    }
+
+    public int getRectangleCount() {
+        int count = 0;
+        for (ArrayList<RectangleBox> rectangles : chunks.values()) {
+            count += rectangles.size();
+        }
+        return count;
+    }
+}
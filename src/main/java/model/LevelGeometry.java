@@ -0,0 +1,217 @@
+package model;
+
+import io.MapLoader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import profiling.TileMapLoadEvent;
+import util.Vector2D;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The tiles of a level and the merged ground built from them, everything about a level that stays the same while it is
+// played. A game level is loaded once and shared by every TileMap playing it, on any thread, and each TileMap keeps what
+// changes during an attempt, like the collectibles taken, on its own (see TileMap).
+// Note: a shared geometry is never changed, a TileMap that gets edited takes its own copy first
+public class LevelGeometry {
+
+    // Spikes have a smaller hit box that needs to be accounted for manually
+    private static final Vector2D STANDARD_TILE_OFFSET = new Vector2D(0, 0);
+    private static final Vector2D BOTTOM_SPIKE_OFFSET = new Vector2D(0, 15);
+    private static final Vector2D RIGHT_SPIKE_OFFSET = new Vector2D(15, 0);
+    private static final int SPIKE_HITBOX_SIZE = 18;
+
+    // Smaller hitbox for collectibles as well
+    private static final int COLLECTIBLE_HITBOX_SIZE = 20;
+    private static final Vector2D COLLECTIBLE_OFFSET = new Vector2D(7, 7);
+
+    // Geometry of the games levels loaded so far, by level name
+    private static final ConcurrentHashMap<String, LevelGeometry> LEVELS = new ConcurrentHashMap<>();
+
+    private final String name;  // Level file name without its extension
+    private final int tileSize;
+    private final HashMap<Vector2D, TileMap.Tile> tiles;
+    private final boolean loaded;  // False if the level file could not be loaded, the level is then empty
+    private final GroundCollisionIndex groundCollisionIndex;  // Merged ground hit boxes used for collisions
+    private int collectibleSlots = 0;  // Collectible indices handed out so far, removed collectibles keep theirs
+    private int lowestRow = Integer.MIN_VALUE;  // Of the lowest tile placed so far, there is nothing to land on below it
+    private int editCount = 0;  // Tiles put or removed since this geometry was loaded or copied
+
+    // Reachability of these tiles, built on first use by NavigationGraph.forLevel()
+    private volatile NavigationGraph navigationGraph;
+
+    private LevelGeometry(String name, int tileSize, JSONObject mapObject) {
+        this.name = name;
+        this.tileSize = tileSize;
+        this.loaded = mapObject != null;
+        this.tiles = loaded ? loadTiles(mapObject) : new HashMap<>();
+        this.groundCollisionIndex = new GroundCollisionIndex(tiles, tileSize);
+    }
+
+    // A copy to edit, the tiles themselves never change so they are shared with the original
+    private LevelGeometry(LevelGeometry original) {
+        this.name = original.name;
+        this.tileSize = original.tileSize;
+        this.loaded = original.loaded;
+        this.tiles = new HashMap<>(original.tiles);
+        this.groundCollisionIndex = new GroundCollisionIndex(tiles, tileSize);
+        this.collectibleSlots = original.collectibleSlots;
+        this.lowestRow = original.lowestRow;
+    }
+
+    // The geometry of one of the games levels, loaded the first time it is asked for and shared from then on
+    public static LevelGeometry forLevel(String levelName, int tileSize) {
+        LevelGeometry geometry = LEVELS.get(levelName);
+        if (geometry != null && geometry.tileSize == tileSize) return geometry;
+        geometry = load(levelName, tileSize);
+        if (geometry.loaded) LEVELS.put(levelName, geometry);  // A missing file is tried again next time
+        return geometry;
+    }
+
+    // Drops the shared geometry of a level whose file changed, TileMaps already playing it keep the old one
+    public static void invalidate(String levelName) {
+        LEVELS.remove(levelName);
+    }
+
+    // Loads one of the games levels without sharing it
+    public static LevelGeometry load(String levelName, int tileSize) {
+        return load(levelName, null, tileSize);
+    }
+
+    // Loads a map file from disk rather than one of the games levels, used for generated stress test levels
+    public static LevelGeometry load(Path mapFile, int tileSize) {
+        return load(TileMap.levelName(mapFile), mapFile, tileSize);
+    }
+
+    private static LevelGeometry load(String levelName, Path mapFile, int tileSize) {
+        TileMapLoadEvent loadEvent = new TileMapLoadEvent();
+        loadEvent.begin();
+        LevelGeometry geometry = new LevelGeometry(levelName, tileSize,
+                mapFile == null ? MapLoader.loadMapJSON(levelName) : MapLoader.loadMapJSON(mapFile));
+        if (loadEvent.shouldCommit()) {
+            loadEvent.level = levelName;
+            loadEvent.tileCount = geometry.getTileCount();
+            loadEvent.commit();
+        }
+        return geometry;
+    }
+
+    // Loads the tiles from a JSONObject given by the MapLoader
+    private HashMap<Vector2D, TileMap.Tile> loadTiles(JSONObject mapObject) {
+        HashMap<Vector2D, TileMap.Tile> tileMap = new HashMap<>(mapObject.length());
+        for (String key : mapObject.keySet()) {
+            JSONObject tileInfo = mapObject.getJSONObject(key);
+            JSONArray posInfo = tileInfo.getJSONArray("pos");
+            Vector2D pos = new Vector2D(posInfo.getDouble(0), posInfo.getDouble(1));
+            TileType tileType = TileType.stringToTileType(tileInfo.getString("type"));
+            TileOrientation tileOrientation = TileOrientation.getOrientationFromInt(tileInfo.getInt("variant"));
+            tileMap.put(pos, createTile((int) pos.x, (int) pos.y, tileType, tileOrientation));
+        }
+        return tileMap;
+    }
+
+    // Creates a tile based on its type, orientation, and grid position, collectibles get the next collectible index
+    TileMap.Tile createTile(int column, int row, TileType tileType, TileOrientation tileOrientation) {
+        Vector2D tileOffset = STANDARD_TILE_OFFSET;
+        int tileWidth = tileSize;
+        int tileHeight = tileSize;
+        if (tileType == TileType.HAZARD) {
+            switch (tileOrientation) {
+                case TOP_LEFT -> {
+                    tileOffset = BOTTOM_SPIKE_OFFSET;
+                    tileHeight = SPIKE_HITBOX_SIZE;
+                }
+                case TOP -> tileWidth = SPIKE_HITBOX_SIZE;
+                case TOP_RIGHT -> tileHeight = SPIKE_HITBOX_SIZE;
+                case LEFT -> {
+                    tileOffset = RIGHT_SPIKE_OFFSET;
+                    tileWidth = SPIKE_HITBOX_SIZE;
+                }
+                case null, default -> {}
+            }
+        }
+        int collectibleIndex = -1;
+        if (tileType == TileType.COLLECTIBLE) {
+            tileOffset = COLLECTIBLE_OFFSET;
+            tileWidth = COLLECTIBLE_HITBOX_SIZE;
+            tileHeight = COLLECTIBLE_HITBOX_SIZE;
+            collectibleIndex = collectibleSlots++;
+        }
+
+        lowestRow = Math.max(lowestRow, row);
+        Vector2D tileWorldPos = new Vector2D(column * tileSize, row * tileSize);
+        return new TileMap.Tile(tileWorldPos, tileOffset, tileWidth, tileHeight, tileType, tileOrientation, collectibleIndex);
+    }
+
+    LevelGeometry copy() {
+        return new LevelGeometry(this);
+    }
+
+    // Editing, only ever done on a copy owned by a single TileMap
+
+    void putTile(int column, int row, TileMap.Tile tile) {
+        tiles.put(new Vector2D(column, row), tile);
+        editCount++;
+    }
+
+    TileMap.Tile removeTile(Vector2D tilePos) {
+        editCount++;
+        return tiles.remove(tilePos);
+    }
+
+    int getEditCount() {
+        return editCount;
+    }
+
+    NavigationGraph getNavigationGraph() {
+        return navigationGraph;
+    }
+
+    void setNavigationGraph(NavigationGraph navigationGraph) {
+        this.navigationGraph = navigationGraph;
+    }
+
+    void markDirty(int column, int row) {
+        groundCollisionIndex.markDirty(column, row);
+    }
+
+    int rebuildDirtyChunks() {
+        return groundCollisionIndex.rebuildDirtyChunks();
+    }
+
+    // Note: the key is only read, so every TileMap can look tiles up with a key of its own
+    TileMap.Tile getTile(Vector2D tilePos) {
+        return tiles.get(tilePos);
+    }
+
+    HashMap<Vector2D, TileMap.Tile> getTiles() {
+        return tiles;
+    }
+
+    GroundCollisionIndex getGroundCollisionIndex() {
+        return groundCollisionIndex;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    // Whether the given height is below the bottom of the lowest tile, an empty level has no bottom
+    public boolean isBelowLevel(double worldY) {
+        return lowestRow != Integer.MIN_VALUE && worldY > (lowestRow + 1) * (double) tileSize;
+    }
+
+    // Upper bound of the collectible indices of the tiles, the size a bitset of collectibles needs
+    public int getCollectibleSlots() {
+        return collectibleSlots;
+    }
+}
@@ -6,7 +6,7 @@ import util.Vector2D;
 // Class that observes input during menu sections
 public class MenuInputListener implements InputListener {
 
-    private Vector2D inputVector = new Vector2D();
+    private final Vector2D inputVector = new Vector2D();
     private boolean spaceDown = false;
     private boolean backspaceDown = false;
 
@@ -70,7 +70,7 @@ public class MenuInputListener implements InputListener {
 
     @Override
     public void routeInput(Vector2D inputVector, boolean jumpPressed, boolean backspacePressed) {
-        this.inputVector = inputVector;
+        this.inputVector.set(inputVector);
         this.spaceDown = jumpPressed;
         this.backspaceDown = backspacePressed;
     }
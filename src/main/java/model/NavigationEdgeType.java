@@ -0,0 +1,8 @@
+package model;
+
+// How a NavigationGraph edge moves from one walkable span to the next
+public enum NavigationEdgeType {
+    RUN,   // Walk straight onto the next span of the same floor
+    FALL,  // Walk off the end of the span without jumping
+    JUMP   // Jump from the takeoff column, holding a direction or not
+}
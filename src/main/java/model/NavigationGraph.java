@@ -0,0 +1,563 @@
+package model;
+
+import java.util.Arrays;
+
+// Where the player, or anything that moves like it, can get to on a level. Nodes are walkable spans: runs of at most
+// SPAN_COLUMNS grid columns on one row that have ground below and room for the player above. Edges are the ways from
+// one span to another, found once by simulating runs off ledges and jumps from the ends of every span with the Players
+// own movement constants, so path finding afterwards is a graph search instead of a physics simulation.
+// The graph never changes once built and is stored in primitive arrays, one entry per node or edge. It can be shared
+// between threads, each thread searching it with its own NavigationQuery.
+// Approximations: walking time ignores acceleration and each span keeps one edge of each type to every other span.
+public class NavigationGraph {
+    private static final int SPAN_COLUMNS = 8;  // Long floors are split up, so paths know roughly where they land
+    private static final int MAX_SIMULATED_TICKS = 300;
+    private static final int MAX_GROUNDED_TICKS = 60;  // A run off a ledge that is still on the ground by now hit a wall
+    private static final int[] SWITCH_TICKS = {0, 12, 24};  // When jumps turn around in the air, 0 is never
+    private static final int TAKEOFF_COLUMNS = 2;  // Jumps also leave a column early, to clear spikes at the edge
+
+    private static final byte EMPTY = 0;
+    private static final byte GROUND = 1;
+    private static final byte HAZARD = 2;
+
+    private static final NavigationEdgeType[] EDGE_TYPES = NavigationEdgeType.values();
+
+    private final int tileSize;
+    private final int editCount;  // Edit count of the level geometry the graph was built from
+    private final float ticksPerColumn;  // Time to walk one column at full speed
+
+    // Nodes, ordered by row and then by column
+    private final int[] nodeRows;
+    private final int[] nodeStartColumns;
+    private final int[] nodeEndColumns;  // Inclusive
+
+    // Edges, the edges leaving node n are edgeOffsets[n] up to edgeOffsets[n + 1]
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final byte[] edgeTypes;  // NavigationEdgeType ordinals
+    private final float[] edgeCosts;  // Ticks from the takeoff column to landing
+    private final int[] takeoffColumns;
+    private final int[] landingColumns;
+
+    // How to follow an edge: leave the takeoff position at the takeoff speed holding the direction, and hold the
+    // opposite direction from the switch tick on, or never if it is 0
+    private final float[] takeoffXs;  // World position of the players left side
+    private final float[] takeoffSpeeds;
+    private final byte[] directions;
+    private final short[] switchTicks;
+
+    private NavigationGraph(Builder builder) {
+        this.tileSize = builder.tileSize;
+        this.editCount = builder.editCount;
+        this.ticksPerColumn = (float) (tileSize / Player.MAX_HORIZONTAL_SPEED);
+        this.nodeRows = Arrays.copyOf(builder.nodeRows, builder.nodeCount);
+        this.nodeStartColumns = Arrays.copyOf(builder.nodeStartColumns, builder.nodeCount);
+        this.nodeEndColumns = Arrays.copyOf(builder.nodeEndColumns, builder.nodeCount);
+        this.edgeOffsets = builder.edgeOffsets;
+        this.edgeTargets = Arrays.copyOf(builder.edgeTargets, builder.edgeCount);
+        this.edgeTypes = Arrays.copyOf(builder.edgeTypes, builder.edgeCount);
+        this.edgeCosts = Arrays.copyOf(builder.edgeCosts, builder.edgeCount);
+        this.takeoffColumns = Arrays.copyOf(builder.takeoffColumns, builder.edgeCount);
+        this.landingColumns = Arrays.copyOf(builder.landingColumns, builder.edgeCount);
+        this.takeoffXs = Arrays.copyOf(builder.takeoffXs, builder.edgeCount);
+        this.takeoffSpeeds = Arrays.copyOf(builder.takeoffSpeeds, builder.edgeCount);
+        this.directions = Arrays.copyOf(builder.directions, builder.edgeCount);
+        this.switchTicks = Arrays.copyOf(builder.switchTicks, builder.edgeCount);
+    }
+
+    // The graph of a level, built the first time it is asked for and again whenever its geometry was edited since
+    // The graph is kept on the LevelGeometry, so every TileMap sharing a geometry shares its graph too, and a TileMap
+    // that gets edited builds a new one for the copy it edits.
+    // Note: must be called by the thread that changes the tile map, the game thread while a level is played
+    public static NavigationGraph forLevel(TileMap tileMap) {
+        LevelGeometry geometry = tileMap.getGeometry();
+        NavigationGraph graph = geometry.getNavigationGraph();
+        if (graph != null && graph.editCount == geometry.getEditCount()) return graph;
+        graph = build(tileMap);
+        geometry.setNavigationGraph(graph);
+        return graph;
+    }
+
+    // Builds a graph without caching it
+    public static NavigationGraph build(TileMap tileMap) {
+        return new Builder(tileMap).build();
+    }
+
+    // Returns the node whose span holds the grid position, or -1 if the player cannot stand there
+    public int findNode(int column, int row) {
+        return findNode(nodeRows, nodeStartColumns, nodeEndColumns, nodeRows.length, column, row);
+    }
+
+    // Binary search over nodes ordered by row and then by column
+    private static int findNode(int[] nodeRows, int[] nodeStartColumns, int[] nodeEndColumns, int nodeCount,
+                                int column, int row) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (nodeRows[middle] < row || (nodeRows[middle] == row && nodeEndColumns[middle] < column)) {
+                low = middle + 1;
+            } else if (nodeRows[middle] > row || nodeStartColumns[middle] > column) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the first node at or below the grid position in its column, for positions in the air, or -1 if nothing is
+    public int findNodeBelow(int column, int row) {
+        if (nodeRows.length == 0) return -1;
+        for (int searchRow = row; searchRow <= nodeRows[nodeRows.length - 1]; searchRow++) {
+            int node = findNode(column, searchRow);
+            if (node >= 0) return node;
+        }
+        return -1;
+    }
+
+    public int getNodeCount() {
+        return nodeRows.length;
+    }
+
+    public int getNodeRow(int node) {
+        return nodeRows[node];
+    }
+
+    public int getNodeStartColumn(int node) {
+        return nodeStartColumns[node];
+    }
+
+    public int getNodeEndColumn(int node) {
+        return nodeEndColumns[node];
+    }
+
+    public int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    public int getFirstEdge(int node) {
+        return edgeOffsets[node];
+    }
+
+    // One past the last edge of the node
+    public int getEdgeEnd(int node) {
+        return edgeOffsets[node + 1];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public NavigationEdgeType getEdgeType(int edge) {
+        return EDGE_TYPES[edgeTypes[edge]];
+    }
+
+    public float getEdgeCost(int edge) {
+        return edgeCosts[edge];
+    }
+
+    public int getTakeoffColumn(int edge) {
+        return takeoffColumns[edge];
+    }
+
+    public int getLandingColumn(int edge) {
+        return landingColumns[edge];
+    }
+
+    // Where the players left side is when it leaves the ground, inside or at the edge of the takeoff column
+    public float getTakeoffX(int edge) {
+        return takeoffXs[edge];
+    }
+
+    // Horizontal velocity to leave the takeoff position with, negative is left
+    public float getTakeoffSpeed(int edge) {
+        return takeoffSpeeds[edge];
+    }
+
+    // Direction to hold from the takeoff on, -1 left, 0 nothing or 1 right
+    public int getDirection(int edge) {
+        return directions[edge];
+    }
+
+    // Tick of the edge the held direction flips on, 0 if it never does
+    public int getSwitchTick(int edge) {
+        return switchTicks[edge];
+    }
+
+    // Ticks it takes to walk between two columns of the same span
+    public float walkCost(int fromColumn, int toColumn) {
+        return Math.abs(toColumn - fromColumn) * ticksPerColumn;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    // Does the actual building, holds the grid of the level and the growing node and edge arrays while it works
+    private static class Builder {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final TileMap tileMap;
+        private final int tileSize;
+        private final int editCount;
+        private final int clearanceRows;  // Rows the standing player reaches into
+
+        // Ground and spikes of the level, one byte per tile, with a border of empty tiles around it
+        private final byte[] grid;
+        private final int gridColumn;  // Column and row of the first grid tile
+        private final int gridRow;
+        private final int gridWidth;
+        private final int gridHeight;
+
+        private int nodeCount = 0;
+        private int[] nodeRows = new int[INITIAL_CAPACITY];
+        private int[] nodeStartColumns = new int[INITIAL_CAPACITY];
+        private int[] nodeEndColumns = new int[INITIAL_CAPACITY];
+        private int[] segmentStartColumns = new int[INITIAL_CAPACITY];  // Whole floor the span is part of
+        private int[] segmentEndColumns = new int[INITIAL_CAPACITY];
+
+        private int[] edgeOffsets;
+        private int nodeFirstEdge = 0;  // First edge of the node whose edges are being found
+        private int edgeCount = 0;
+        private int[] edgeTargets = new int[INITIAL_CAPACITY];
+        private byte[] edgeTypes = new byte[INITIAL_CAPACITY];
+        private float[] edgeCosts = new float[INITIAL_CAPACITY];
+        private int[] takeoffColumns = new int[INITIAL_CAPACITY];
+        private int[] landingColumns = new int[INITIAL_CAPACITY];
+        private float[] takeoffXs = new float[INITIAL_CAPACITY];
+        private float[] takeoffSpeeds = new float[INITIAL_CAPACITY];
+        private byte[] directions = new byte[INITIAL_CAPACITY];
+        private short[] switchTicks = new short[INITIAL_CAPACITY];
+
+        // Where the last simulate() call landed
+        private int landedNode;
+        private int landedColumn;
+        private int simulatedTicks;
+
+        private Builder(TileMap tileMap) {
+            this.tileMap = tileMap;
+            this.tileSize = tileMap.getTileSize();
+            this.editCount = tileMap.getGeometry().getEditCount();
+            this.clearanceRows = (Player.PLAYER_HEIGHT + tileSize - 1) / tileSize;
+
+            TileChanges tiles = tileMap.exportTiles();
+            int minColumn = Integer.MAX_VALUE;
+            int maxColumn = Integer.MIN_VALUE;
+            int minRow = Integer.MAX_VALUE;
+            int maxRow = Integer.MIN_VALUE;
+            for (int i = 0; i < tiles.size(); i++) {
+                minColumn = Math.min(minColumn, tiles.getColumn(i));
+                maxColumn = Math.max(maxColumn, tiles.getColumn(i));
+                minRow = Math.min(minRow, tiles.getRow(i));
+                maxRow = Math.max(maxRow, tiles.getRow(i));
+            }
+            if (tiles.size() == 0) {
+                minColumn = maxColumn = minRow = maxRow = 0;
+            }
+            // Room above the highest tile for the player to stand on it
+            gridColumn = minColumn - 1;
+            gridRow = minRow - clearanceRows - 1;
+            gridWidth = maxColumn - minColumn + 3;
+            gridHeight = maxRow - minRow + clearanceRows + 3;
+            if ((long) gridWidth * gridHeight > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Level is too large to navigate: " + gridWidth + "x" + gridHeight);
+            }
+            grid = new byte[gridWidth * gridHeight];
+            for (int i = 0; i < tiles.size(); i++) {
+                byte cell = switch (tiles.getType(i)) {
+                    case GROUND -> GROUND;
+                    case HAZARD -> HAZARD;
+                    case null, default -> EMPTY;  // The player passes through goals and collectibles
+                };
+                grid[(tiles.getRow(i) - gridRow) * gridWidth + tiles.getColumn(i) - gridColumn] = cell;
+            }
+        }
+
+        private NavigationGraph build() {
+            findSpans();
+            edgeOffsets = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                edgeOffsets[node] = edgeCount;
+                nodeFirstEdge = edgeCount;
+                addRunEdges(node);
+                addLedgeEdges(node, true);
+                addLedgeEdges(node, false);
+            }
+            edgeOffsets[nodeCount] = edgeCount;
+            return new NavigationGraph(this);
+        }
+
+        private byte cell(int column, int row) {
+            int x = column - gridColumn;
+            int y = row - gridRow;
+            if (x < 0 || y < 0 || x >= gridWidth || y >= gridHeight) return EMPTY;
+            return grid[y * gridWidth + x];
+        }
+
+        // Ground below and enough free tiles above for the player to stand there
+        private boolean isStandable(int column, int row) {
+            if (cell(column, row + 1) != GROUND) return false;
+            for (int clearance = 0; clearance < clearanceRows; clearance++) {
+                if (cell(column, row - clearance) != EMPTY) return false;
+            }
+            return true;
+        }
+
+        private void findSpans() {
+            for (int row = gridRow; row < gridRow + gridHeight; row++) {
+                int column = gridColumn;
+                while (column < gridColumn + gridWidth) {
+                    if (!isStandable(column, row)) {
+                        column++;
+                        continue;
+                    }
+                    int segmentStart = column;
+                    while (isStandable(column, row)) column++;
+                    int segmentEnd = column - 1;
+                    for (int start = segmentStart; start <= segmentEnd; start += SPAN_COLUMNS) {
+                        addNode(row, start, Math.min(start + SPAN_COLUMNS - 1, segmentEnd), segmentStart, segmentEnd);
+                    }
+                }
+            }
+        }
+
+        private void addNode(int row, int startColumn, int endColumn, int segmentStart, int segmentEnd) {
+            if (nodeCount == nodeRows.length) {
+                int capacity = nodeCount * 2;
+                nodeRows = Arrays.copyOf(nodeRows, capacity);
+                nodeStartColumns = Arrays.copyOf(nodeStartColumns, capacity);
+                nodeEndColumns = Arrays.copyOf(nodeEndColumns, capacity);
+                segmentStartColumns = Arrays.copyOf(segmentStartColumns, capacity);
+                segmentEndColumns = Arrays.copyOf(segmentEndColumns, capacity);
+            }
+            nodeRows[nodeCount] = row;
+            nodeStartColumns[nodeCount] = startColumn;
+            nodeEndColumns[nodeCount] = endColumn;
+            segmentStartColumns[nodeCount] = segmentStart;
+            segmentEndColumns[nodeCount] = segmentEnd;
+            nodeCount++;
+        }
+
+        // Spans of the same floor are next to each other in node order
+        private void addRunEdges(int node) {
+            float ticksPerColumn = (float) (tileSize / Player.MAX_HORIZONTAL_SPEED);
+            if (node > 0 && nodeRows[node - 1] == nodeRows[node] && nodeEndColumns[node - 1] + 1 == nodeStartColumns[node]) {
+                addEdge(node - 1, NavigationEdgeType.RUN, ticksPerColumn, nodeStartColumns[node], nodeEndColumns[node - 1],
+                        nodeStartColumns[node] * tileSize, -Player.MAX_HORIZONTAL_SPEED, -1, 0);
+            }
+            if (node + 1 < nodeCount && nodeRows[node + 1] == nodeRows[node] && nodeEndColumns[node] + 1 == nodeStartColumns[node + 1]) {
+                addEdge(node + 1, NavigationEdgeType.RUN, ticksPerColumn, nodeEndColumns[node], nodeStartColumns[node + 1],
+                        (nodeEndColumns[node] + 1) * tileSize - Player.PLAYER_WIDTH, Player.MAX_HORIZONTAL_SPEED, 1, 0);
+            }
+        }
+
+        // Simulates running off and jumping from one end of the span, with the fastest run up the floor allows. Jumps
+        // leave from the end column, from columns before it to clear spikes at the edge and, at the end of a floor, from
+        // as far over the edge as the player can stand, which is what squeezes it through gaps next to the floor.
+        private void addLedgeEdges(int node, boolean rightEnd) {
+            int direction = rightEnd ? 1 : -1;
+            int endColumn = rightEnd ? nodeEndColumns[node] : nodeStartColumns[node];
+            int spanColumns = nodeEndColumns[node] - nodeStartColumns[node] + 1;
+            boolean floorEnd = endColumn == (rightEnd ? segmentEndColumns[node] : segmentStartColumns[node]);
+            double overhangX = rightEnd ? (endColumn + 1) * tileSize - 1 : endColumn * tileSize - Player.PLAYER_WIDTH + 1;
+            if (floorEnd && !overlapsGround(overhangX, (nodeRows[node] + 1) * tileSize - Player.PLAYER_HEIGHT)) {
+                addTakeoffEdges(node, endColumn, overhangX, direction);
+            }
+            for (int offset = 0; offset < Math.min(TAKEOFF_COLUMNS, spanColumns); offset++) {
+                int column = endColumn - offset * direction;
+                double flushX = rightEnd ? (column + 1) * tileSize - Player.PLAYER_WIDTH : column * tileSize;
+                addTakeoffEdges(node, column, flushX, direction);
+            }
+        }
+
+        private void addTakeoffEdges(int node, int column, double x, int direction) {
+            double y = (nodeRows[node] + 1) * tileSize - Player.PLAYER_HEIGHT;
+            // Distance from the other end of the floor, with the player standing flush against it
+            double runUp = direction > 0
+                    ? x - segmentStartColumns[node] * tileSize
+                    : (segmentEndColumns[node] + 1) * tileSize - Player.PLAYER_WIDTH - x;
+            double runUpSpeed = Math.min(Player.MAX_HORIZONTAL_SPEED, Math.sqrt(2 * Player.ACCELERATION * Math.max(runUp, 0)));
+
+            // Only the real ends of a floor can be run off
+            if (column == (direction > 0 ? segmentEndColumns[node] : segmentStartColumns[node])) {
+                simulateEdge(node, NavigationEdgeType.FALL, column, x, y, runUpSpeed * direction, direction, 0);
+                simulateEdge(node, NavigationEdgeType.FALL, column, x, y, runUpSpeed * direction, 0, 0);
+                simulateEdge(node, NavigationEdgeType.FALL, column, x, y, 0, direction, 0);  // Stepping off slowly
+                for (int switchTick : SWITCH_TICKS) {
+                    if (switchTick == 0) continue;
+                    simulateEdge(node, NavigationEdgeType.FALL, column, x, y, runUpSpeed * direction, direction, switchTick);
+                }
+            }
+            simulateEdge(node, NavigationEdgeType.JUMP, column, x, y, 0, 0, 0);
+            simulateEdge(node, NavigationEdgeType.JUMP, column, x, y, runUpSpeed * direction, 0, 0);
+            // A jump that keeps going over shoots anything close, so every held direction also turns around at some point
+            for (int switchTick : SWITCH_TICKS) {
+                simulateEdge(node, NavigationEdgeType.JUMP, column, x, y, 0, direction, switchTick);
+                simulateEdge(node, NavigationEdgeType.JUMP, column, x, y, 0, -direction, switchTick);
+                simulateEdge(node, NavigationEdgeType.JUMP, column, x, y, runUpSpeed * direction, direction, switchTick);
+            }
+        }
+
+        private void simulateEdge(int node, NavigationEdgeType type, int takeoffColumn, double x, double y,
+                                  double velocityX, int direction, int switchTick) {
+            if (!simulate(x, y, velocityX, direction, type == NavigationEdgeType.JUMP, switchTick)) return;
+            if (landedNode == node) return;
+            addEdge(landedNode, type, simulatedTicks, takeoffColumn, landedColumn, x, velocityX, direction, switchTick);
+        }
+
+        // Adds an edge to the node whose edges are being found, keeps only the fastest edge of each type between two spans
+        private void addEdge(int target, NavigationEdgeType type, float cost, int takeoffColumn, int landingColumn,
+                             double takeoffX, double takeoffSpeed, int direction, int switchTick) {
+            for (int edge = nodeFirstEdge; edge < edgeCount; edge++) {
+                if (edgeTargets[edge] != target || edgeTypes[edge] != type.ordinal()) continue;
+                if (cost < edgeCosts[edge]) {
+                    edgeCosts[edge] = cost;
+                    takeoffColumns[edge] = takeoffColumn;
+                    landingColumns[edge] = landingColumn;
+                    takeoffXs[edge] = (float) takeoffX;
+                    takeoffSpeeds[edge] = (float) takeoffSpeed;
+                    directions[edge] = (byte) direction;
+                    switchTicks[edge] = (short) switchTick;
+                }
+                return;
+            }
+            if (edgeCount == edgeTargets.length) {
+                int capacity = edgeCount * 2;
+                edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+                edgeTypes = Arrays.copyOf(edgeTypes, capacity);
+                edgeCosts = Arrays.copyOf(edgeCosts, capacity);
+                takeoffColumns = Arrays.copyOf(takeoffColumns, capacity);
+                landingColumns = Arrays.copyOf(landingColumns, capacity);
+                takeoffXs = Arrays.copyOf(takeoffXs, capacity);
+                takeoffSpeeds = Arrays.copyOf(takeoffSpeeds, capacity);
+                directions = Arrays.copyOf(directions, capacity);
+                switchTicks = Arrays.copyOf(switchTicks, capacity);
+            }
+            edgeTargets[edgeCount] = target;
+            edgeTypes[edgeCount] = (byte) type.ordinal();
+            edgeCosts[edgeCount] = cost;
+            takeoffColumns[edgeCount] = takeoffColumn;
+            landingColumns[edgeCount] = landingColumn;
+            takeoffXs[edgeCount] = (float) takeoffX;
+            takeoffSpeeds[edgeCount] = (float) takeoffSpeed;
+            directions[edgeCount] = (byte) direction;
+            switchTicks[edgeCount] = (short) switchTick;
+            edgeCount++;
+        }
+
+        // Moves the player the way Player.move() does, starting on the ground and holding one direction, or turning around
+        // at the switch tick, until it lands on a span. Returns false if it touches spikes, falls out of the level or
+        // never lands.
+        private boolean simulate(double x, double y, double velocityX, int direction, boolean jump, int switchTick) {
+            double velocityY = 0;
+            boolean airborne = false;
+            for (int tick = 1; tick <= MAX_SIMULATED_TICKS; tick++) {
+                if (tick == switchTick) direction = -direction;
+                // Player.handleHorizontalVelocity() and handleVerticalVelocity()
+                if (direction != 0) {
+                    velocityX += Player.ACCELERATION * direction;
+                } else if (velocityX < 0) {
+                    velocityX = Math.min(velocityX + Player.ACCELERATION, 0);
+                } else if (velocityX > 0) {
+                    velocityX = Math.max(velocityX - Player.ACCELERATION, 0);
+                }
+                velocityY += Player.GRAVITY;
+                if (jump && tick == 1) velocityY += Player.JUMP_VELOCITY;
+                velocityX = Math.max(-Player.MAX_HORIZONTAL_SPEED, Math.min(velocityX, Player.MAX_HORIZONTAL_SPEED));
+                velocityY = Math.max(-Player.MAX_VERTICAL_SPEED, Math.min(velocityY, Player.MAX_VERTICAL_SPEED));
+
+                // Player.moveAndCollide(), one axis at a time
+                if (velocityX != 0) {
+                    x += velocityX;
+                    if (overlapsGround(x, y)) {
+                        x = velocityX > 0
+                                ? (ceilDiv(x + Player.PLAYER_WIDTH) - 1) * (double) tileSize - Player.PLAYER_WIDTH
+                                : (Math.floor(x / tileSize) + 1) * tileSize;
+                        velocityX = 0;
+                    }
+                }
+                boolean landed = false;
+                if (velocityY != 0) {
+                    y += velocityY;
+                    if (overlapsGround(x, y)) {
+                        if (velocityY > 0) {
+                            y = (ceilDiv(y + Player.PLAYER_HEIGHT) - 1) * (double) tileSize - Player.PLAYER_HEIGHT;
+                            landed = true;
+                        } else {
+                            y = (Math.floor(y / tileSize) + 1) * tileSize;
+                        }
+                        velocityY = 0;
+                    }
+                }
+                if (touchesHazard(x, y)) return false;
+
+                if (!landed) {
+                    airborne = true;
+                    if (y > (gridRow + gridHeight) * tileSize) return false;  // Fell out of the level
+                } else if (airborne) {
+                    simulatedTicks = tick;
+                    return findLanding(x, y);
+                } else if (tick > MAX_GROUNDED_TICKS) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // The span under the center of the player, or under whichever of its sides is on the ground
+        private boolean findLanding(double x, double y) {
+            int row = (int) Math.round((y + Player.PLAYER_HEIGHT) / tileSize) - 1;
+            int[] columns = {
+                    (int) Math.floor((x + Player.PLAYER_WIDTH / 2.0) / tileSize),
+                    (int) Math.floor(x / tileSize),
+                    ceilDiv(x + Player.PLAYER_WIDTH) - 1
+            };
+            for (int column : columns) {
+                int node = findNode(nodeRows, nodeStartColumns, nodeEndColumns, nodeCount, column, row);
+                if (node < 0) continue;
+                landedNode = node;
+                landedColumn = column;
+                return true;
+            }
+            return false;
+        }
+
+        // Whether the player box at the position overlaps ground, edges touching do not count
+        private boolean overlapsGround(double x, double y) {
+            int firstColumn = (int) Math.floor(x / tileSize);
+            int lastColumn = ceilDiv(x + Player.PLAYER_WIDTH) - 1;
+            int firstRow = (int) Math.floor(y / tileSize);
+            int lastRow = ceilDiv(y + Player.PLAYER_HEIGHT) - 1;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    if (cell(column, row) == GROUND) return true;
+                }
+            }
+            return false;
+        }
+
+        // Spikes only hurt inside their hit box, which is smaller than their tile
+        private boolean touchesHazard(double x, double y) {
+            int firstColumn = (int) Math.floor(x / tileSize);
+            int lastColumn = ceilDiv(x + Player.PLAYER_WIDTH) - 1;
+            int firstRow = (int) Math.floor(y / tileSize);
+            int lastRow = ceilDiv(y + Player.PLAYER_HEIGHT) - 1;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    if (cell(column, row) != HAZARD) continue;
+                    RectangleBox hitBox = tileMap.getTile(column, row).getHitBox();
+                    if (x < hitBox.getRightSide() && x + Player.PLAYER_WIDTH > hitBox.getLeftSide()
+                            && y < hitBox.getBottom() && y + Player.PLAYER_HEIGHT > hitBox.getTopSide()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private int ceilDiv(double position) {
+            return (int) Math.ceil(position / tileSize);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package model;
+
+import java.util.Arrays;
+
+// A* search over a NavigationGraph. Holds all the scratch arrays a search needs, sized to the graph once, so searching
+// does not allocate. Not thread safe, every thread searching a graph needs its own query.
+// Costs are in ticks. Each span remembers the column it was first reached at, so the path found is exact for the
+// columns it uses but can miss a slightly faster one that enters the same span at another column.
+public class NavigationQuery {
+    private final NavigationGraph graph;
+
+    // Per node search state, only valid when the nodes stamp matches the current search
+    private final int[] stamps;
+    private final boolean[] closed;
+    private final float[] costs;
+    private final int[] arrivalColumns;
+    private final int[] parentEdges;
+    private final int[] parentNodes;
+    private int stamp = 0;
+
+    // Binary heap of open nodes ordered by cost plus estimate
+    private final int[] heap;
+    private final float[] heapPriorities;  // By node
+    private final int[] heapPositions;  // By node
+    private int heapSize = 0;
+
+    // The last path found, as edges from the start
+    private final int[] pathEdges;
+    private int pathLength = 0;
+    private float pathCost = 0;
+
+    public NavigationQuery(NavigationGraph graph) {
+        this.graph = graph;
+        int nodeCount = graph.getNodeCount();
+        stamps = new int[nodeCount];
+        closed = new boolean[nodeCount];
+        costs = new float[nodeCount];
+        arrivalColumns = new int[nodeCount];
+        parentEdges = new int[nodeCount];
+        parentNodes = new int[nodeCount];
+        heap = new int[nodeCount];
+        heapPriorities = new float[nodeCount];
+        heapPositions = new int[nodeCount];
+        pathEdges = new int[nodeCount];
+    }
+
+    // Finds the fastest way from where the player stands to a grid position, both given as the tile the players feet
+    // are in. Returns false if either position is not on a span or the goal cannot be reached.
+    public boolean findPath(int startColumn, int startRow, int goalColumn, int goalRow) {
+        pathLength = 0;
+        pathCost = 0;
+        int start = graph.findNode(startColumn, startRow);
+        int goal = graph.findNode(goalColumn, goalRow);
+        if (start < 0 || goal < 0) return false;
+
+        nextStamp();
+        heapSize = 0;
+        open(start, 0, startColumn, -1, -1, goalColumn);
+        while (heapSize > 0) {
+            int node = poll();
+            closed[node] = true;
+            if (node == goal) {
+                pathCost = costs[node] + graph.walkCost(arrivalColumns[node], goalColumn);
+                buildPath(start, goal);
+                return true;
+            }
+            for (int edge = graph.getFirstEdge(node); edge < graph.getEdgeEnd(node); edge++) {
+                int target = graph.getEdgeTarget(edge);
+                if (stamps[target] == stamp && closed[target]) continue;
+                float cost = costs[node] + graph.walkCost(arrivalColumns[node], graph.getTakeoffColumn(edge))
+                        + graph.getEdgeCost(edge);
+                if (stamps[target] == stamp && cost >= costs[target]) continue;
+                open(target, cost, graph.getLandingColumn(edge), edge, node, goalColumn);
+            }
+        }
+        return false;
+    }
+
+    // Number of edges in the last path found
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    public int getPathEdge(int index) {
+        return pathEdges[index];
+    }
+
+    // Ticks the last path takes, walking to the goal column included
+    public float getPathCost() {
+        return pathCost;
+    }
+
+    public NavigationGraph getGraph() {
+        return graph;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {  // Wrapped around after billions of searches, forget every old stamp
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    // Adds a node to the heap or lowers its cost if it is already in it
+    private void open(int node, float cost, int arrivalColumn, int edge, int parent, int goalColumn) {
+        boolean queued = stamps[node] == stamp;
+        stamps[node] = stamp;
+        closed[node] = false;
+        costs[node] = cost;
+        arrivalColumns[node] = arrivalColumn;
+        parentEdges[node] = edge;
+        parentNodes[node] = parent;
+        // Nothing moves faster than the players top speed, so the walking time to the goal column never overestimates
+        heapPriorities[node] = cost + graph.walkCost(arrivalColumn, goalColumn);
+        if (!queued) {
+            heap[heapSize] = node;
+            heapPositions[node] = heapSize;
+            heapSize++;
+        }
+        siftUp(heapPositions[node]);
+        siftDown(heapPositions[node]);  // A new arrival column can also raise the estimate
+    }
+
+    private int poll() {
+        int node = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPositions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return node;
+    }
+
+    private void siftUp(int position) {
+        int node = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heapPriorities[heap[parent]] <= heapPriorities[node]) break;
+            heap[position] = heap[parent];
+            heapPositions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = node;
+        heapPositions[node] = position;
+    }
+
+    private void siftDown(int position) {
+        int node = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapPriorities[heap[child + 1]] < heapPriorities[heap[child]]) child++;
+            if (heapPriorities[heap[child]] >= heapPriorities[node]) break;
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = node;
+        heapPositions[node] = position;
+    }
+
+    // Walks the parents back from the goal, then flips them into start to goal order
+    private void buildPath(int start, int goal) {
+        for (int node = goal; node != start; node = parentNodes[node]) {
+            pathEdges[pathLength++] = parentEdges[node];
+        }
+        for (int i = 0; i < pathLength / 2; i++) {
+            int edge = pathEdges[i];
+            pathEdges[i] = pathEdges[pathLength - 1 - i];
+            pathEdges[pathLength - 1 - i] = edge;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package model;
+
+import java.util.Random;
+
+// Fixed size pool of particles stored in primitive arrays, used for small visual effects like collectible pickups
+// The arrays are allocated once and used as a ring buffer: emitting more particles than the capacity overwrites the
+// oldest ones, so an emitter never grows and update() always costs the same no matter how many particles are alive.
+// NOTE: Updated by the game thread and read by the rendering thread without locking, a particle drawn mid update is
+// at worst one frame off, which is fine for effects.
+public class ParticleEmitter {
+
+    private final int capacity;
+    private final int lifetime;  // In frames
+    private final double speed;
+    private final double gravity;
+    private final int color;  // 0xRRGGBB, turned into a Color by the view
+
+    private final double[] x, y;
+    private final double[] velocityX, velocityY;
+    private final int[] life;  // Frames left to live, 0 means the slot is free
+    private int nextIndex = 0;
+
+    private final Random random = new Random();
+
+    public ParticleEmitter(int capacity, int lifetime, double speed, double gravity, int color) {
+        this.capacity = capacity;
+        this.lifetime = lifetime;
+        this.speed = speed;
+        this.gravity = gravity;
+        this.color = color;
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.velocityX = new double[capacity];
+        this.velocityY = new double[capacity];
+        this.life = new int[capacity];
+    }
+
+    // Spawns a burst of particles flying out in random directions from the given world position
+    public void emit(int count, double originX, double originY) {
+        for (int i = 0; i < count; i++) {
+            double angle = random.nextDouble() * Math.PI * 2;
+            double particleSpeed = speed * (0.5 + random.nextDouble() * 0.5);
+            x[nextIndex] = originX;
+            y[nextIndex] = originY;
+            velocityX[nextIndex] = Math.cos(angle) * particleSpeed;
+            velocityY[nextIndex] = Math.sin(angle) * particleSpeed;
+            life[nextIndex] = lifetime;
+            nextIndex = (nextIndex + 1) % capacity;
+        }
+    }
+
+    // Moves every live particle one frame forward
+    public void update() {
+        for (int i = 0; i < capacity; i++) {
+            if (life[i] == 0) continue;
+            velocityY[i] += gravity;
+            x[i] += velocityX[i];
+            y[i] += velocityY[i];
+            life[i]--;
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < capacity; i++) {
+            life[i] = 0;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getLifetime() {
+        return lifetime;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public boolean isAlive(int index) {
+        return life[index] > 0;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public int getLife(int index) {
+        return life[index];
+    }
+}
@@ -0,0 +1,63 @@
+package model;
+
+// Owns the particle emitters for the games effects and spawns bursts in response to game events
+// Updated once per frame by the GameManager and drawn by the GamePanel, which only needs getEmitters()
+// A disabled system has no emitters, so games nobody watches do not pay for the particle pools.
+public class ParticleSystem {
+
+    // Collectible pickup sparkle
+    private static final int COLLECTIBLE_CAPACITY = 512;
+    private static final int COLLECTIBLE_LIFETIME = 30;
+    private static final int COLLECTIBLE_BURST = 24;
+    private static final double COLLECTIBLE_SPEED = 2.5;
+    private static final double COLLECTIBLE_GRAVITY = 0.05;
+    private static final int COLLECTIBLE_COLOR = 0xFFD700;
+
+    // Player death burst
+    private static final int DEATH_CAPACITY = 1024;
+    private static final int DEATH_LIFETIME = 60;
+    private static final int DEATH_BURST = 64;
+    private static final double DEATH_SPEED = 4;
+    private static final double DEATH_GRAVITY = 0.2;
+    private static final int DEATH_COLOR = 0xD02020;
+
+    private final ParticleEmitter collectibleEmitter;
+    private final ParticleEmitter deathEmitter;
+    private final ParticleEmitter[] emitters;
+
+    public ParticleSystem() {
+        this(true);
+    }
+
+    public ParticleSystem(boolean enabled) {
+        collectibleEmitter = enabled ? new ParticleEmitter(
+                COLLECTIBLE_CAPACITY, COLLECTIBLE_LIFETIME, COLLECTIBLE_SPEED, COLLECTIBLE_GRAVITY, COLLECTIBLE_COLOR) : null;
+        deathEmitter = enabled ? new ParticleEmitter(
+                DEATH_CAPACITY, DEATH_LIFETIME, DEATH_SPEED, DEATH_GRAVITY, DEATH_COLOR) : null;
+        emitters = enabled ? new ParticleEmitter[]{collectibleEmitter, deathEmitter} : new ParticleEmitter[0];
+    }
+
+    public void emitCollectiblePickup(double x, double y) {
+        if (collectibleEmitter != null) collectibleEmitter.emit(COLLECTIBLE_BURST, x, y);
+    }
+
+    public void emitPlayerDeath(double x, double y) {
+        if (deathEmitter != null) deathEmitter.emit(DEATH_BURST, x, y);
+    }
+
+    public void update() {
+        for (ParticleEmitter emitter : emitters) {
+            emitter.update();
+        }
+    }
+
+    public void clear() {
+        for (ParticleEmitter emitter : emitters) {
+            emitter.clear();
+        }
+    }
+
+    public ParticleEmitter[] getEmitters() {
+        return emitters;
+    }
+}
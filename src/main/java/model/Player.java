@@ -8,21 +8,26 @@ import util.Vector2D;
 // Dependency Injection with the TileMap is used frequently due to how closely these 2 classes need to work together
 public class Player extends MovingObject implements InputListener {
 
-    private static final double GRAVITY = 0.3;  // Constantly applied to player at all times
-    private static final double ACCELERATION = 0.3;
-    private static final double MAX_HORIZONTAL_SPEED = 7;
-    private static final double MAX_VERTICAL_SPEED = 15;
-    private static final double JUMP_VELOCITY = -8;
+    // Movement constants, package private so the NavigationGraph plans with the same physics. The top speed is public,
+    // control.LevelSolver estimates with it as well.
+    static final double GRAVITY = 0.3;  // Constantly applied to player at all times
+    static final double ACCELERATION = 0.3;
+    public static final double MAX_HORIZONTAL_SPEED = 7;
+    static final double MAX_VERTICAL_SPEED = 15;
+    static final double JUMP_VELOCITY = -8;
 
-    private static final int PLAYER_WIDTH = 14 * 2;
-    private static final int PLAYER_HEIGHT = 18 * 2;
+    static final int PLAYER_WIDTH = 14 * 2;
+    static final int PLAYER_HEIGHT = 18 * 2;
 
-    private static final TileType GROUND_TILES = TileType.GROUND;
-    private static final TileType GOAL_TILES = TileType.GOAL;
-    private static final TileType HAZARD_TILES = TileType.HAZARD;
+    // Amount of values saveState() writes
+    public static final int STATE_SIZE = 7;
 
-    // Observer that sends events to the GameManager to process
-    private final EventObserver observer = new EventObserver();
+    // Order that newly overlapped trigger tiles are handled in when several are entered on the same frame
+    private static final TileType[] TRIGGER_ORDER = {TileType.GOAL, TileType.COLLECTIBLE, TileType.HAZARD};
+    private static final int MAX_TRIGGERS = 16;  // More than the 15 tiles a trigger query can return
+
+    // Events are queued here and handled by the GameManager once the physics step is over
+    private final EventBus eventBus;
 
     private boolean onGround = false;
 
@@ -32,18 +37,30 @@ public class Player extends MovingObject implements InputListener {
     private boolean disabled = false;
 
     // Controls
-    private Vector2D moveDirection = new Vector2D();
+    private final Vector2D moveDirection = new Vector2D();
     private boolean jumpPressed = false;
 
-    public Player(EventListener eventListener) {
+    // Scratch vector for hit box centers, reused so the physics step does not allocate
+    private final Vector2D hitBoxCenter = new Vector2D();
+
+    // Trigger tiles overlapped this frame and last frame, swapped every frame to find which ones were entered
+    private TileMap.Tile[] currentTriggers = new TileMap.Tile[MAX_TRIGGERS];
+    private TileMap.Tile[] previousTriggers = new TileMap.Tile[MAX_TRIGGERS];
+    private int currentTriggerCount = 0;
+    private int previousTriggerCount = 0;
+
+    // Center of the trigger tile the player entered, sent along with its event
+    private final Vector2D triggerCenter = new Vector2D();
+
+    public Player(EventBus eventBus) {
         initializePlayerDefaults();
-        observer.addListener(eventListener);
+        this.eventBus = eventBus;
     }
 
-    public Player(EventListener eventListener, Vector2D worldPosition) {
+    public Player(EventBus eventBus, Vector2D worldPosition) {
         initializePlayerDefaults();
         this.worldPosition = worldPosition;
-        observer.addListener(eventListener);
+        this.eventBus = eventBus;
     }
 
     // GameObject default values for player
@@ -82,23 +99,23 @@ public class Player extends MovingObject implements InputListener {
         if (this.velocity.x != 0.0) {
             worldPosition.x += velocity.x;  // Update position
             RectangleBox entityHitBox = this.getHitBox();  // Get hitbox based on updated position
-            RectangleBox[] tileHitBoxes = tileMap.getSurroundingTileHitBoxes(entityHitBox.getCenter(), GROUND_TILES);
-            for (RectangleBox tileHitBox : tileHitBoxes) {  // Use updated hitbox to check collisions
-                if (tileHitBox == null) continue;
+            RectangleBox[] groundHitBoxes = tileMap.getGroundHitBoxes(entityHitBox);
+            for (RectangleBox tileHitBox : groundHitBoxes) {  // Use updated hitbox to check collisions
+                if (tileHitBox == null) break;  // End of the merged ground boxes
                 if (entityHitBox.intersects(tileHitBox)) {
-                    Vector2D newPlayerPosition = new Vector2D(worldPosition);
+                    double newPlayerX = worldPosition.x;
                     // If we move right and collide with a tile
                     if (velocity.x > 0.0) {
                         // Snap the entities position to the left edge of the tile
-                        newPlayerPosition.x = tileHitBox.getLeftSide() - this.width - hitboxOffset.x;
+                        newPlayerX = tileHitBox.getLeftSide() - this.width - hitboxOffset.x;
                     }
                     // If we move left and collide with a tile
                     if (velocity.x < 0.0) {
                         // Snap the entities position to the right edge of the tile
-                        newPlayerPosition.x = tileHitBox.getRightSide() - hitboxOffset.x;
+                        newPlayerX = tileHitBox.getRightSide() - hitboxOffset.x;
                     }
                     this.velocity.x = 0.0;  // Reset x velocity, the player has hit a wall
-                    this.worldPosition.x = newPlayerPosition.x;  // Finalize player position
+                    this.worldPosition.x = newPlayerX;  // Finalize player position
                 }
             }
         }
@@ -106,78 +123,122 @@ public class Player extends MovingObject implements InputListener {
         if (this.velocity.y != 0.0) {
             worldPosition.y += velocity.y;
             RectangleBox entityHitBox = this.getHitBox();
-            RectangleBox[] tileHitBoxes = tileMap.getSurroundingTileHitBoxes(entityHitBox.getCenter(), GROUND_TILES);
-            for (RectangleBox tileHitBox : tileHitBoxes) {
-                if (tileHitBox == null) continue;
+            RectangleBox[] groundHitBoxes = tileMap.getGroundHitBoxes(entityHitBox);
+            for (RectangleBox tileHitBox : groundHitBoxes) {
+                if (tileHitBox == null) break;
                 if (entityHitBox.intersects(tileHitBox)) {
-                    Vector2D newPlayerPosition = new Vector2D(worldPosition);
+                    double newPlayerY = worldPosition.y;
                     // If we move down and collide with a tile
                     if (velocity.y > 0.0) {
                         // Snap the entities position to the top edge of the tile
-                        newPlayerPosition.y = tileHitBox.getTopSide() - this.height - hitboxOffset.y;
+                        newPlayerY = tileHitBox.getTopSide() - this.height - hitboxOffset.y;
                         onGround = true;
                     }
                     // If we move up and collide with a tile
                     if (velocity.y < 0.0) {
                         // Snap the entities position to the bottom edge of the tile
-                        newPlayerPosition.y = tileHitBox.getBottom() - hitboxOffset.y;
+                        newPlayerY = tileHitBox.getBottom() - hitboxOffset.y;
                     }
                     this.velocity.y = 0.0;  // Reset y velocity, the player has hit a floor/ceiling
-                    this.worldPosition.y = newPlayerPosition.y;  // Finalize player position
+                    this.worldPosition.y = newPlayerY;  // Finalize player position
                 }
             }
         }
     }
 
-    private void checkGoal(TileMap tileMap) {
-        if (collideWithTile(tileMap, GOAL_TILES)) {
-            observer.notifyListeners(GameEvent.GOAL_REACHED);
-            velocity = new Vector2D();
+    // Single pass over the non-solid tiles around the player. The neighborhood is queried once, then every overlapped
+    // trigger is compared against last frame so each tile only fires when the player enters it.
+    private void processTriggers(TileMap tileMap) {
+        TileMap.Tile[] swap = previousTriggers;
+        previousTriggers = currentTriggers;
+        currentTriggers = swap;
+        previousTriggerCount = currentTriggerCount;
+        currentTriggerCount = 0;
+
+        RectangleBox entityHitBox = this.getHitBox();
+        TileMap.Tile[] triggerTiles = tileMap.getSurroundingTriggerTiles(entityHitBox.getCenter(hitBoxCenter));
+        for (TileMap.Tile tile : triggerTiles) {
+            if (tile == null) break;  // End of the trigger tiles
+            if (entityHitBox.intersects(tile.getHitBox())) {
+                currentTriggers[currentTriggerCount++] = tile;
+            }
         }
-    }
 
-    private void checkHazards(TileMap tileMap) {
-        if (collideWithTile(tileMap, HAZARD_TILES)) {
-            velocity = new Vector2D(0, JUMP_VELOCITY);
-            dead = true;
+        for (TileType triggerType : TRIGGER_ORDER) {
+            for (int i = 0; i < currentTriggerCount; i++) {
+                TileMap.Tile tile = currentTriggers[i];
+                if (tile.getType() != triggerType) continue;
+                if (!containsTrigger(previousTriggers, previousTriggerCount, tile)) {
+                    onTriggerEnter(tile, tileMap);
+                }
+            }
         }
     }
 
-    private void checkCollectibles(TileMap tileMap) {
-        RectangleBox entityHitBox = this.getHitBox();
-        RectangleBox[] tileHitBoxes = tileMap.getSurroundingTileHitBoxes(entityHitBox.getCenter(), TileType.COLLECTIBLE);
-        for (RectangleBox tileHitBox : tileHitBoxes) {
-            if (tileHitBox == null) continue;
-            if (entityHitBox.intersects(tileHitBox)) {
-                tileMap.disableTile(tileHitBox.getCenter(), TileType.COLLECTIBLE);
-                observer.notifyListeners(GameEvent.COLLECTIBLE);
-            }
+    private static boolean containsTrigger(TileMap.Tile[] triggers, int triggerCount, TileMap.Tile tile) {
+        for (int i = 0; i < triggerCount; i++) {
+            if (triggers[i] == tile) return true;
         }
+        return false;
     }
 
-    private boolean collideWithTile(TileMap tileMap, TileType tileType) {
-        RectangleBox entityHitBox = this.getHitBox();
-        RectangleBox[] tileHitBoxes = tileMap.getSurroundingTileHitBoxes(entityHitBox.getCenter(), tileType);
-        for (RectangleBox tileHitBox : tileHitBoxes) {
-            if (tileHitBox == null) continue;
-            if (entityHitBox.intersects(tileHitBox)) {
-                return true;
+    // Called once when the player starts overlapping a trigger tile
+    private void onTriggerEnter(TileMap.Tile tile, TileMap tileMap) {
+        switch (tile.getType()) {
+            case GOAL -> {
+                publishTileEvent(GameEvent.GOAL_REACHED, tile, tileMap);
+                velocity.set(0, 0);
             }
+            case COLLECTIBLE -> {
+                tileMap.disableTile(tile);
+                publishTileEvent(GameEvent.COLLECTIBLE, tile, tileMap);
+            }
+            case HAZARD -> {
+                Vector2D tilePosition = tile.getWorldPosition();
+                int tileSize = tileMap.getTileSize();
+                die(GameEvent.HAZARD_HIT,
+                        (int) Math.floor(tilePosition.x / tileSize), (int) Math.floor(tilePosition.y / tileSize));
+            }
+            case null, default -> {}
         }
-        return false;
+    }
+
+    // Publishes an event about a tile, with the grid position and hit box center of the tile as its payload
+    private void publishTileEvent(GameEvent gameEvent, TileMap.Tile tile, TileMap tileMap) {
+        Vector2D tilePosition = tile.getWorldPosition();
+        int tileSize = tileMap.getTileSize();
+        tile.getHitBox().getCenter(triggerCenter);
+        eventBus.publish(gameEvent, EventBus.PLAYER_ENTITY,
+                (int) Math.floor(tilePosition.x / tileSize), (int) Math.floor(tilePosition.y / tileSize),
+                triggerCenter.x, triggerCenter.y);
+    }
+
+    // Starts the death animation and publishes the cause of death. The event is sent with the players center rather
+    // than the position of what killed them, that is where the player bursts.
+    private void die(GameEvent cause, int tileColumn, int tileRow) {
+        velocity.set(0, JUMP_VELOCITY);
+        dead = true;
+        eventBus.publish(cause, EventBus.PLAYER_ENTITY, tileColumn, tileRow,
+                worldPosition.x + width / 2.0, worldPosition.y + height / 2.0);
+    }
+
+    private void clearTriggers() {
+        currentTriggerCount = 0;
+        previousTriggerCount = 0;
     }
 
     // Player class goes through a mini death animation for DEATH_TIMEOUT duration
     private void processDeathState() {
         playerDeathTimer++;
-        moveDirection = new Vector2D();
+        moveDirection.set(0, 0);
         jumpPressed = false;
         handleVerticalVelocity();
         velocity.y = Math.clamp(velocity.y, -MAX_VERTICAL_SPEED, MAX_VERTICAL_SPEED);
         this.worldPosition.y += velocity.y;
         if (playerDeathTimer >= DEATH_TIMEOUT) {
             dead = true;
-            observer.notifyListeners(GameEvent.DAMAGE);
+            eventBus.publish(GameEvent.DAMAGE, EventBus.PLAYER_ENTITY, EventBus.NO_TILE, EventBus.NO_TILE,
+                    worldPosition.x, worldPosition.y);
         }
     }
 
@@ -200,18 +261,45 @@ public class Player extends MovingObject implements InputListener {
         return velocity;
     }
 
+    // Computed without touching the shared hit box, since the view calls this from the rendering thread
     public Vector2D getPlayerCenterPosition() {
-        return getHitBox().getCenter();
+        return new Vector2D(worldPosition.x + hitboxOffset.x + width / 2.0, worldPosition.y + hitboxOffset.y + height / 2.0);
     }
 
+    // The given position is copied, so a shared spawn position constant can be passed in
     public void resetPlayer(Vector2D newWorldPosition) {
-        this.worldPosition = newWorldPosition;
-        this.velocity = new Vector2D();
+        this.worldPosition.set(newWorldPosition);
+        this.velocity.set(0, 0);
+        onGround = false;  // So a respawn always starts the same way, which replays rely on
+        clearTriggers();  // A respawned player has not entered anything yet
         playerDeathTimer = 0;
         dead = false;
         disabled = false;
     }
 
+    // Writes the position, velocity, ground and death state into state from offset on, STATE_SIZE values in all
+    public void saveState(double[] state, int offset) {
+        state[offset] = worldPosition.x;
+        state[offset + 1] = worldPosition.y;
+        state[offset + 2] = velocity.x;
+        state[offset + 3] = velocity.y;
+        state[offset + 4] = onGround ? 1 : 0;
+        state[offset + 5] = dead ? 1 : 0;
+        state[offset + 6] = playerDeathTimer;
+    }
+
+    // Puts the player back into a state written by saveState(). The triggers are forgotten, so a tile the player still
+    // overlaps is entered again on the next move, which is harmless: a collectible it touched is disabled by then, and
+    // touching a goal or hazard has already ended the attempt.
+    public void restoreState(double[] state, int offset) {
+        worldPosition.set(state[offset], state[offset + 1]);
+        velocity.set(state[offset + 2], state[offset + 3]);
+        onGround = state[offset + 4] != 0;
+        dead = state[offset + 5] != 0;
+        playerDeathTimer = (int) state[offset + 6];
+        clearTriggers();
+    }
+
     // Updates the player position and state depending on user input routed here with the routeInput method
     @Override
     public void move(TileMap tileMap) {
@@ -233,14 +321,16 @@ public class Player extends MovingObject implements InputListener {
         // Move object with collision detection
         moveAndCollide(tileMap);
         // Check for not solid objects
-        checkGoal(tileMap);
-        checkCollectibles(tileMap);
-        checkHazards(tileMap);
+        processTriggers(tileMap);
+        // Fell below every tile, there is nothing left to land on
+        if (!dead && tileMap.isBelowLevel(worldPosition.y + hitboxOffset.y)) {
+            die(GameEvent.OUT_OF_BOUNDS, EventBus.NO_TILE, EventBus.NO_TILE);
+        }
     }
 
     @Override
     public void routeInput(Vector2D inputVector, boolean jumpPressed, boolean backspacePressed) {
-        this.moveDirection = inputVector;
+        this.moveDirection.set(inputVector);
         this.jumpPressed = jumpPressed;
     }
 }
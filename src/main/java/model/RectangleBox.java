@@ -3,10 +3,10 @@ package model;
 import util.Vector2D;
 
 // AABB class
-// This class is never updated live, it is simply instantiated on the spot for use wherever needed.
+// Boxes are reused and updated in place with setBounds() so that collision checks do not allocate every frame.
 public class RectangleBox {
     private final Vector2D worldPosition;
-    private final double width, height;
+    private double width, height;
 
     public RectangleBox(Vector2D worldPosition, float width, float height) {
         this.worldPosition = worldPosition;
@@ -14,6 +14,12 @@ public class RectangleBox {
         this.height = height;
     }
 
+    public void setBounds(double x, double y, double width, double height) {
+        this.worldPosition.set(x, y);
+        this.width = width;
+        this.height = height;
+    }
+
     // Getters are used to determine where the collision happened
     public Vector2D getWorldPosition() {
         return worldPosition;
@@ -44,7 +50,12 @@ public class RectangleBox {
     }
 
     public Vector2D getCenter() {
-        return new Vector2D(worldPosition.x + width / 2, worldPosition.y + height / 2);
+        return getCenter(new Vector2D());
+    }
+
+    // Writes the center into the given vector instead of creating a new one
+    public Vector2D getCenter(Vector2D center) {
+        return center.set(worldPosition.x + width / 2, worldPosition.y + height / 2);
     }
 
 
@@ -0,0 +1,111 @@
+package model;
+
+// The last ticks of a level attempt, so the player can step back through them while the rewind key is held
+// Every tick is a compact snapshot kept in primitive arrays used as a ring buffer: the players state (see
+// Player.saveState()), the level ticks, time and collectibles, and the collectibles the tick took as a delta instead of
+// the whole set. Capturing a tick copies a handful of numbers and never allocates, and once the buffer is full every
+// capture overwrites the oldest tick.
+// The collectibles taken are a ring of their own, most ticks take none. If it fills up, the oldest ticks are dropped
+// along with the collectibles they took, so every tick still kept can be stepped back to.
+// Note: only used by the game thread
+public class RewindBuffer {
+
+    private final int capacity;
+
+    // Per tick, the tick of position p is in slot p % capacity
+    private final double[] playerStates;
+    private final int[] levelTicks;
+    private final double[] levelTimes;
+    private final int[] collectibleCounts;
+    private final long[] takenEnds;  // Position in takenCollectibles after the collectibles taken up to the tick
+
+    private final int[] takenCollectibles;  // Collectible indices, see TileMap.Tile.getCollectibleIndex()
+    private long takenPosition = 0;
+
+    private long newestTick = -1;  // Position of the newest tick captured, ticks are counted since the last clear()
+    private int size = 0;
+
+    public RewindBuffer(int capacity) {
+        this.capacity = capacity;
+        this.playerStates = new double[capacity * Player.STATE_SIZE];
+        this.levelTicks = new int[capacity];
+        this.levelTimes = new double[capacity];
+        this.collectibleCounts = new int[capacity];
+        this.takenEnds = new long[capacity];
+        this.takenCollectibles = new int[capacity];
+    }
+
+    // Forgets every tick, called when an attempt starts over
+    public void clear() {
+        newestTick = -1;
+        size = 0;
+        takenPosition = 0;
+    }
+
+    // Notes a collectible taken on the tick that is about to be captured
+    public void recordTaken(int collectibleIndex) {
+        while (size > 0 && takenPosition + 1 - takenEnds[slot(oldestTick())] > takenCollectibles.length) {
+            size--;  // Drops the oldest tick, stepping back to it would need a collectible about to be overwritten
+        }
+        takenCollectibles[(int) (takenPosition % takenCollectibles.length)] = collectibleIndex;
+        takenPosition++;
+    }
+
+    // Adds the state at the end of a tick as the newest tick
+    public void capture(Player player, int levelTick, double levelTime, int collectibleCount) {
+        newestTick++;
+        int slot = slot(newestTick);
+        player.saveState(playerStates, slot * Player.STATE_SIZE);
+        levelTicks[slot] = levelTick;
+        levelTimes[slot] = levelTime;
+        collectibleCounts[slot] = collectibleCount;
+        takenEnds[slot] = takenPosition;
+        size = Math.min(size + 1, capacity);
+    }
+
+    // Drops the newest tick and puts the player and the collectibles back the way they were on the tick before it.
+    // Returns false if there is no tick before it left to step back to.
+    public boolean rewind(Player player, TileMap tileMap) {
+        if (size < 2) return false;
+        int previousSlot = slot(newestTick - 1);
+        for (long position = takenEnds[previousSlot]; position < takenPosition; position++) {
+            tileMap.enableCollectible(takenCollectibles[(int) (position % takenCollectibles.length)]);
+        }
+        takenPosition = takenEnds[previousSlot];
+        newestTick--;
+        size--;
+        player.restoreState(playerStates, previousSlot * Player.STATE_SIZE);
+        return true;
+    }
+
+    // The level state of the newest tick, to put the level back after rewind()
+
+    public int getLevelTicks() {
+        return levelTicks[slot(newestTick)];
+    }
+
+    public double getLevelTime() {
+        return levelTimes[slot(newestTick)];
+    }
+
+    public int getCollectibleCount() {
+        return collectibleCounts[slot(newestTick)];
+    }
+
+    // Ticks that can still be stepped back, the newest tick is where the player is now
+    public int getRewindableTicks() {
+        return Math.max(size - 1, 0);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private long oldestTick() {
+        return newestTick - size + 1;
+    }
+
+    private int slot(long tick) {
+        return (int) (tick % capacity);
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import java.util.Arrays;
+
+// A batch of tile edits to one level, each the tile a grid position now holds or NO_TILE if it was removed
+// Stored in parallel primitive arrays so a large edit does not need an object per tile. Built off the game thread,
+// for example by the LevelWatcher diffing two versions of a level file, and applied by TileMap.applyChanges().
+public class TileChanges {
+    public static final int NO_TILE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final TileType[] TILE_TYPES = TileType.values();
+
+    private final String levelName;
+    private int[] columns = new int[INITIAL_CAPACITY];
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private int[] types = new int[INITIAL_CAPACITY];  // TileType ordinals
+    private int[] variants = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public TileChanges(String levelName) {
+        this.levelName = levelName;
+    }
+
+    public void setTile(int column, int row, TileType type, int variant) {
+        add(column, row, type.ordinal(), variant);
+    }
+
+    public void removeTile(int column, int row) {
+        add(column, row, NO_TILE, 0);
+    }
+
+    private void add(int column, int row, int type, int variant) {
+        if (size == columns.length) {
+            columns = Arrays.copyOf(columns, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+            types = Arrays.copyOf(types, size * 2);
+            variants = Arrays.copyOf(variants, size * 2);
+        }
+        columns[size] = column;
+        rows[size] = row;
+        types[size] = type;
+        variants[size] = variant;
+        size++;
+    }
+
+    // Name of the level file without its extension, the same name its TileMap was loaded with
+    public String getLevelName() {
+        return levelName;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getColumn(int index) {
+        return columns[index];
+    }
+
+    public int getRow(int index) {
+        return rows[index];
+    }
+
+    public boolean isRemoved(int index) {
+        return types[index] == NO_TILE;
+    }
+
+    // Only valid for tiles that were not removed
+    public TileType getType(int index) {
+        return TILE_TYPES[types[index]];
+    }
+
+    public int getVariant(int index) {
+        return variants[index];
+    }
+}
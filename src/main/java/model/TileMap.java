@@ -1,14 +1,13 @@
 package model;
 
-import io.MapLoader;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import util.Vector2D;
 
-import java.util.HashMap;
-import java.util.Stack;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 // Class that stores a map of tiles and provides methods to obtain tiles efficiently whenever needed
+// The tiles themselves are a LevelGeometry that every TileMap of the level can share, the TileMap adds which
+// collectibles are taken and the scratch space for its lookups.
 public class TileMap {
 
     // This array stores offsets for finding surrounding tiles from the player much easier
@@ -20,94 +19,106 @@ public class TileMap {
             new Vector2D(-1, 2), new Vector2D(0, 2), new Vector2D(1, 2)
     };
 
-    // Spikes have a smaller hit box that needs to be accounted for manually
-    private static final Vector2D STANDARD_TILE_OFFSET = new Vector2D(0, 0);
-    private static final Vector2D BOTTOM_SPIKE_OFFSET = new Vector2D(0, 15);
-    private static final Vector2D RIGHT_SPIKE_OFFSET = new Vector2D(15, 0);
-    private static final int SPIKE_HITBOX_SIZE = 18;
-
-    // Smaller hitbox for collectibles as well
-    private static final int COLLECTIBLE_HITBOX_SIZE = 20;
-    private static final Vector2D COLLECTIBLE_OFFSET = new Vector2D(7, 7);
+    // Ground variant for each combination of ground neighbours, the same table as the editors AUTOTILE_MAP
+    // Index: 1 = right, 2 = left, 4 = below, 8 = above. -1 means no variant matches and the tile keeps its own.
+    private static final int[] AUTOTILE_VARIANTS = {
+            -1, -1, -1, -1,
+            -1, 0, 2, 1,
+            -1, 6, 4, 5,
+            -1, 7, 3, 8
+    };
 
     private final int tileSize;
-    private final HashMap<Vector2D, Tile> interactableTiles;  // Tiles that the player interacts with
-    private final Stack<Vector2D> currentlyDisabledTiles = new Stack<>();  // If a tile is disabled, it's position is store here to re-enable the tile later
+    // Edits change the tiles on the game thread while the view reads them on the EDT, both hold this lock to do so
+    private final Object editLock = new Object();
+    private LevelGeometry geometry;  // Shared with other TileMaps until the first edit, see ownGeometry()
+    private boolean ownsGeometry;
+    private int editCount = 0;
+    private long[] disabledCollectibles;  // Bit per collectible index, a disabled collectible is invisible and not collided with
+
+    // Reused by the game thread for tile lookups so collision queries do not allocate every frame
+    private final Vector2D lookupKey = new Vector2D();
+    private final RectangleBox[] surroundingHitBoxes = new RectangleBox[ENTITY_SURROUNDING_TILES.length];
+    private final Tile[] surroundingTriggerTiles = new Tile[ENTITY_SURROUNDING_TILES.length + 1];
+    private final GroundCollisionIndex.QueryBuffer groundQuery = new GroundCollisionIndex.QueryBuffer();
 
     public TileMap(String mapName, int tileSize) {
-        this.tileSize = tileSize;
-        this.interactableTiles =  loadTileMap(mapName);
-    }
-
-    // Loads a map from the given mapName from a JSONObject
-    private HashMap<Vector2D, Tile> loadTileMap(String mapName) {
-        // Grab JSON object from MapLoader
-        JSONObject mapObject = MapLoader.loadMapJSON(mapName);
-        if (mapObject == null) return null;
-        HashMap<Vector2D, Tile> tileMap = new HashMap<>(mapObject.length());
-        for (String key : mapObject.keySet()) {
-            JSONObject tileInfo = mapObject.getJSONObject(key);
-            JSONArray posInfo = tileInfo.getJSONArray("pos");
-            Vector2D pos = new Vector2D(posInfo.getDouble(0), posInfo.getDouble(1));
-            Vector2D tileWorldPos = new Vector2D(pos.x * tileSize, pos.y * tileSize);
-            TileType tileType = TileType.stringToTileType(tileInfo.getString("type"));
-            TileOrientation tileOrientation = TileOrientation.getOrientationFromInt(tileInfo.getInt("variant"));
-
-            Tile mapTile = generateMapTile(tileType, tileOrientation, tileWorldPos);
-            tileMap.put(pos, mapTile);
-        }
-        return tileMap;
-    }
-
-    // Creates a tile based on its type, orientation, and position
-    private Tile generateMapTile(TileType tileType, TileOrientation tileOrientation, Vector2D tileWorldPos) {
-        Vector2D tileOffset = STANDARD_TILE_OFFSET;
-        int tileWidth = tileSize;
-        int tileHeight = tileSize;
-        if (tileType == TileType.HAZARD) {
-            switch (tileOrientation) {
-                case TOP_LEFT -> {
-                    tileOffset = BOTTOM_SPIKE_OFFSET;
-                    tileHeight = SPIKE_HITBOX_SIZE;
-                }
-                case TOP -> tileWidth = SPIKE_HITBOX_SIZE;
-                case TOP_RIGHT -> tileHeight = SPIKE_HITBOX_SIZE;
-                case LEFT -> {
-                    tileOffset = RIGHT_SPIKE_OFFSET;
-                    tileWidth = SPIKE_HITBOX_SIZE;
-                }
-                case null, default -> {}
-            }
-        }
-        if (tileType == TileType.COLLECTIBLE) {
-            tileOffset = COLLECTIBLE_OFFSET;
-            tileWidth = COLLECTIBLE_HITBOX_SIZE;
-            tileHeight = COLLECTIBLE_HITBOX_SIZE;
-        }
+        this(LevelGeometry.load(mapName, tileSize), true);
+    }
+
+    // Loads a map file from disk rather than one of the games levels, used for generated stress test levels
+    public TileMap(Path mapFile, int tileSize) {
+        this(LevelGeometry.load(mapFile, tileSize), true);
+    }
 
-        return new Tile(tileWorldPos, tileOffset, tileWidth, tileHeight, tileType, tileOrientation, false);
+    // Plays a level whose geometry may be shared with other TileMaps, only the collectibles taken are its own, which
+    // keeps a TileMap down to a few hundred bytes
+    public TileMap(LevelGeometry geometry) {
+        this(geometry, false);
+    }
+
+    private TileMap(LevelGeometry geometry, boolean ownsGeometry) {
+        this.tileSize = geometry.getTileSize();
+        this.geometry = geometry;
+        this.ownsGeometry = ownsGeometry;
+        this.disabledCollectibles = new long[(geometry.getCollectibleSlots() + 63) / 64];
+    }
+
+    // The name a level file is known by, its file name without the extension
+    public static String levelName(Path mapFile) {
+        String fileName = mapFile.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        return extension < 0 ? fileName : fileName.substring(0, extension);
     }
 
     // Grabs the hit boxes of tiles of the selected TileType surrounding the given worldPos
+    // Note: the returned array is reused, so its contents are only valid until the next call
     public RectangleBox[] getSurroundingTileHitBoxes(Vector2D worldPos, TileType tileType) {
-        RectangleBox[] hitBoxes = new RectangleBox[ENTITY_SURROUNDING_TILES.length];
+        RectangleBox[] hitBoxes = surroundingHitBoxes;
         int tileX = (int) Math.floor(worldPos.x / tileSize);
         int tileY = (int) Math.floor(worldPos.y / tileSize);
-        Vector2D centerPosition = new Vector2D(tileX, tileY);
         for (int i = 0; i < ENTITY_SURROUNDING_TILES.length; i++) {
+            hitBoxes[i] = null;
             Vector2D tileOffset = ENTITY_SURROUNDING_TILES[i];
-            Vector2D tilePosition = centerPosition.add(tileOffset);
-            Tile tile = interactableTiles.get(tilePosition);
+            Tile tile = geometry.getTile(lookupKey.set(tileX + tileOffset.x, tileY + tileOffset.y));
             if (tile == null) continue;
-            if (tile.isDisabled()) continue;
+            if (isDisabled(tile)) continue;
             if (tile.type == tileType) hitBoxes[i] = tile.getHitBox();
         }
         return hitBoxes;
     }
 
+    // Grabs every enabled tile that is not ground surrounding the given worldPos, the result ends at the first null entry
+    // Note: the returned array is reused, so its contents are only valid until the next call
+    public Tile[] getSurroundingTriggerTiles(Vector2D worldPos) {
+        int tileX = (int) Math.floor(worldPos.x / tileSize);
+        int tileY = (int) Math.floor(worldPos.y / tileSize);
+        int tileCount = 0;
+        for (Vector2D tileOffset : ENTITY_SURROUNDING_TILES) {
+            Tile tile = geometry.getTile(lookupKey.set(tileX + tileOffset.x, tileY + tileOffset.y));
+            if (tile == null) continue;
+            if (isDisabled(tile)) continue;
+            if (tile.type != TileType.GROUND) surroundingTriggerTiles[tileCount++] = tile;
+        }
+        surroundingTriggerTiles[tileCount] = null;
+        return surroundingTriggerTiles;
+    }
+
+    // Grabs the merged ground hit boxes that overlap the given hit box, the result ends at the first null entry
+    // Note: the returned array is reused, so its contents are only valid until the next call
+    public RectangleBox[] getGroundHitBoxes(RectangleBox hitBox) {
+        return geometry.getGroundCollisionIndex().query(hitBox, groundQuery);
+    }
+
+    // Whether the given height is below every tile of the level, where the player has nothing left to land on
+    public boolean isBelowLevel(double worldY) {
+        return geometry.isBelowLevel(worldY);
+    }
+
     // Returns the tiles only visible within the screenBounds based on the worldPos provided. More efficient than
     // rendering entire TileMap for larger maps.
-    // Note: worldPos must be the position at the top left of screen
+    // Note: worldPos must be the position at the top left of screen. Called by the view, so it reads the tiles under
+    // the edit lock.
     public Tile[] getVisibleTiles(Vector2D worldPos, Vector2D screenBounds) {
         int xTileAmount = (int)(screenBounds.x / tileSize) + 1; // +1 for an extra layer of tiles to be rendered just in case
         int yTileAmount = (int)(screenBounds.y / tileSize) + 1;
@@ -120,64 +131,270 @@ public class TileMap {
 
         Tile[] visibleTiles = new Tile[xTileAmount * yTileAmount];
         int tileIndex = 0;
-        for (int x = 0; x < xTileAmount; x++) {
-            for (int y = 0; y < yTileAmount; y++) {
-                Vector2D tilePos = new Vector2D(x + tilePositionOffset.x, y + tilePositionOffset.y);
-                Tile tile = interactableTiles.get(tilePos);
-                if (tile == null) continue;  // No tile in bound
-                if (tile.isDisabled()) continue;  // Disabled tiles are not visible
-                visibleTiles[tileIndex++] = tile;
+        synchronized (editLock) {
+            for (int x = 0; x < xTileAmount; x++) {
+                for (int y = 0; y < yTileAmount; y++) {
+                    Vector2D tilePos = new Vector2D(x + tilePositionOffset.x, y + tilePositionOffset.y);
+                    Tile tile = geometry.getTile(tilePos);
+                    if (tile == null) continue;  // No tile in bound
+                    if (isDisabled(tile)) continue;  // Disabled tiles are not visible
+                    visibleTiles[tileIndex++] = tile;
+                }
             }
         }
         return visibleTiles;
     }
 
+    // Editing
+    // Tiles can be set, removed or retyped while the level is played. Edits only mark what they touched, and
+    // finishEdits() then rebuilds just the ground chunks they changed, so a batch of edits costs about the same as one.
+    // The first edit to a TileMap sharing its geometry copies the geometry, so other TileMaps never see the edits.
+    // Note: must be called by the game thread. Changes to the tiles hold the edit lock, so the view never reads the
+    // map while it is being changed. The game thread reads it without the lock, as it is the only one changing it.
+
+    // Places a tile at the grid position, replacing any tile already there. Returns the new tile, or the tile already
+    // there if it is the same, which is left alone so saving a level over itself is not counted as an edit.
+    public Tile setTile(int column, int row, TileType type, TileOrientation orientation) {
+        Tile previousTile = getTile(column, row);
+        if (previousTile != null && previousTile.getType() == type && previousTile.getOrientation() == orientation) {
+            return previousTile;
+        }
+        Tile tile;
+        synchronized (editLock) {
+            ownGeometry();
+            tile = geometry.createTile(column, row, type, orientation);
+            geometry.putTile(column, row, tile);
+        }
+        markEdited(column, row, previousTile, tile);
+        return tile;
+    }
+
+    // Returns false if there was no tile at the grid position
+    public boolean removeTile(int column, int row) {
+        if (getTile(column, row) == null) return false;
+        Tile previousTile;
+        synchronized (editLock) {
+            ownGeometry();
+            previousTile = geometry.removeTile(lookupKey.set(column, row));
+        }
+        markEdited(column, row, previousTile, null);
+        return true;
+    }
+
+    // Changes the type of the tile at the grid position and keeps its orientation, returns the new tile or null if
+    // there was no tile there
+    public Tile retypeTile(int column, int row, TileType type) {
+        Tile tile = getTile(column, row);
+        if (tile == null) return null;
+        return setTile(column, row, type, tile.getOrientation());
+    }
+
+    // Places a tile the way the level editor would: ground picks its variant from its neighbours and updates theirs,
+    // spikes point away from the ground next to them. The stroke holds the edit lock along with the autotiling it causes,
+    // so the view never draws a tile before its neighbours have been updated.
+    public Tile paintTile(int column, int row, TileType type) {
+        synchronized (editLock) {
+            TileOrientation orientation = TileOrientation.TOP;
+            if (type == TileType.HAZARD) orientation = hazardOrientation(column, row);
+            setTile(column, row, type, orientation);
+            autotileAround(column, row);
+            return getTile(column, row);  // Autotiling may have replaced it
+        }
+    }
+
+    // Removes a tile and updates the variants of the ground around it, returns false if there was no tile
+    public boolean eraseTile(int column, int row) {
+        synchronized (editLock) {
+            if (!removeTile(column, row)) return false;
+            autotileAround(column, row);
+            return true;
+        }
+    }
+
+    // Rebuilds what the edits since the last call made out of date, returns how many ground chunks were rebuilt
+    public int finishEdits() {
+        return ownsGeometry ? geometry.rebuildDirtyChunks() : 0;  // Nothing to rebuild before the first edit
+    }
+
+    // Counts every edit ever made to the map, so other classes can tell whether it changed since they last looked
+    public int getEditCount() {
+        return editCount;
+    }
+
+    // Applies a batch of edits made to the level file while it is being played. Tiles that were not edited keep their
+    // state, so collected collectibles stay collected. Returns how many tiles changed.
+    // The whole batch holds the edit lock, so the view shows the level either before or after it.
+    public int applyChanges(TileChanges changes) {
+        int changedTiles = 0;
+        synchronized (editLock) {
+            for (int i = 0; i < changes.size(); i++) {
+                int column = changes.getColumn(i);
+                int row = changes.getRow(i);
+                if (changes.isRemoved(i)) {
+                    if (removeTile(column, row)) changedTiles++;
+                } else {
+                    int previousEditCount = editCount;
+                    setTile(column, row, changes.getType(i), TileOrientation.getOrientationFromInt(changes.getVariant(i)));
+                    if (editCount != previousEditCount) changedTiles++;
+                }
+            }
+        }
+        finishEdits();
+        return changedTiles;
+    }
+
+    // Every tile of the map as a batch of changes, in no particular order, used to save the map back to a level file
+    public TileChanges exportTiles() {
+        TileChanges tiles = new TileChanges(geometry.getName());
+        for (Tile tile : geometry.getTiles().values()) {
+            Vector2D tileWorldPos = tile.getWorldPosition();
+            tiles.setTile((int) Math.floor(tileWorldPos.x / tileSize), (int) Math.floor(tileWorldPos.y / tileSize),
+                    tile.getType(), tile.getOrientation().ordinal());
+        }
+        return tiles;
+    }
+
+    public Tile getTile(int column, int row) {
+        return geometry.getTile(lookupKey.set(column, row));
+    }
+
+    // Gives this TileMap a geometry of its own before it is edited, called under the edit lock as it swaps the geometry
+    // the view reads
+    private void ownGeometry() {
+        if (ownsGeometry) return;
+        geometry = geometry.copy();
+        ownsGeometry = true;
+    }
+
+    private void markEdited(int column, int row, Tile previousTile, Tile tile) {
+        if (isGround(previousTile) || isGround(tile)) geometry.markDirty(column, row);
+        editCount++;
+    }
+
+    private boolean isGround(int column, int row) {
+        return isGround(getTile(column, row));
+    }
+
+    private static boolean isGround(Tile tile) {
+        return tile != null && tile.getType() == TileType.GROUND;
+    }
+
+    // Re-picks the variant of the ground tile at the grid position and of the ground in the four tiles next to it
+    private void autotileAround(int column, int row) {
+        autotile(column, row);
+        autotile(column + 1, row);
+        autotile(column - 1, row);
+        autotile(column, row + 1);
+        autotile(column, row - 1);
+    }
+
+    // Same rules as the editors autotile(): a ground tile takes the variant matching which of its four neighbours are
+    // also ground, and keeps its variant if no variant matches
+    private void autotile(int column, int row) {
+        Tile tile = getTile(column, row);
+        if (!isGround(tile)) return;
+        int neighbours = (isGround(column + 1, row) ? 1 : 0) | (isGround(column - 1, row) ? 2 : 0)
+                | (isGround(column, row + 1) ? 4 : 0) | (isGround(column, row - 1) ? 8 : 0);
+        int variant = AUTOTILE_VARIANTS[neighbours];
+        if (variant < 0 || variant == tile.getOrientation().ordinal()) return;
+        setTile(column, row, TileType.GROUND, TileOrientation.getOrientationFromInt(variant));
+    }
+
+    // Floor spikes unless the only ground next to them is a wall or a ceiling
+    private TileOrientation hazardOrientation(int column, int row) {
+        if (isGround(column, row + 1)) return TileOrientation.TOP_LEFT;
+        if (isGround(column - 1, row)) return TileOrientation.TOP;
+        if (isGround(column, row - 1)) return TileOrientation.TOP_RIGHT;
+        if (isGround(column + 1, row)) return TileOrientation.LEFT;
+        return TileOrientation.TOP_LEFT;
+    }
+
+    public String getName() {
+        return geometry.getName();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getTileCount() {
+        return geometry.getTileCount();
+    }
+
+    public LevelGeometry getGeometry() {
+        return geometry;
+    }
+
     // Turns off tile, preventing it from being visible or be collided with
     public void disableTile(Vector2D tileWorldPos, TileType tileType) {
         int tileX = (int) Math.floor(tileWorldPos.x / tileSize);
         int tileY = (int) Math.floor(tileWorldPos.y / tileSize);
-        Vector2D tilePosition = new Vector2D(tileX, tileY);
-        Tile foundTile = interactableTiles.get(tilePosition);
+        Tile foundTile = getTile(tileX, tileY);
 
         if (foundTile == null) return;
-        if (foundTile.type == tileType) {
-            foundTile.setDisabled(true);
-            currentlyDisabledTiles.push(tilePosition);
+        if (foundTile.type == tileType) disableTile(foundTile);
+    }
+
+    // Only collectibles can be disabled, they are the only tiles the player takes out of the level
+    public void disableTile(Tile tile) {
+        int index = tile.collectibleIndex;
+        if (index < 0) return;
+        if (index / 64 >= disabledCollectibles.length) {  // Placed by an edit after this map was created
+            synchronized (editLock) {
+                disabledCollectibles = Arrays.copyOf(disabledCollectibles, index / 64 + 1);
+            }
+        }
+        disabledCollectibles[index / 64] |= 1L << index;
+    }
+
+    // Puts a collectible taken back into the level, used when stepping back in time (see RewindBuffer)
+    public void enableCollectible(int collectibleIndex) {
+        if (collectibleIndex / 64 < disabledCollectibles.length) {
+            disabledCollectibles[collectibleIndex / 64] &= ~(1L << collectibleIndex);
         }
     }
 
+    public boolean isDisabled(Tile tile) {
+        int index = tile.collectibleIndex;
+        return index >= 0 && index / 64 < disabledCollectibles.length
+                && (disabledCollectibles[index / 64] & (1L << index)) != 0;
+    }
+
     // Used to reset map collectibles, better than reloading the map again
     public void resetTileMap() {
-        while (!currentlyDisabledTiles.isEmpty()) {
-            Vector2D tilePos = currentlyDisabledTiles.pop();
-            Tile disabledTile = interactableTiles.get(tilePos);
-            if (disabledTile == null) continue;
-            disabledTile.setDisabled(false);
-        }
+        Arrays.fill(disabledCollectibles, 0);
     }
 
-    // Interior tile class container that stores tile position and type, extends GameObject for hit box and hit box offset functionality
-    public class Tile extends GameObject {
+    // Tile container that stores tile position and type, extends GameObject for hit box and hit box offset
+    // functionality. Tiles never change, an edit replaces the tile, so they are shared by every TileMap of a level.
+    public static class Tile extends GameObject {
 
         private final TileType type;
         private final TileOrientation orientation;
-        private boolean disabled;
+        private final int collectibleIndex;  // Bit of the collectible in TileMap.disabledCollectibles, -1 for other tiles
+        private final RectangleBox hitBox;
 
-        public Tile(Vector2D worldPosition, Vector2D hitboxOffset, int width, int height, TileType type, TileOrientation orientation, boolean disabled) {
+        public Tile(Vector2D worldPosition, Vector2D hitboxOffset, int width, int height, TileType type, TileOrientation orientation, int collectibleIndex) {
             this.worldPosition = worldPosition;
             this.hitboxOffset = hitboxOffset;
             this.width = width;
             this.height = height;
             this.type = type;
             this.orientation = orientation;
-            this.disabled = disabled;
+            this.collectibleIndex = collectibleIndex;
+            this.hitBox = super.getHitBox();
+        }
+
+        // Computed once, as the tile never moves. Read by every thread playing the level, so it is never updated.
+        @Override
+        public RectangleBox getHitBox() {
+            return hitBox;
         }
 
         public TileType getType() {
             return type;
         }
         public TileOrientation getOrientation() { return orientation; }
-        public boolean isDisabled() { return disabled; }
-        public void setDisabled (boolean disabled) { this.disabled = disabled; }
+        public int getCollectibleIndex() { return collectibleIndex; }
     }
 }
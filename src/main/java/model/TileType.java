@@ -13,4 +13,14 @@ public enum TileType {
             default -> null;
         };
     }
+
+    // The name the level files use for the type, the opposite of stringToTileType()
+    public static String tileTypeToString(TileType type) {
+        return switch (type) {
+            case GROUND -> "ground";
+            case HAZARD -> "hazard";
+            case GOAL -> "goal";
+            case COLLECTIBLE -> "collectible";
+        };
+    }
 }
@@ -0,0 +1,30 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event covering one GamePanel.paintComponent() pass
+@Name("platformer.FrameRender")
+@Label("Frame Render")
+@Description("One frame drawn by the GamePanel")
+@Category({"Platformer", "Game Loop"})
+@Enabled(false)
+@StackTrace(false)
+public class FrameRenderEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(FrameRenderEvent.class);
+
+    @Label("Visible Tiles")
+    @Description("Tiles drawn this frame, 0 while in a menu")
+    public int visibleTiles;
+
+    // Whether a recording takes these events, checked before creating one so frames allocate nothing while JFR is off
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,33 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event covering the dispatch of one batch of GameEvents from the EventBus to its listeners
+@Name("platformer.GameEventDispatch")
+@Label("Game Event Dispatch")
+@Description("A batch of GameEvents is sent to every listener")
+@Category({"Platformer", "Game Loop"})
+@Enabled(false)
+@StackTrace(false)
+public class GameEventDispatchEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(GameEventDispatchEvent.class);
+
+    @Label("Event Count")
+    public int eventCount;
+
+    @Label("Listener Count")
+    public int listenerCount;
+
+    // Whether a recording takes these events, checked before creating one so a drain allocates nothing while JFR is off
+    // Note: a committed event cannot be started again, every batch needs an event of its own
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,31 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event covering one GameManager.update() call
+@Name("platformer.GameTick")
+@Label("Game Tick")
+@Description("One update of the game simulation")
+@Category({"Platformer", "Game Loop"})
+@Enabled(false)
+@StackTrace(false)
+public class GameTickEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(GameTickEvent.class);
+
+    @Label("Game State")
+    @Description("State of the game when the tick started")
+    public String state;
+
+    // Whether a recording takes these events, checked before creating one so ticks allocate nothing while JFR is off
+    // Note: a committed event cannot be started again, every tick needs an event of its own
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
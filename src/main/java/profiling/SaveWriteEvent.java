@@ -0,0 +1,28 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event covering one save written to disk by the GameSavers writer thread
+// No stack trace, the write always happens in the same place on the writer thread (also off in jfr/platformer.jfc)
+@Name("platformer.SaveWrite")
+@Label("Save Write")
+@Description("The save data is written to disk")
+@Category({"Platformer", "IO"})
+@Enabled(false)
+@StackTrace(false)
+public class SaveWriteEvent extends jdk.jfr.Event {
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+
+    @Label("Saves Coalesced")
+    @Description("Saves that were replaced by this one before they could be written")
+    public int coalesced;
+}
@@ -0,0 +1,25 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event covering the load of a LevelGeometry, from reading the level file to building the collision index
+// Like every event in this package it is disabled unless a recording turns it on, see jfr/platformer.jfc
+@Name("platformer.TileMapLoad")
+@Label("Tile Map Load")
+@Description("A level file is loaded into a TileMap")
+@Category({"Platformer", "Level"})
+@Enabled(false)
+@StackTrace(false)
+public class TileMapLoadEvent extends jdk.jfr.Event {
+
+    @Label("Level")
+    public String level;
+
+    @Label("Tile Count")
+    public int tileCount;
+}
@@ -0,0 +1,69 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Rolling histogram of the last WINDOW_SIZE durations, used to show percentiles of frame timings while playing
+// Durations are counted in fixed width buckets, so reading a percentile only walks the bucket array and never sorts or
+// allocates. The oldest sample is taken out of its bucket whenever a new one comes in, which keeps the histogram
+// describing only the last few seconds.
+// NOTE: record() is meant to be called by a single thread, any other thread may read at the same time without locking.
+// A read that overlaps a record() can be off by that one sample, which does not matter for a display.
+public class FrameTimeHistogram {
+
+    private static final int WINDOW_SIZE = 256;  // Power of two so the ring index is a mask
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+    private static final long BUCKET_WIDTH_NANOS = 100_000;  // 0.1 ms
+    private static final int BUCKET_COUNT = 500;  // Up to 50 ms, the last bucket also holds everything longer
+
+    private final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+    private final AtomicIntegerArray buckets = new AtomicIntegerArray(BUCKET_COUNT);
+    private volatile long recordedCount = 0;  // Only written by the recording thread
+
+    public void record(long durationNanos) {
+        long count = recordedCount;
+        int index = (int) (count & WINDOW_MASK);
+        long evicted = samples.getAndSet(index, durationNanos);
+        if (count >= WINDOW_SIZE) {
+            buckets.decrementAndGet(bucketOf(evicted));
+        }
+        buckets.incrementAndGet(bucketOf(durationNanos));
+        recordedCount = count + 1;
+    }
+
+    private static int bucketOf(long durationNanos) {
+        return (int) Math.min(Math.max(durationNanos, 0) / BUCKET_WIDTH_NANOS, BUCKET_COUNT - 1);
+    }
+
+    // Returns the duration that the given fraction (0 to 1) of the window is at or below, rounded up to its bucket edge
+    // Samples in the last bucket are reported as the window maximum since that bucket has no upper edge
+    public long getPercentile(double fraction) {
+        int total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        if (total <= 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) return (i + 1) * BUCKET_WIDTH_NANOS;
+        }
+        return getMax();
+    }
+
+    // Longest duration in the window, exact rather than bucketed
+    public long getMax() {
+        int sampleCount = (int) Math.min(recordedCount, WINDOW_SIZE);
+        long max = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            max = Math.max(max, samples.get(i));
+        }
+        return max;
+    }
+
+    public long getRecordedCount() {
+        return recordedCount;
+    }
+}
@@ -0,0 +1,146 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and latency histograms describing the game loop, exported by io.MetricsServer in the Prometheus text format
+// Written by the game thread (GameController, GameManager) and the rendering thread (GamePanel) and read by the
+// metrics server thread. Everything is an atomic or a LongAdder, so updating never takes a lock or allocates.
+public class GameMetrics {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    // Bucket upper bounds of the latency histograms, in seconds, around the 16.6 ms frame budget
+    private static final double[] LATENCY_BUCKETS = {0.0005, 0.001, 0.002, 0.004, 0.008, 0.0166, 0.033, 0.066, 0.133, 0.25};
+
+    // Cumulative latency histogram, every bucket also counts the samples of the buckets below it when exported
+    public static class Histogram {
+        private final double[] upperBounds;
+        private final AtomicLongArray bucketCounts;  // Non cumulative, the extra last bucket is +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(double[] upperBounds) {
+            this.upperBounds = upperBounds;
+            this.bucketCounts = new AtomicLongArray(upperBounds.length + 1);
+        }
+
+        public void recordNanos(long durationNanos) {
+            double seconds = durationNanos / NANOS_PER_SECOND;
+            int bucket = 0;
+            while (bucket < upperBounds.length && seconds > upperBounds[bucket]) bucket++;
+            bucketCounts.incrementAndGet(bucket);
+            sumNanos.add(durationNanos);
+        }
+
+        public int getBucketCount() {
+            return upperBounds.length;
+        }
+
+        public double getUpperBound(int bucket) {
+            return upperBounds[bucket];
+        }
+
+        // Amount of samples at or below the given buckets upper bound, the bucket after the last bound is +Inf
+        public long getCumulativeCount(int bucket) {
+            long total = 0;
+            for (int i = 0; i <= bucket; i++) {
+                total += bucketCounts.get(i);
+            }
+            return total;
+        }
+
+        public long getCount() {
+            return getCumulativeCount(upperBounds.length);
+        }
+
+        public double getSumSeconds() {
+            return sumNanos.sum() / NANOS_PER_SECOND;
+        }
+    }
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder levelLoads = new LongAdder();
+    private final LongAdder saveWrites = new LongAdder();
+    private final Histogram tickLatency = new Histogram(LATENCY_BUCKETS);
+    private final Histogram renderLatency = new Histogram(LATENCY_BUCKETS);
+    private volatile String gameState = "";  // Name of the current GameState
+
+    // Measured from when the JVM started, 0 until the GameController has seen the game start up
+    private volatile long startupFirstFrameNanos = 0;
+    private volatile long startupSpritesLoadedNanos = 0;
+
+    public void recordTick(long durationNanos) {
+        ticks.increment();
+        tickLatency.recordNanos(durationNanos);
+    }
+
+    public void recordFrame(long durationNanos) {
+        frames.increment();
+        renderLatency.recordNanos(durationNanos);
+    }
+
+    // A tick that ran late enough that its frame could not be shown, the game loop catches up without drawing it
+    public void recordDroppedFrame() {
+        droppedFrames.increment();
+    }
+
+    public void recordLevelLoad() {
+        levelLoads.increment();
+    }
+
+    // Queued save entries that were appended to the journal on disk in one write, failed writes are not counted
+    public void recordSaveWrite() {
+        saveWrites.increment();
+    }
+
+    public void recordStartup(long firstFrameNanos, long spritesLoadedNanos) {
+        startupSpritesLoadedNanos = spritesLoadedNanos;
+        startupFirstFrameNanos = firstFrameNanos;  // Written last, the metrics server checks it before reading both
+    }
+
+    public void setGameState(String gameState) {
+        this.gameState = gameState;
+    }
+
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getLevelLoads() {
+        return levelLoads.sum();
+    }
+
+    public long getSaveWrites() {
+        return saveWrites.sum();
+    }
+
+    public Histogram getTickLatency() {
+        return tickLatency;
+    }
+
+    public Histogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    public long getStartupFirstFrameNanos() {
+        return startupFirstFrameNanos;
+    }
+
+    public long getStartupSpritesLoadedNanos() {
+        return startupSpritesLoadedNanos;
+    }
+
+    public String getGameState() {
+        return gameState;
+    }
+}
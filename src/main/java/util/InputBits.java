@@ -0,0 +1,56 @@
+package util;
+
+// Packs one ticks worth of input (the arguments of InputListener.routeInput) into the low bits of an int and back
+// Used to record and replay input compactly
+public class InputBits {
+    public static final int LEFT = 1;
+    public static final int RIGHT = 1 << 1;
+    public static final int UP = 1 << 2;
+    public static final int DOWN = 1 << 3;
+    public static final int JUMP = 1 << 4;
+    public static final int BACKSPACE = 1 << 5;
+    // Set by the InputHandler for a while after jump was pressed, the player jumps on it as if jump was still held
+    public static final int JUMP_BUFFERED = 1 << 6;
+    // Held to step the level back in time, read by the GameController rather than routed to the listeners
+    public static final int REWIND = 1 << 7;
+
+    public static int encode(Vector2D inputVector, boolean jumpPressed, boolean backspacePressed) {
+        int bits = 0;
+        if (inputVector.x < 0) bits |= LEFT;
+        if (inputVector.x > 0) bits |= RIGHT;
+        if (inputVector.y < 0) bits |= UP;
+        if (inputVector.y > 0) bits |= DOWN;
+        if (jumpPressed) bits |= JUMP;
+        if (backspacePressed) bits |= BACKSPACE;
+        return bits;
+    }
+
+    // Writes the movement direction of the given bits into inputVector
+    public static Vector2D decodeMovement(int bits, Vector2D inputVector) {
+        int x = ((bits & RIGHT) != 0 ? 1 : 0) - ((bits & LEFT) != 0 ? 1 : 0);
+        int y = ((bits & DOWN) != 0 ? 1 : 0) - ((bits & UP) != 0 ? 1 : 0);
+        return inputVector.set(x, y);
+    }
+
+    public static boolean isJump(int bits) {
+        return (bits & JUMP) != 0;
+    }
+
+    public static boolean isBackspace(int bits) {
+        return (bits & BACKSPACE) != 0;
+    }
+
+    public static boolean isJumpBuffered(int bits) {
+        return (bits & JUMP_BUFFERED) != 0;
+    }
+
+    public static boolean isRewind(int bits) {
+        return (bits & REWIND) != 0;
+    }
+
+    // Routes the input stored in the given bits to the listener, using inputVector as scratch space
+    // A buffered jump is routed as a held jump
+    public static void route(int bits, InputListener listener, Vector2D inputVector) {
+        listener.routeInput(decodeMovement(bits, inputVector), isJump(bits) || isJumpBuffered(bits), isBackspace(bits));
+    }
+}
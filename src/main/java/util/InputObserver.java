@@ -15,8 +15,8 @@ public abstract class InputObserver {
     }
 
     protected void notifyListeners(Vector2D inputVector, boolean jumpPressed, boolean backspacePressed) {
-        for (InputListener listener : listeners) {
-            listener.routeInput(inputVector, jumpPressed, backspacePressed);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).routeInput(inputVector, jumpPressed, backspacePressed);
         }
     }
 }
@@ -0,0 +1,105 @@
+package util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Collects the timings shown by the performance overlay (toggled with F3)
+// The game thread records update times and samples the management beans once a second, the rendering thread records
+// render times and frame intervals. Each histogram only has one writing thread, so nothing here needs a lock.
+public class PerformanceMonitor {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final FrameTimeHistogram updateTimes = new FrameTimeHistogram();
+    private final FrameTimeHistogram renderTimes = new FrameTimeHistogram();
+    private final FrameTimeHistogram frameIntervals = new FrameTimeHistogram();
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> garbageCollectorBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private volatile boolean overlayVisible = false;
+    private long lastFrameStart = 0;  // Only touched by the rendering thread
+
+    // Values from the last sample, written by the game thread and read by the rendering thread
+    private volatile int framesPerSecond = 0;
+    private volatile double allocationRate = 0;  // Bytes per second
+    private volatile long gcCount = 0;
+    private volatile long gcTime = 0;  // In milliseconds
+
+    // Previous sample, only touched by the game thread
+    private long lastSampleTime = 0;
+    private long lastAllocatedBytes = 0;
+
+    public void recordUpdateTime(long durationNanos) {
+        updateTimes.record(durationNanos);
+    }
+
+    public void recordRenderTime(long durationNanos) {
+        renderTimes.record(durationNanos);
+    }
+
+    // Called at the start of every frame, records the time since the start of the previous one
+    public void markFrameStart(long frameStart) {
+        if (lastFrameStart != 0) frameIntervals.record(frameStart - lastFrameStart);
+        lastFrameStart = frameStart;
+    }
+
+    // Reads the allocation and garbage collector totals, meant to be called about once a second
+    public void sampleManagementBeans(int framesPerSecond) {
+        long now = System.nanoTime();
+        long allocatedBytes = threadBean.getTotalThreadAllocatedBytes();
+        if (lastSampleTime != 0 && allocatedBytes >= 0) {
+            allocationRate = (allocatedBytes - lastAllocatedBytes) / ((now - lastSampleTime) / NANOS_PER_SECOND);
+        }
+        lastSampleTime = now;
+        lastAllocatedBytes = allocatedBytes;
+
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean bean : garbageCollectorBeans) {
+            count += Math.max(bean.getCollectionCount(), 0);
+            time += Math.max(bean.getCollectionTime(), 0);
+        }
+        gcCount = count;
+        gcTime = time;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    public void toggleOverlay() {
+        overlayVisible = !overlayVisible;
+    }
+
+    public boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    public FrameTimeHistogram getUpdateTimes() {
+        return updateTimes;
+    }
+
+    public FrameTimeHistogram getRenderTimes() {
+        return renderTimes;
+    }
+
+    public FrameTimeHistogram getFrameIntervals() {
+        return frameIntervals;
+    }
+
+    public int getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcTime() {
+        return gcTime;
+    }
+}
@@ -1,8 +1,6 @@
 package util;
 
 // Simple but incredibly useful 2D vector class used to track positions, velocity, and sizes
-import java.util.Objects;
-
 public class Vector2D {
     // Fields are public for greatly increased ease of use
     public double x;
@@ -31,10 +29,36 @@ public class Vector2D {
         return new Vector2D(x - v.x, y - v.y);
     }
 
+    // In-place versions of the above, used in per-frame code so no new vectors have to be created every tick
+    public Vector2D set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vector2D set(Vector2D v) {
+        this.x = v.x;
+        this.y = v.y;
+        return this;
+    }
+
+    public Vector2D addInPlace(Vector2D v) {
+        this.x += v.x;
+        this.y += v.y;
+        return this;
+    }
+
+    public Vector2D subInPlace(Vector2D v) {
+        this.x -= v.x;
+        this.y -= v.y;
+        return this;
+    }
+
     // The following 2 overrides allow the Vector2D to work as a key in HashMaps, useful for TileMap position tracking
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        // Same as Objects.hash(x, y) without boxing the doubles into a new array on every lookup
+        return 31 * (31 + Double.hashCode(x)) + Double.hashCode(y);
     }
 
     @Override
@@ -0,0 +1,87 @@
+package view;
+
+// Picks the QualityLevel the GamePanel renders at, based on how well frames have been keeping up with 60 FPS
+// Frames are judged in windows of WINDOW_FRAMES. A window where too many frames came in late drops quality by one
+// step. Quality goes back up one step after a run of windows with no late frames and rendering well under budget.
+// If a step up is immediately followed by a step down, the next step up waits twice as long, so a machine sitting
+// right at the edge settles on the cheaper level instead of flickering between the two.
+// NOTE: Only used by the rendering thread.
+public class AdaptiveQuality {
+
+    private static final long FRAME_BUDGET_NANOS = 16_666_667;  // 60 FPS
+    private static final long LATE_FRAME_NANOS = FRAME_BUDGET_NANOS * 3 / 2;  // Late enough that a frame was missed
+    private static final int WINDOW_FRAMES = 60;
+    private static final int MAX_LATE_FRAMES = 6;  // Late frames a window may have before quality drops
+    private static final double RECOVER_RENDER_SHARE = 0.5;  // Average render time must be under this share of budget
+    private static final int MIN_RECOVER_WINDOWS = 3;
+    private static final int MAX_RECOVER_WINDOWS = 48;
+    private static final QualityLevel[] LEVELS = QualityLevel.values();
+
+    private QualityLevel level = QualityLevel.FULL;
+    private boolean locked = false;
+
+    // Current window
+    private long lastFrameStart = 0;
+    private int windowFrames = 0;
+    private int lateFrames = 0;
+    private long windowRenderNanos = 0;
+
+    private int goodWindows = 0;
+    private int recoverWindows = MIN_RECOVER_WINDOWS;
+    private boolean justRecovered = false;
+
+    // Called once per frame with when the frame started and how long it took to draw
+    public void recordFrame(long frameStart, long renderNanos) {
+        if (locked) return;
+        if (lastFrameStart != 0 && frameStart - lastFrameStart > LATE_FRAME_NANOS) lateFrames++;
+        lastFrameStart = frameStart;
+        windowRenderNanos += renderNanos;
+        windowFrames++;
+        if (windowFrames < WINDOW_FRAMES) return;
+
+        boolean windowLate = lateFrames > MAX_LATE_FRAMES;
+        boolean renderHeadroom = windowRenderNanos / windowFrames < FRAME_BUDGET_NANOS * RECOVER_RENDER_SHARE;
+        if (windowLate) {
+            degrade();
+        } else if (lateFrames == 0 && renderHeadroom) {
+            goodWindows++;
+            justRecovered = false;
+            if (goodWindows >= recoverWindows) recover();
+        } else {
+            goodWindows = 0;
+            justRecovered = false;
+        }
+
+        windowFrames = 0;
+        lateFrames = 0;
+        windowRenderNanos = 0;
+    }
+
+    private void degrade() {
+        goodWindows = 0;
+        if (justRecovered) {
+            recoverWindows = Math.min(recoverWindows * 2, MAX_RECOVER_WINDOWS);
+        }
+        justRecovered = false;
+        if (level.ordinal() < LEVELS.length - 1) {
+            level = LEVELS[level.ordinal() + 1];
+        }
+    }
+
+    private void recover() {
+        goodWindows = 0;
+        if (level == QualityLevel.FULL) return;
+        level = LEVELS[level.ordinal() - 1];
+        justRecovered = true;
+    }
+
+    // Stops adapting and keeps rendering at the given level, used by benchmarks so results stay comparable
+    public void lockLevel(QualityLevel level) {
+        this.level = level;
+        locked = true;
+    }
+
+    public QualityLevel getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,7 @@
+package view;
+
+// Groups of sprites the SpriteLoader decodes, in the order the game needs them
+public enum AssetStage {
+    MENU,  // Everything the main menu draws, the window waits for these
+    LEVEL  // Player and tile sprites, decoded in the background while the menu is up
+}
@@ -1,5 +1,7 @@
 package view;
 
+import util.FrameTimeHistogram;
+import util.PerformanceMonitor;
 import util.Vector2D;
 
 import java.awt.*;
@@ -68,10 +70,30 @@ public class GameHUD {
             new Vector2D(26 *HUD_RENDER_UNIT, 12 * HUD_RENDER_UNIT),
     };
 
+    // Performance overlay static variables
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 10);
+    private static final Color OVERLAY_BACKGROUND_COLOR = new Color(0, 0, 0, 175);
+    private static final Vector2D OVERLAY_POSITION = new Vector2D(8, 11 * HUD_RENDER_UNIT);
+    private static final Vector2D OVERLAY_SIZE = new Vector2D(290, 90);
+    private static final int OVERLAY_LINE_HEIGHT = 14;
+    private static final int OVERLAY_PADDING = 6;
+    private static final double NANO_TO_MILLI = 1_000_000;
+
+    // Level editor static variables
+    private static final Vector2D EDITOR_PANEL_POSITION = new Vector2D(8, 8);
+    private static final Vector2D EDITOR_PANEL_SIZE = new Vector2D(330, 62);
+    private static final String EDITOR_TILE_KEYS_TEXT = "1 ground  2 hazard  3 goal  4 collectible";
+    private static final String EDITOR_ACTIONS_TEXT = "Mouse: left paint, right erase  WASD: pan";
+    private static final String EDITOR_FILE_TEXT = "F5: save level  F2: play";
+    private static final double BYTES_TO_MEGABYTES = 1024 * 1024;
+
     // Timer static variables
     private static final double MILLI_TO_SECOND = 1000;
     private static final double SECOND_TO_MINUTE = 60;
 
+    // Turned off by the GamePanel when it is short on frame time
+    private Object antialiasing = RenderingHints.VALUE_ANTIALIAS_ON;
+
     // Sprites to render
     private final ImageProvider collectibleSprite;
     private final ImageProvider javaLogoSprite;
@@ -82,6 +104,10 @@ public class GameHUD {
         this.javaLogoSprite = javaLogoSprite;
     }
 
+    public void setAntialiasing(boolean enabled) {
+        antialiasing = enabled ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF;
+    }
+
     // Turns a time (in milliseconds) double into a string of format "0:00" in seconds(left side) and minutes(right side)
     private String formatLevelTime(double time) {
         double seconds = Math.floor(time / MILLI_TO_SECOND);
@@ -120,7 +146,7 @@ public class GameHUD {
         String timerText = formatLevelTime(timerCount);
 
         // Anti-Alias the shapes
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
 
         // Creating the text shapes for rendering
         Shape timerOutline = createTextShapeFromText(g2d, timerText);
@@ -156,7 +182,7 @@ public class GameHUD {
         String collectibleRecordText = collectibleRecord ? NEW_RECORD_TEXT : "Best: " + savedCollectibleCount;
         String timeRecordText = timeRecord ? NEW_RECORD_TEXT : "Best: " + formatLevelTime(savedTimerCount);
 
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
 
         // Creating text shapes for rendering
         Shape levelCompleteOutline = createTextShapeFromText(g2d, levelCompleteText);
@@ -213,7 +239,7 @@ public class GameHUD {
     }
 
     public void drawMainMenu(Graphics2D g2d) {
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
 
         Shape titleText = createTextShapeFromText(g2d, PLATFORMER_TEXT);
         Shape playText = createTextShapeFromText(g2d, PLAY_TEXT);
@@ -259,4 +285,49 @@ public class GameHUD {
         // Resetting g2d position for cleanup
         resetDrawingPosition(g2d, CONTROL_TEXT_POSITION, MOVEMENT_TEXT_POSITION, JUMP_TEXT_POSITION);
     }
+
+    // Draws the performance overlay in the bottom left: update time, render time and frame interval percentiles of the
+    // last few seconds, then FPS, allocation rate and garbage collections since startup, and the render quality
+    // Plain strings are drawn instead of outlined shapes to keep the overlay itself cheap
+    public void drawPerformanceOverlay(Graphics2D g2d, PerformanceMonitor monitor, QualityLevel qualityLevel) {
+        g2d.setColor(OVERLAY_BACKGROUND_COLOR);
+        g2d.fillRect((int)OVERLAY_POSITION.x, (int)OVERLAY_POSITION.y, (int)OVERLAY_SIZE.x, (int)OVERLAY_SIZE.y);
+
+        g2d.setFont(OVERLAY_FONT);
+        g2d.setColor(Color.WHITE);
+        int x = (int)OVERLAY_POSITION.x + OVERLAY_PADDING;
+        int y = (int)OVERLAY_POSITION.y + OVERLAY_PADDING + OVERLAY_LINE_HEIGHT - 4;
+        g2d.drawString(formatHistogramLine("update", monitor.getUpdateTimes()), x, y);
+        g2d.drawString(formatHistogramLine("render", monitor.getRenderTimes()), x, y + OVERLAY_LINE_HEIGHT);
+        g2d.drawString(formatHistogramLine("frame", monitor.getFrameIntervals()), x, y + 2 * OVERLAY_LINE_HEIGHT);
+        g2d.drawString(String.format("FPS %3d  alloc %6.1f MB/s  GC %d (%d ms)",
+                monitor.getFramesPerSecond(),
+                monitor.getAllocationRate() / BYTES_TO_MEGABYTES,
+                monitor.getGcCount(),
+                monitor.getGcTime()), x, y + 3 * OVERLAY_LINE_HEIGHT);
+        g2d.drawString("quality " + qualityLevel, x, y + 4 * OVERLAY_LINE_HEIGHT);
+    }
+
+    private String formatHistogramLine(String name, FrameTimeHistogram histogram) {
+        return String.format("%-6s p50 %5.2f  p99 %5.2f  max %6.2f ms",
+                name,
+                histogram.getPercentile(0.5) / NANO_TO_MILLI,
+                histogram.getPercentile(0.99) / NANO_TO_MILLI,
+                histogram.getMax() / NANO_TO_MILLI);
+    }
+
+    // Draws the level editors help panel, which tile type is painted and whether there are unsaved edits
+    public void drawEditorHUD(Graphics2D g2d, String levelName, String tileTypeName, boolean unsaved) {
+        g2d.setColor(OVERLAY_BACKGROUND_COLOR);
+        g2d.fillRect((int)EDITOR_PANEL_POSITION.x, (int)EDITOR_PANEL_POSITION.y, (int)EDITOR_PANEL_SIZE.x, (int)EDITOR_PANEL_SIZE.y);
+
+        g2d.setFont(OVERLAY_FONT);
+        g2d.setColor(Color.WHITE);
+        int x = (int)EDITOR_PANEL_POSITION.x + OVERLAY_PADDING;
+        int y = (int)EDITOR_PANEL_POSITION.y + OVERLAY_PADDING + OVERLAY_LINE_HEIGHT - 4;
+        g2d.drawString("Editing level " + levelName + (unsaved ? " (unsaved)" : "") + ", painting " + tileTypeName, x, y);
+        g2d.drawString(EDITOR_TILE_KEYS_TEXT, x, y + OVERLAY_LINE_HEIGHT);
+        g2d.drawString(EDITOR_ACTIONS_TEXT, x, y + 2 * OVERLAY_LINE_HEIGHT);
+        g2d.drawString(EDITOR_FILE_TEXT, x, y + 3 * OVERLAY_LINE_HEIGHT);
+    }
 }
@@ -1,6 +1,10 @@
 package view;
 
+import io.GhostStream;
 import model.*;
+import profiling.FrameRenderEvent;
+import util.GameMetrics;
+import util.PerformanceMonitor;
 import util.Vector2D;
 
 import javax.swing.*;
@@ -23,12 +27,18 @@ public class GamePanel extends JPanel {
     private static final Vector2D RENDER_SIZE = new Vector2D((double) SCREEN_WIDTH / SCALE, (double) SCREEN_HEIGHT / SCALE);
     private static final Color BACKGROUND_COLOR = new Color(0, 191, 255);
     private static final double CAMERA_DRAG = 10;
+    private static final Color EDITOR_CURSOR_COLOR = new Color(255, 255, 255, 160);
 
     // Player Rendering Constants
     private static final int PLAYER_SPRITE_WIDTH_OFFSET = 2;
     private static final int PLAYER_SCALE = 2;
     private static final double PLAYER_IMAGE_WIDTH = 33;
     private static final Vector2D PLAYER_SPRITE_POSITION_OFFSET = new Vector2D(-18.0, -28.0);
+    private static final AlphaComposite GHOST_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.4f);
+    private static final PlayerState[] PLAYER_STATES = PlayerState.values();
+
+    // Particle Rendering Constants
+    private static final int MAX_PARTICLE_SIZE = 4;
 
     // Load paths for images
     private static final String IMAGE_PATH = "/sprites/";
@@ -48,6 +58,10 @@ public class GamePanel extends JPanel {
     // GameManager is stored for ease of access of the games current state
     private GameManager gameManager;
 
+    // Decodes the sprites below, the menu ones before the window shows and the rest in the background
+    private final SpriteLoader spriteLoader = new SpriteLoader();
+    private volatile long firstFrameTime = 0;  // System.nanoTime() the first frame finished drawing at
+
     // HashMap that stores all the tile images based on their orientation and type
     private final HashMap<TileType, HashMap<TileOrientation, ImageProvider>> tileSprites = new HashMap<>();
 
@@ -56,14 +70,24 @@ public class GamePanel extends JPanel {
     private AffineTransformOp playerImageFlipper;
     private boolean playerFlipped = false;
 
+    // Personal best runs of the current level, set by the game thread when a level starts
+    private volatile GhostStream[] ghosts = new GhostStream[0];
+
     private SpriteAnimation collectibleAnimation;
 
+    // One color per particle emitter, created once so drawing particles does not create colors every frame
+    private Color[] particleColors;
+
     private int spriteSize;
 
     // Camera related fields
     private final Vector2D cameraPosition = new Vector2D(0, 0);
     private Vector2D previousPlayerPosition = new Vector2D(0, 0);
 
+    // Mouse position on the panel, drawn as the tile the level editor would paint. Set by the LevelEditor.
+    private volatile int editorMouseX = -1;
+    private volatile int editorMouseY = -1;
+
     // Circle transition animation fields
     private double circleTransitionAnimationProgress = 0;
     private boolean flipCircleTransitionProgress = false;
@@ -73,11 +97,21 @@ public class GamePanel extends JPanel {
 
     private final GameHUD gameHUD;
 
+    // Lowers the render quality when frames are not keeping up, see AdaptiveQuality
+    private final AdaptiveQuality adaptiveQuality = new AdaptiveQuality();
+    private final BufferedImage lowResolutionFrame =
+            new BufferedImage((int) RENDER_SIZE.x, (int) RENDER_SIZE.y, BufferedImage.TYPE_INT_RGB);
+
+    private PerformanceMonitor performanceMonitor;  // Optional, times each frame and holds the overlay toggle
+    private GameMetrics metrics;  // Optional, counts frames and their render time for the metrics endpoint
+
     public GamePanel() {
         loadPlayerSprites();
         loadTileSprites();
         createImageFlipper();
-        Sprite javaLogoSprite = new Sprite(JAVA_LOGO_PATH);
+        Sprite javaLogoSprite = spriteLoader.load(AssetStage.MENU, JAVA_LOGO_PATH);
+        spriteLoader.start();
+        spriteLoader.await(AssetStage.MENU);
         this.setPreferredSize(new Dimension(SCREEN_WIDTH, SCREEN_HEIGHT));
         this.setBackground(BACKGROUND_COLOR);
         this.setDoubleBuffered(true);
@@ -89,6 +123,60 @@ public class GamePanel extends JPanel {
         this.gameManager = gameManager;
         // Also set the sprite size here
         this.spriteSize = gameManager.getTileSize();
+
+        ParticleEmitter[] emitters = gameManager.getParticleSystem().getEmitters();
+        particleColors = new Color[emitters.length];
+        for (int i = 0; i < emitters.length; i++) {
+            particleColors[i] = new Color(emitters[i].getColor());
+        }
+    }
+
+    public void setPerformanceMonitor(PerformanceMonitor performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
+    }
+
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setGhosts(GhostStream[] ghosts) {
+        this.ghosts = ghosts;
+    }
+
+    // Blocks until the in-level sprites are decoded too, until then levels are drawn as the main menu
+    public void awaitSprites() {
+        spriteLoader.await(AssetStage.LEVEL);
+    }
+
+    public long getSpritesLoadedTime() {
+        return spriteLoader.getLoadedTime(AssetStage.LEVEL);
+    }
+
+    // 0 until the first frame has been drawn
+    public long getFirstFrameTime() {
+        return firstFrameTime;
+    }
+
+    public void setEditorMouse(int x, int y) {
+        editorMouseX = x;
+        editorMouseY = y;
+    }
+
+    public void hideEditorMouse() {
+        editorMouseX = -1;
+    }
+
+    // Grid position of the tile under a point on the panel, based on where the camera was last drawn
+    public int screenToColumn(int x) {
+        return Math.floorDiv(x / SCALE + (int) cameraPosition.x, spriteSize);
+    }
+
+    public int screenToRow(int y) {
+        return Math.floorDiv(y / SCALE + (int) cameraPosition.y, spriteSize);
+    }
+
+    public void lockQuality(QualityLevel level) {
+        adaptiveQuality.lockLevel(level);
     }
 
     private void createImageFlipper() {
@@ -106,7 +194,7 @@ public class GamePanel extends JPanel {
                 Sprite[] sprites = new Sprite[spriteAmount];
                 for (int i = 0; i < spriteAmount; i++) {
                     // Files were meant to start from 0, but it duplicated the first image so they now start at one, thus the +1 magic number
-                    sprites[i] = new Sprite(PLAYER_IDLE_IMAGE_PATH + (i + 1) + ".png");
+                    sprites[i] = spriteLoader.load(AssetStage.LEVEL, PLAYER_IDLE_IMAGE_PATH + (i + 1) + ".png");
                 }
                 SpriteAnimation playerIdle = new SpriteAnimation(sprites, 5);
                 playerImages.put(c, playerIdle);
@@ -117,18 +205,18 @@ public class GamePanel extends JPanel {
                 int spriteAmount = 6;
                 Sprite[] sprites = new Sprite[spriteAmount];
                 for (int i = 0; i < spriteAmount; i++) {
-                    sprites[i] = new Sprite(PLAYER_RUN_IMAGE_PATH + (i + 1) + ".png");
+                    sprites[i] = spriteLoader.load(AssetStage.LEVEL, PLAYER_RUN_IMAGE_PATH + (i + 1) + ".png");
                 }
                 SpriteAnimation playerRun = new SpriteAnimation(sprites, 5);
                 playerImages.put(c, playerRun);
 //                persistantAnimations[1] = playerRun;
             }
             if (c == PlayerState.JUMP_UP) {
-                Sprite jump_up = new Sprite(PLAYER_JUMP_UP_IMAGE_PATH);
+                Sprite jump_up = spriteLoader.load(AssetStage.LEVEL, PLAYER_JUMP_UP_IMAGE_PATH);
                 playerImages.put(c, jump_up);
             }
             if (c == PlayerState.JUMP_DOWN) {
-                Sprite jump_down = new Sprite(PLAYER_JUMP_DOWN_IMAGE_PATH);
+                Sprite jump_down = spriteLoader.load(AssetStage.LEVEL, PLAYER_JUMP_DOWN_IMAGE_PATH);
                 playerImages.put(c, jump_down);
             }
             if (c == PlayerState.DEATH) {
@@ -136,7 +224,7 @@ public class GamePanel extends JPanel {
                 int spriteAmount = 2;
                 Sprite[] sprites = new Sprite[spriteAmount];
                 for (int i = 0; i < spriteAmount; i++) {
-                    sprites[i] = new Sprite(PLAYER_HURT_IMAGE_PATH + (i + 1) + ".png");
+                    sprites[i] = spriteLoader.load(AssetStage.LEVEL, PLAYER_HURT_IMAGE_PATH + (i + 1) + ".png");
                 }
                 SpriteAnimation playerDeath = new SpriteAnimation(sprites, 5);
                 playerImages.put(c, playerDeath);
@@ -151,7 +239,7 @@ public class GamePanel extends JPanel {
                 HashMap<TileOrientation, ImageProvider> grassSprites = new HashMap<>();
                 int index = 0;
                 for (TileOrientation o : TileOrientation.values()) {
-                    Sprite tileSprite = new Sprite(GRASS_TILE_PATH + (index + 1) + ".png");
+                    Sprite tileSprite = spriteLoader.load(AssetStage.LEVEL, GRASS_TILE_PATH + (index + 1) + ".png");
                     grassSprites.put(o, tileSprite);
                     index++;
                 }
@@ -159,14 +247,14 @@ public class GamePanel extends JPanel {
             }
             if (t == TileType.GOAL) {
                 HashMap<TileOrientation, ImageProvider> goalSprites = new HashMap<>();
-                Sprite goalSprite = new Sprite(GOAL_TILE_PATH);
+                Sprite goalSprite = spriteLoader.load(AssetStage.LEVEL, GOAL_TILE_PATH);
                 goalSprites.put(TileOrientation.TOP_LEFT, goalSprite);
                 tileSprites.put(t, goalSprites);
             }
             if (t == TileType.HAZARD) {
                 HashMap<TileOrientation, ImageProvider> spikeSprites = new HashMap<>();
                 for (int i = 0; i < 4; i++) {
-                    Sprite spikeSprite = new Sprite(SPIKES_TILE_PATH + (i + 1) + ".png");
+                    Sprite spikeSprite = spriteLoader.load(AssetStage.LEVEL, SPIKES_TILE_PATH + (i + 1) + ".png");
                     spikeSprites.put(TileOrientation.getOrientationFromInt(i), spikeSprite);
                 }
                 tileSprites.put(t, spikeSprites);
@@ -175,8 +263,9 @@ public class GamePanel extends JPanel {
                 HashMap<TileOrientation, ImageProvider> collectibleSprites = new HashMap<>();
                 int spriteAmount = 12;
                 Sprite[] sprites = new Sprite[spriteAmount];
+                // Also drawn by the main menu, so these load with the menu sprites
                 for (int i = 0; i < spriteAmount; i++) {
-                    sprites[i] = new Sprite(COLLECTIBLE_TILE_PATH + (i + 1) + ".png");
+                    sprites[i] = spriteLoader.load(AssetStage.MENU, COLLECTIBLE_TILE_PATH + (i + 1) + ".png");
                 }
                 collectibleAnimation = new SpriteAnimation(sprites, 5);
                 collectibleSprites.put(TileOrientation.TOP_LEFT, collectibleAnimation);
@@ -185,17 +274,20 @@ public class GamePanel extends JPanel {
         }
     }
 
-    // Renders tiles that are visible on screen
-    private void renderTiles(Graphics2D g2d, Vector2D cameraPosition) {
+    // Renders tiles that are visible on screen, returns how many were drawn
+    private int renderTiles(Graphics2D g2d, Vector2D cameraPosition) {
         // Grab tiles to be rendered:
         TileMap.Tile[] visibleTiles = gameManager.getVisibleTiles(cameraPosition, RENDER_SIZE);
         // Render each tile depending on what type of tile it is
+        int renderedTiles = 0;
         for (TileMap.Tile tile : visibleTiles) {
             if (tile == null) continue;
+            renderedTiles++;
             BufferedImage tileImage = tileSprites.get(tile.getType()).get(tile.getOrientation()).getActiveImage();
             Vector2D tilePos = tile.getWorldPosition();
             g2d.drawImage(tileImage, (int) (tilePos.x - cameraPosition.x), (int) (tilePos.y - cameraPosition.y), spriteSize, spriteSize, null);
         }
+        return renderedTiles;
     }
 
     // Handles the state of the level transition animation
@@ -271,6 +363,56 @@ public class GamePanel extends JPanel {
                 null);
     }
 
+    // Draws each ghost as a see-through player at the point of its run the current attempt has reached
+    private void renderGhosts(Graphics2D g2d, Vector2D cameraPosition) {
+        GhostStream[] levelGhosts = ghosts;
+        if (levelGhosts.length == 0) return;
+        int frame = Math.max(gameManager.getLevelTicks() - 1, 0);
+        int width = PLAYER_SCALE * spriteSize + PLAYER_SPRITE_WIDTH_OFFSET;
+        int height = PLAYER_SCALE * spriteSize;
+        Composite composite = g2d.getComposite();
+        g2d.setComposite(GHOST_COMPOSITE);
+        for (GhostStream ghost : levelGhosts) {
+            if (!ghost.frameAt(frame)) continue;
+            BufferedImage ghostImage = playerImages.get(PLAYER_STATES[ghost.getState()]).getActiveImage();
+            int x = (int) (ghost.getX() + PLAYER_SPRITE_POSITION_OFFSET.x - cameraPosition.x);
+            int y = (int) (ghost.getY() + PLAYER_SPRITE_POSITION_OFFSET.y - cameraPosition.y);
+            // Flipped by drawing with a negative width, so ghosts facing left need no flipped copy of the image
+            if (ghost.isFacingLeft()) {
+                g2d.drawImage(ghostImage, x + width, y, -width, height, null);
+            } else {
+                g2d.drawImage(ghostImage, x, y, width, height, null);
+            }
+        }
+        g2d.setComposite(composite);
+    }
+
+    // Draws every live particle as a small square that shrinks as it ages, batched by emitter so the color is only set once
+    private void renderParticles(Graphics2D g2d, Vector2D cameraPosition) {
+        ParticleEmitter[] emitters = gameManager.getParticleSystem().getEmitters();
+        for (int e = 0; e < emitters.length; e++) {
+            ParticleEmitter emitter = emitters[e];
+            g2d.setColor(particleColors[e]);
+            for (int i = 0; i < emitter.getCapacity(); i++) {
+                if (!emitter.isAlive(i)) continue;
+                int size = 1 + (MAX_PARTICLE_SIZE - 1) * emitter.getLife(i) / emitter.getLifetime();
+                g2d.fillRect((int) (emitter.getX(i) - cameraPosition.x) - size / 2,
+                        (int) (emitter.getY(i) - cameraPosition.y) - size / 2,
+                        size, size);
+            }
+        }
+    }
+
+    // Outlines the tile under the mouse
+    private void renderEditorCursor(Graphics2D g2d, Vector2D cameraPosition) {
+        if (editorMouseX < 0) return;
+        int column = screenToColumn(editorMouseX);
+        int row = screenToRow(editorMouseY);
+        g2d.setColor(EDITOR_CURSOR_COLOR);
+        g2d.drawRect((int) (column * spriteSize - cameraPosition.x), (int) (row * spriteSize - cameraPosition.y),
+                spriteSize - 1, spriteSize - 1);
+    }
+
     // If circleTransitionAnimationComplete == false, this animation plays in a fire and forget manner
     private void circleTransitionAnimation(Graphics2D g2d) {
         g2d.setColor(Color.BLACK);
@@ -283,26 +425,69 @@ public class GamePanel extends JPanel {
     // Called from GamePanel.repaint() 60 times per second to render everything visible on screen
     @Override
     public void paintComponent(Graphics g) {
+        FrameRenderEvent renderEvent = FrameRenderEvent.isTypeEnabled() ? new FrameRenderEvent() : null;
+        if (renderEvent != null) renderEvent.begin();
+        long frameStart = System.nanoTime();
+        if (performanceMonitor != null) performanceMonitor.markFrameStart(frameStart);
+
         super.paintComponent(g);
 
         Graphics2D g2 = (Graphics2D) g;
-        g2.scale(SCALE, SCALE);  // Scale the game up to make it fill out the screen
+        QualityLevel quality = adaptiveQuality.getLevel();
+        gameHUD.setAntialiasing(quality.isHudAntialiased());
+
+        int visibleTiles;
+        if (quality.isReducedResolution()) {
+            // Draw at the games own resolution into a smaller image and let one image draw scale it up
+            Graphics2D frameGraphics = lowResolutionFrame.createGraphics();
+            frameGraphics.setColor(BACKGROUND_COLOR);
+            frameGraphics.fillRect(0, 0, lowResolutionFrame.getWidth(), lowResolutionFrame.getHeight());
+            visibleTiles = renderFrame(frameGraphics, quality);
+            frameGraphics.dispose();
+            g2.drawImage(lowResolutionFrame, 0, 0, SCREEN_WIDTH, SCREEN_HEIGHT, null);
+            g2.scale(SCALE, SCALE);
+        } else {
+            g2.scale(SCALE, SCALE);  // Scale the game up to make it fill out the screen
+            visibleTiles = renderFrame(g2, quality);
+        }
 
-        collectibleAnimation.updateAnimation();
+        // The overlay is drawn last and left out of the render time it displays
+        long renderTime = System.nanoTime() - frameStart;
+        adaptiveQuality.recordFrame(frameStart, renderTime);
+        if (metrics != null) metrics.recordFrame(renderTime);
+        if (performanceMonitor != null) {
+            performanceMonitor.recordRenderTime(renderTime);
+            if (performanceMonitor.isOverlayVisible()) gameHUD.drawPerformanceOverlay(g2, performanceMonitor, quality);
+        }
+
+        g2.dispose();  // Once drawing is done, release the resources it uses
+
+        if (renderEvent != null && renderEvent.shouldCommit()) {
+            renderEvent.visibleTiles = visibleTiles;
+            renderEvent.commit();
+        }
+        if (firstFrameTime == 0) firstFrameTime = System.nanoTime();
+    }
+
+    // Draws the current game state, returns how many tiles were drawn
+    private int renderFrame(Graphics2D g2, QualityLevel quality) {
+        if (quality.isDecorationAnimated()) collectibleAnimation.updateAnimation();
 
         // If in the main menu, do not process anything else
-        if (gameManager.getGameState() == GameState.MAIN_MENU || !gameManager.getTileMapActive()) {
+        // The menu also stays up while the in-level sprites are still decoding, which only takes part of the transition
+        if (gameManager.getGameState() == GameState.MAIN_MENU || !gameManager.getTileMapActive()
+                || !spriteLoader.isLoaded(AssetStage.LEVEL)) {
             gameHUD.drawMainMenu(g2);
             handleLevelTransition(g2);
-            g2.dispose();
-            return;
+            return 0;
         }
 
-        // Update camera based on players position and state
+        // Update camera based on players position and state, or on where the editor is looking
         PlayerState currentPlayerState = gameManager.getPlayerState();
         Vector2D playerCenter = gameManager.getPlayerCenterPosition();
         if (currentPlayerState != PlayerState.DEATH) previousPlayerPosition = playerCenter;
         Vector2D usePosition = currentPlayerState == PlayerState.DEATH ? previousPlayerPosition : playerCenter;
+        if (gameManager.getGameState() == GameState.EDITOR) usePosition = gameManager.getEditorFocus();
         cameraPosition.x += (usePosition.x - RENDER_SIZE.x / 2 - cameraPosition.x) / CAMERA_DRAG;
         cameraPosition.y += (usePosition.y - RENDER_SIZE.y / 2 - cameraPosition.y) / CAMERA_DRAG;
         // Prevents sprite jitter at the expense of camera smoothness:
@@ -310,8 +495,10 @@ public class GamePanel extends JPanel {
 
         // The main rendering order:
         // Order matters, whatever is rendered first will be overwritten by whatever is rendered on top of it
-        renderTiles(g2, pixelAlignedCameraPosition);
+        int visibleTiles = renderTiles(g2, pixelAlignedCameraPosition);
+        if (gameManager.getGameState() == GameState.IN_LEVEL) renderGhosts(g2, pixelAlignedCameraPosition);
         renderPlayer(g2, pixelAlignedCameraPosition, currentPlayerState);
+        if (quality.isDecorationAnimated()) renderParticles(g2, pixelAlignedCameraPosition);
         // Render appropriate UI depending on the game state
         switch (gameManager.getGameState()) {
             case IN_LEVEL:
@@ -327,10 +514,14 @@ public class GamePanel extends JPanel {
                         gameManager.isLevelCollectibleRecord(),
                         gameManager.isLevelTimeRecord());
                 break;
+            case EDITOR:
+                renderEditorCursor(g2, pixelAlignedCameraPosition);
+                gameHUD.drawEditorHUD(g2, gameManager.getLevelName(),
+                        TileType.tileTypeToString(gameManager.getEditorTileType()), gameManager.hasUnsavedEdits());
+                break;
         }
         handleLevelTransition(g2);
-
-        g2.dispose();  // Once drawing is done, release the resources it uses
+        return visibleTiles;
     }
 }
 
@@ -0,0 +1,22 @@
+package view;
+
+// Rendering quality steps used by AdaptiveQuality, from best to cheapest
+// Each step keeps the savings of the steps before it
+public enum QualityLevel {
+    FULL,
+    REDUCED_RESOLUTION,  // Draw the frame at half resolution and upscale it to the panel
+    NO_HUD_ANTIALIASING,
+    NO_DECORATIVE_ANIMATIONS;  // Freeze collectible animations and skip particles
+
+    public boolean isReducedResolution() {
+        return ordinal() >= REDUCED_RESOLUTION.ordinal();
+    }
+
+    public boolean isHudAntialiased() {
+        return ordinal() < NO_HUD_ANTIALIASING.ordinal();
+    }
+
+    public boolean isDecorationAnimated() {
+        return ordinal() < NO_DECORATIVE_ANIMATIONS.ordinal();
+    }
+}
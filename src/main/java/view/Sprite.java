@@ -7,7 +7,11 @@ import java.io.InputStream;
 
 // Class that stores a Buffered image that can be accessed and rendered
 public class Sprite implements ImageProvider {
-    private BufferedImage sprite;
+    private volatile BufferedImage sprite;  // Set by a SpriteLoader thread for sprites it loads
+
+    // Empty until an image is set, see SpriteLoader
+    public Sprite() {
+    }
 
     public Sprite(String imgPath) {
         this.setImageFromFile(imgPath);
@@ -0,0 +1,90 @@
+package view;
+
+import javax.imageio.ImageIO;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decodes sprites in parallel on virtual threads, grouped into AssetStages that can be waited on separately
+// load() hands out an empty Sprite right away and start() decodes every sprite handed out so far into them, so
+// the GamePanel can build its sprite maps up front and only wait for the stage it is about to draw.
+public class SpriteLoader {
+
+    private static class StageProgress {
+        private final List<Sprite> sprites = new ArrayList<>();
+        private final List<String> paths = new ArrayList<>();
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final CountDownLatch loaded = new CountDownLatch(1);
+        private volatile long loadedTime = 0;  // System.nanoTime() the last sprite of the stage was decoded at
+    }
+
+    private final EnumMap<AssetStage, StageProgress> stages = new EnumMap<>(AssetStage.class);
+
+    public SpriteLoader() {
+        for (AssetStage stage : AssetStage.values()) {
+            stages.put(stage, new StageProgress());
+        }
+        ImageIO.setUseCache(false);  // The images are small, decoding them from memory skips a temporary file each
+    }
+
+    // Returns a sprite that gets its image once its stage is decoded, must be called before start()
+    public Sprite load(AssetStage stage, String imgPath) {
+        Sprite sprite = new Sprite();
+        StageProgress progress = stages.get(stage);
+        progress.sprites.add(sprite);
+        progress.paths.add(imgPath);
+        return sprite;
+    }
+
+    // Starts decoding every stage at once, each sprite on its own virtual thread
+    public void start() {
+        ExecutorService decoder = Executors.newVirtualThreadPerTaskExecutor();
+        for (StageProgress progress : stages.values()) {
+            int spriteCount = progress.sprites.size();
+            progress.remaining.set(spriteCount);
+            if (spriteCount == 0) finishStage(progress);
+            for (int i = 0; i < spriteCount; i++) {
+                Sprite sprite = progress.sprites.get(i);
+                String imgPath = progress.paths.get(i);
+                decoder.execute(() -> decode(progress, sprite, imgPath));
+            }
+        }
+        decoder.shutdown();  // Not closed, that would wait for every stage, the threads end once their sprite is done
+    }
+
+    private void decode(StageProgress progress, Sprite sprite, String imgPath) {
+        try {
+            sprite.setImageFromFile(imgPath);
+        } finally {
+            // A sprite that failed to load still counts, so a missing file cannot keep its stage loading forever
+            if (progress.remaining.decrementAndGet() == 0) finishStage(progress);
+        }
+    }
+
+    private void finishStage(StageProgress progress) {
+        progress.loadedTime = System.nanoTime();
+        progress.loaded.countDown();
+    }
+
+    // Blocks until every sprite of the stage is decoded
+    public void await(AssetStage stage) {
+        try {
+            stages.get(stage).loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isLoaded(AssetStage stage) {
+        return stages.get(stage).loaded.getCount() == 0;
+    }
+
+    // System.nanoTime() the stage finished loading at, 0 while it is still loading
+    public long getLoadedTime(AssetStage stage) {
+        return stages.get(stage).loadedTime;
+    }
+}